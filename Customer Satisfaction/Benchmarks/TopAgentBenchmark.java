@@ -0,0 +1,96 @@
+// File: TopAgentBenchmark.java
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Part (f) under dashboard load: 50k agents in one month, ratings streaming in.
+ * Compile together with FollowF/F.java.
+ *
+ *   ingest          : acceptRating alone, ops/s. Target 1M/s; measured ~0.55M/s in one
+ *                     month (1-core sandbox VM), short of it: see README "Incremental ranking"
+ *   topIncremental  : getHighestRatedAgentForMonth, O(1), no lock
+ *   top10           : getTopAgents(month, 10), O(10)
+ *   topBySorting    : what part (e) does per poll, build + sort all averages
+ *   dashboard group : 1 thread ingesting while 1 thread polls the top agent; the poll
+ *                     reads a volatile snapshot, so it never waits on the month's lock
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopAgentBenchmark {
+
+    @Param({"50000"})
+    public int agents;
+
+    private static final int STREAM = 1 << 20;
+
+    private CustomerRatingServiceF svc;
+    private String[] agentStream;
+    private double[] ratingStream;
+
+    @Setup
+    public void setup() {
+        svc = new CustomerRatingServiceF();
+        String[] names = new String[agents];
+        for (int i = 0; i < agents; i++) names[i] = "agent" + i;
+        Random random = new Random(42);
+        agentStream = new String[STREAM];
+        ratingStream = new double[STREAM];
+        for (int i = 0; i < STREAM; i++) {
+            agentStream[i] = names[random.nextInt(agents)];
+            ratingStream[i] = 1 + random.nextInt(5);
+        }
+        for (int i = 0; i < agents; i++) svc.acceptRating("May", names[i], 3.0);   // every agent present
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = new Random().nextInt(STREAM);
+    }
+
+    @Benchmark
+    public boolean ingest(Cursor c) {
+        int i = c.next++ & (STREAM - 1);
+        return svc.acceptRating("May", agentStream[i], ratingStream[i]);
+    }
+
+    @Benchmark
+    public Optional<AgentRating> topIncremental() {
+        return svc.getHighestRatedAgentForMonth("May");
+    }
+
+    @Benchmark
+    public List<AgentRating> top10() {
+        return svc.getTopAgents("May", 10);
+    }
+
+    @Benchmark
+    public AgentRating topBySorting() {
+        List<AgentRating> res = svc.getAverageRatingsUnsorted("May");
+        res.sort((a, b) -> {
+            int cmp = Double.compare(b.rating, a.rating);
+            if (cmp != 0) return cmp;
+            return a.agent.compareTo(b.agent);
+        });
+        return res.get(0);
+    }
+
+    @Benchmark
+    @Group("dashboard")
+    @GroupThreads(1)
+    public boolean dashboardIngest(Cursor c) {
+        return ingest(c);
+    }
+
+    @Benchmark
+    @Group("dashboard")
+    @GroupThreads(1)
+    public Optional<AgentRating> dashboardPoll() {
+        return svc.getHighestRatedAgentForMonth("May");
+    }
+}
@@ -0,0 +1,198 @@
+// File: CustomerRatingServiceF.java
+import java.util.*;
+
+/**
+ * Part (f) - Incremental ranking:
+ *  - every acceptRating keeps the month's agents ordered by (average desc, agent asc)
+ *  - getHighestRatedAgentForMonth is O(1), getTopAgents(month, k) is O(k)
+ *  - getAverageRatings walks the ordering instead of sorting (O(A), was O(A log A))
+ * Same results and tie-break as part (e).
+ */
+
+interface ICustomerRatingServiceF {
+    boolean acceptRating(String month, String agent, double rating);
+
+    // sorted descending with tie-break
+    List<AgentRating> getAverageRatings(String month);
+
+    // unsorted averages (insertion order)
+    List<AgentRating> getAverageRatingsUnsorted(String month);
+
+    Optional<AgentRating> getHighestRatedAgentForMonth(String month);
+
+    // first k of getAverageRatings(month)
+    List<AgentRating> getTopAgents(String month, int k);
+
+    String exportMonthlyRatingsAsCSV(String month);
+
+    List<AgentRating> getTotalRatings(String month);
+}
+
+final class AgentRating {
+    public final String agent;
+    public final double rating;
+
+    public AgentRating(String agent, double rating) {
+        this.agent = agent;
+        this.rating = rating;
+    }
+
+    @Override
+    public String toString() {
+        return agent + " -> " + rating;
+    }
+}
+
+// per-agent handle: lives in the month's map AND in its ranked set
+final class RatingStats {
+    final String agent;
+    final long name0, name1;   // agent's first 8 chars packed, so most ties don't touch the String
+    int count = 0;
+    double sum = 0.0;
+    double average = 0.0;      // the set's sort key: only changes while out of the set
+
+    RatingStats(String agent) {
+        this.agent = agent;
+        this.name0 = pack(agent, 0);
+        this.name1 = pack(agent, 4);
+    }
+
+    // chars [from, from + 4) as unsigned 16-bit digits, 0 past the end: same order as compareTo
+    private static long pack(String s, int from) {
+        long key = 0;
+        for (int i = from; i < from + 4; i++) key = (key << 16) | (i < s.length() ? s.charAt(i) : 0);
+        return key;
+    }
+
+    void add(double r) {
+        count++;
+        sum += r;
+        average = sum / count;
+    }
+}
+
+final class MonthRanking {
+    static final Comparator<RatingStats> ORDER = (a, b) -> {
+        int cmp = Double.compare(b.average, a.average);
+        if (cmp != 0) return cmp;
+        cmp = Long.compareUnsigned(a.name0, b.name0);
+        if (cmp != 0) return cmp;
+        cmp = Long.compareUnsigned(a.name1, b.name1);
+        if (cmp != 0) return cmp;
+        return a.agent.compareTo(b.agent);
+    };
+
+    final LinkedHashMap<String, RatingStats> byAgent = new LinkedHashMap<>();
+    final TreeSet<RatingStats> ranked = new TreeSet<>(ORDER);
+    RatingStats top;
+
+    void add(String agent, double rating) {
+        RatingStats stats = byAgent.get(agent);
+        if (stats == null) {
+            stats = new RatingStats(agent);
+            byAgent.put(agent, stats);
+        } else if ((stats.sum + rating) / (stats.count + 1) == stats.average) {
+            stats.add(rating);      // same average (exactly, as add() computes it): position unchanged
+            return;
+        } else {
+            ranked.remove(stats);   // remove under the old key
+        }
+        stats.add(rating);
+        ranked.add(stats);          // reinsert under the new one: O(log A)
+
+        // top can only change to the updated agent, or away from it if it was on top and dropped
+        if (top == null || ORDER.compare(stats, top) < 0) top = stats;
+        else if (top == stats) top = ranked.first();
+    }
+}
+
+/**
+ * Synchronized, so a dashboard thread can poll while ratings stream in. acceptRating is
+ * O(log A); reads never sort.
+ */
+class CustomerRatingServiceF implements ICustomerRatingServiceF {
+    private final Map<String, MonthRanking> store = new HashMap<>();
+
+    private boolean valid(double rating) {
+        return rating > 0.0 && rating <= 5.0;
+    }
+
+    @Override
+    public synchronized boolean acceptRating(String month, String agent, double rating) {
+        if (!valid(rating)) return false;
+        store.computeIfAbsent(month, m -> new MonthRanking()).add(agent, rating);
+        return true;
+    }
+
+    @Override
+    public synchronized List<AgentRating> getAverageRatings(String month) {
+        return getTopAgents(month, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized List<AgentRating> getAverageRatingsUnsorted(String month) {
+        MonthRanking ranking = store.get(month);
+        List<AgentRating> res = new ArrayList<>();
+        if (ranking == null) return res;
+        for (RatingStats stats : ranking.byAgent.values()) {
+            res.add(new AgentRating(stats.agent, stats.average));
+        }
+        return res;
+    }
+
+    @Override
+    public synchronized Optional<AgentRating> getHighestRatedAgentForMonth(String month) {
+        MonthRanking ranking = store.get(month);
+        if (ranking == null || ranking.top == null) return Optional.empty();
+        return Optional.of(new AgentRating(ranking.top.agent, ranking.top.average));
+    }
+
+    @Override
+    public synchronized List<AgentRating> getTopAgents(String month, int k) {
+        MonthRanking ranking = store.get(month);
+        List<AgentRating> res = new ArrayList<>();
+        if (ranking == null) return res;
+        for (RatingStats stats : ranking.ranked) {
+            if (res.size() >= k) break;
+            res.add(new AgentRating(stats.agent, stats.average));
+        }
+        return res;
+    }
+
+    @Override
+    public String exportMonthlyRatingsAsCSV(String month) {
+        List<AgentRating> list = getAverageRatings(month);
+        StringBuilder sb = new StringBuilder();
+        sb.append("agent,averageRating\n");
+        for (AgentRating ar : list) {
+            sb.append(ar.agent).append(",").append(ar.rating).append("\n");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized List<AgentRating> getTotalRatings(String month) {
+        MonthRanking ranking = store.get(month);
+        List<AgentRating> res = new ArrayList<>();
+        if (ranking == null) return res;
+        for (RatingStats stats : ranking.byAgent.values()) {
+            res.add(new AgentRating(stats.agent, stats.sum)); // total sum (not average)
+        }
+        return res;
+    }
+
+    // demo
+    public static void main(String[] args) {
+        CustomerRatingServiceF svc = new CustomerRatingServiceF();
+        svc.acceptRating("May", "alice", 5.0);
+        svc.acceptRating("May", "bob", 4.0);
+        svc.acceptRating("May", "carol", 4.5);
+        System.out.println("Highest (May): " + svc.getHighestRatedAgentForMonth("May").orElse(null));
+
+        svc.acceptRating("May", "alice", 1.0);   // alice drops to 3.0
+        System.out.println("Highest (May): " + svc.getHighestRatedAgentForMonth("May").orElse(null));
+
+        System.out.println("\nTop 2 (May):");
+        svc.getTopAgents("May", 2).forEach(System.out::println);
+    }
+}
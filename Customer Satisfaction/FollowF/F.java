@@ -0,0 +1,373 @@
+// File: CustomerRatingServiceF.java
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Part (f) - Incremental ranking:
+ *  - every acceptRating keeps the month's agents ordered by (average desc, agent asc)
+ *  - getHighestRatedAgentForMonth is O(1), getTopAgents(month, k) is O(k)
+ *  - getAverageRatings walks the ordering instead of sorting (O(A), was O(A log A))
+ *  - state and locking are per month; the top agent is also published lock-free
+ * Same results and tie-break as part (e).
+ */
+
+interface ICustomerRatingServiceF {
+    boolean acceptRating(String month, String agent, double rating);
+
+    // sorted descending with tie-break
+    List<AgentRating> getAverageRatings(String month);
+
+    // unsorted averages (insertion order)
+    List<AgentRating> getAverageRatingsUnsorted(String month);
+
+    Optional<AgentRating> getHighestRatedAgentForMonth(String month);
+
+    // first k of getAverageRatings(month)
+    List<AgentRating> getTopAgents(String month, int k);
+
+    String exportMonthlyRatingsAsCSV(String month);
+
+    List<AgentRating> getTotalRatings(String month);
+}
+
+final class AgentRating {
+    public final String agent;
+    public final double rating;
+
+    public AgentRating(String agent, double rating) {
+        this.agent = agent;
+        this.rating = rating;
+    }
+
+    @Override
+    public String toString() {
+        return agent + " -> " + rating;
+    }
+}
+
+// per-agent handle: lives in the month's map AND in its ranking
+final class RatingStats {
+    final String agent;
+    final long name0, name1;   // agent's first 8 chars packed, so most ties don't touch the String
+    int count = 0;
+    double sum = 0.0;
+    double average = 0.0;      // the ranking's sort key: only changes while out of the set
+
+    RatingStats(String agent) {
+        this.agent = agent;
+        this.name0 = pack(agent, 0);
+        this.name1 = pack(agent, 4);
+    }
+
+    // chars [from, from + 4) as unsigned 16-bit digits, 0 past the end: same order as compareTo
+    private static long pack(String s, int from) {
+        long key = 0;
+        for (int i = from; i < from + 4; i++) key = (key << 16) | (i < s.length() ? s.charAt(i) : 0);
+        return key;
+    }
+
+    void add(double r) {
+        count++;
+        sum += r;
+        average = sum / count;
+    }
+}
+
+// Agents ordered by (average desc, agent asc), as a short list of sorted blocks (<= BLOCK
+// agents each). Each agent's key is 3 adjacent longs, so a binary-search probe reads one
+// cache line: a reposition touches a few lines and shifts at most one block, instead of
+// chasing ~2 log A scattered tree nodes.
+final class RankedAgents implements Iterable<RatingStats> {
+    private static final int BLOCK = 128;
+    private static final int K = 3;              // key longs: -bits(average), name0, name1
+
+    private static final class Block {
+        final long[] keys = new long[BLOCK * K];
+        final RatingStats[] stats = new RatingStats[BLOCK];
+        int size;
+    }
+
+    // block i plus a copy of its first key, so finding the block stays within these arrays
+    private Block[] blocks = new Block[16];
+    private long[] firstKeys = new long[16 * K];
+    private int blockCount;
+
+    RatingStats first() {
+        return blockCount == 0 ? null : blocks[0].stats[0];
+    }
+
+    void add(RatingStats s) {
+        if (blockCount == 0) insertBlock(0, new Block());
+        long avg = -Double.doubleToLongBits(s.average);   // averages are > 0: bits order like the values
+        int bi = blockFor(s, avg);
+        Block b = blocks[bi];
+        if (b.size == BLOCK) {
+            split(bi);
+            if (compareFirst(s, avg, bi + 1) >= 0) b = blocks[++bi];
+        }
+        int i = b.size;
+        int lo = 0;
+        while (lo < i) {                          // first entry that sorts after s
+            int mid = (lo + i) >>> 1;
+            if (compare(s, avg, b, mid) < 0) i = mid; else lo = mid + 1;
+        }
+        System.arraycopy(b.keys, i * K, b.keys, (i + 1) * K, (b.size - i) * K);
+        System.arraycopy(b.stats, i, b.stats, i + 1, b.size - i);
+        b.keys[i * K] = avg;
+        b.keys[i * K + 1] = s.name0;
+        b.keys[i * K + 2] = s.name1;
+        b.stats[i] = s;
+        b.size++;
+        if (i == 0) copyFirst(bi);
+    }
+
+    // s.average must still be the key s was added under
+    void remove(RatingStats s) {
+        long avg = -Double.doubleToLongBits(s.average);
+        int bi = blockFor(s, avg);
+        Block b = blocks[bi];
+        int lo = 0, hi = b.size - 1, i = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(s, avg, b, mid);
+            if (cmp == 0) { i = mid; break; }
+            if (cmp < 0) hi = mid - 1; else lo = mid + 1;
+        }
+        if (i < 0) return;
+        System.arraycopy(b.keys, (i + 1) * K, b.keys, i * K, (b.size - i - 1) * K);
+        System.arraycopy(b.stats, i + 1, b.stats, i, b.size - i - 1);
+        b.stats[--b.size] = null;
+        if (b.size == 0) {
+            deleteBlock(bi);
+            return;
+        }
+        if (i == 0) copyFirst(bi);
+        if (b.size < BLOCK / 4 && bi + 1 < blockCount && b.size + blocks[bi + 1].size <= BLOCK / 2) {
+            Block next = blocks[bi + 1];         // fold a sparse block into its neighbour
+            System.arraycopy(next.keys, 0, b.keys, b.size * K, next.size * K);
+            System.arraycopy(next.stats, 0, b.stats, b.size, next.size);
+            b.size += next.size;
+            deleteBlock(bi + 1);
+        }
+    }
+
+    @Override
+    public Iterator<RatingStats> iterator() {
+        return new Iterator<RatingStats>() {
+            int bi, i;
+
+            @Override
+            public boolean hasNext() {
+                return bi < blockCount;
+            }
+
+            @Override
+            public RatingStats next() {
+                if (bi >= blockCount) throw new NoSuchElementException();
+                Block b = blocks[bi];
+                RatingStats s = b.stats[i++];
+                if (i == b.size) { bi++; i = 0; }
+                return s;
+            }
+        };
+    }
+
+    // last block whose first entry is <= s (block 0 if s sorts before everything)
+    private int blockFor(RatingStats s, long avg) {
+        int lo = 1, hi = blockCount - 1, bi = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareFirst(s, avg, mid) >= 0) { bi = mid; lo = mid + 1; }
+            else hi = mid - 1;
+        }
+        return bi;
+    }
+
+    // < 0 if s (with encoded average avg) sorts before entry i of b; the entry's
+    // RatingStats is only loaded when all three key longs tie
+    private static int compare(RatingStats s, long avg, Block b, int i) {
+        int cmp = compareKey(s, avg, b.keys, i * K);
+        return cmp != 0 ? cmp : tieBreak(s, b.stats[i]);
+    }
+
+    private int compareFirst(RatingStats s, long avg, int bi) {
+        int cmp = compareKey(s, avg, firstKeys, bi * K);
+        return cmp != 0 ? cmp : tieBreak(s, blocks[bi].stats[0]);
+    }
+
+    private static int compareKey(RatingStats s, long avg, long[] keys, int at) {
+        int cmp = Long.compare(avg, keys[at]);
+        if (cmp != 0) return cmp;
+        cmp = Long.compareUnsigned(s.name0, keys[at + 1]);
+        if (cmp != 0) return cmp;
+        return Long.compareUnsigned(s.name1, keys[at + 2]);
+    }
+
+    private static int tieBreak(RatingStats s, RatingStats other) {
+        return s == other ? 0 : s.agent.compareTo(other.agent);
+    }
+
+    private void split(int bi) {
+        Block b = blocks[bi], upper = new Block();
+        int half = b.size / 2;
+        upper.size = b.size - half;
+        System.arraycopy(b.keys, half * K, upper.keys, 0, upper.size * K);
+        System.arraycopy(b.stats, half, upper.stats, 0, upper.size);
+        Arrays.fill(b.stats, half, b.size, null);
+        b.size = half;
+        insertBlock(bi + 1, upper);
+        copyFirst(bi + 1);
+    }
+
+    private void insertBlock(int bi, Block b) {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+            firstKeys = Arrays.copyOf(firstKeys, blockCount * 2 * K);
+        }
+        System.arraycopy(blocks, bi, blocks, bi + 1, blockCount - bi);
+        System.arraycopy(firstKeys, bi * K, firstKeys, (bi + 1) * K, (blockCount - bi) * K);
+        blocks[bi] = b;
+        blockCount++;
+    }
+
+    private void deleteBlock(int bi) {
+        System.arraycopy(blocks, bi + 1, blocks, bi, blockCount - bi - 1);
+        System.arraycopy(firstKeys, (bi + 1) * K, firstKeys, bi * K, (blockCount - bi - 1) * K);
+        blocks[--blockCount] = null;
+    }
+
+    private void copyFirst(int bi) {
+        System.arraycopy(blocks[bi].keys, 0, firstKeys, bi * K, K);
+    }
+}
+
+// one month: its own lock, plus a lock-free snapshot of the top agent for pollers
+final class MonthRanking {
+    private final LinkedHashMap<String, RatingStats> byAgent = new LinkedHashMap<>();
+    private final RankedAgents ranked = new RankedAgents();
+    private volatile AgentRating topRating;   // immutable copy of ranked.first(), replaced when it changes
+
+    synchronized void add(String agent, double rating) {
+        RatingStats stats = byAgent.get(agent);
+        if (stats == null) {
+            stats = new RatingStats(agent);
+            byAgent.put(agent, stats);
+        } else if ((stats.sum + rating) / (stats.count + 1) == stats.average) {
+            stats.add(rating);      // same average (exactly, as add() computes it): position unchanged
+            return;
+        } else {
+            ranked.remove(stats);   // remove under the old key
+        }
+        stats.add(rating);
+        ranked.add(stats);          // reinsert under the new one: O(log A) search + one block shift
+
+        AgentRating published = topRating;
+        RatingStats top = ranked.first();
+        if (published == null || top == stats || !top.agent.equals(published.agent))
+            topRating = new AgentRating(top.agent, top.average);
+    }
+
+    // no lock: a poller sees the top as of the last completed add()
+    AgentRating top() {
+        return topRating;
+    }
+
+    synchronized List<AgentRating> topAgents(int k) {
+        List<AgentRating> res = new ArrayList<>();
+        for (RatingStats stats : ranked) {
+            if (res.size() >= k) break;
+            res.add(new AgentRating(stats.agent, stats.average));
+        }
+        return res;
+    }
+
+    synchronized List<AgentRating> averagesUnsorted() {
+        List<AgentRating> res = new ArrayList<>();
+        for (RatingStats stats : byAgent.values()) res.add(new AgentRating(stats.agent, stats.average));
+        return res;
+    }
+
+    synchronized List<AgentRating> totals() {
+        List<AgentRating> res = new ArrayList<>();
+        for (RatingStats stats : byAgent.values()) res.add(new AgentRating(stats.agent, stats.sum)); // total sum (not average)
+        return res;
+    }
+}
+
+/**
+ * Safe for a dashboard thread to poll while ratings stream in. Each month has its own
+ * lock, so ingest into different months runs in parallel and a read of one month never
+ * waits for another month's writes. getHighestRatedAgentForMonth takes no lock at all.
+ * acceptRating is O(log A) within its month; reads never sort.
+ */
+class CustomerRatingServiceF implements ICustomerRatingServiceF {
+    private final ConcurrentHashMap<String, MonthRanking> store = new ConcurrentHashMap<>();
+
+    private boolean valid(double rating) {
+        return rating > 0.0 && rating <= 5.0;
+    }
+
+    @Override
+    public boolean acceptRating(String month, String agent, double rating) {
+        if (!valid(rating)) return false;
+        MonthRanking ranking = store.get(month);
+        if (ranking == null) ranking = store.computeIfAbsent(month, m -> new MonthRanking());
+        ranking.add(agent, rating);
+        return true;
+    }
+
+    @Override
+    public List<AgentRating> getAverageRatings(String month) {
+        return getTopAgents(month, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<AgentRating> getAverageRatingsUnsorted(String month) {
+        MonthRanking ranking = store.get(month);
+        return ranking == null ? new ArrayList<>() : ranking.averagesUnsorted();
+    }
+
+    @Override
+    public Optional<AgentRating> getHighestRatedAgentForMonth(String month) {
+        MonthRanking ranking = store.get(month);
+        return ranking == null ? Optional.empty() : Optional.ofNullable(ranking.top());
+    }
+
+    @Override
+    public List<AgentRating> getTopAgents(String month, int k) {
+        MonthRanking ranking = store.get(month);
+        return ranking == null ? new ArrayList<>() : ranking.topAgents(k);
+    }
+
+    @Override
+    public String exportMonthlyRatingsAsCSV(String month) {
+        List<AgentRating> list = getAverageRatings(month);
+        StringBuilder sb = new StringBuilder();
+        sb.append("agent,averageRating\n");
+        for (AgentRating ar : list) {
+            sb.append(ar.agent).append(",").append(ar.rating).append("\n");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public List<AgentRating> getTotalRatings(String month) {
+        MonthRanking ranking = store.get(month);
+        return ranking == null ? new ArrayList<>() : ranking.totals();
+    }
+
+    // demo
+    public static void main(String[] args) {
+        CustomerRatingServiceF svc = new CustomerRatingServiceF();
+        svc.acceptRating("May", "alice", 5.0);
+        svc.acceptRating("May", "bob", 4.0);
+        svc.acceptRating("May", "carol", 4.5);
+        System.out.println("Highest (May): " + svc.getHighestRatedAgentForMonth("May").orElse(null));
+
+        svc.acceptRating("May", "alice", 1.0);   // alice drops to 3.0
+        System.out.println("Highest (May): " + svc.getHighestRatedAgentForMonth("May").orElse(null));
+
+        System.out.println("\nTop 2 (May):");
+        svc.getTopAgents("May", 2).forEach(System.out::println);
+    }
+}
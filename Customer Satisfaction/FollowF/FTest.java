@@ -0,0 +1,119 @@
+// File: CustomerRatingServiceFTest.java
+import org.junit.jupiter.api.Test;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerRatingServiceFTest {
+
+    @Test
+    void testTopAgentFollowsUpdates() {
+        CustomerRatingServiceF svc = new CustomerRatingServiceF();
+
+        svc.acceptRating("May", "alice", 5.0);
+        svc.acceptRating("May", "bob", 4.0);
+        assertEquals("alice", svc.getHighestRatedAgentForMonth("May").get().agent);
+
+        svc.acceptRating("May", "alice", 1.0); // alice drops to 3.0
+        assertEquals("bob", svc.getHighestRatedAgentForMonth("May").get().agent);
+        assertEquals(4.0, svc.getHighestRatedAgentForMonth("May").get().rating);
+    }
+
+    @Test
+    void testTopAgentsInOrderWithTieBreak() {
+        CustomerRatingServiceF svc = new CustomerRatingServiceF();
+
+        svc.acceptRating("May", "carol", 4.0);
+        svc.acceptRating("May", "bob", 4.0);
+        svc.acceptRating("May", "alice", 2.0);
+
+        List<AgentRating> top = svc.getTopAgents("May", 2);
+
+        assertEquals(2, top.size());
+        assertEquals("bob", top.get(0).agent); // same average: name ascending
+        assertEquals("carol", top.get(1).agent);
+        assertTrue(svc.getTopAgents("June", 3).isEmpty());
+        assertFalse(svc.getHighestRatedAgentForMonth("June").isPresent());
+    }
+
+    @Test
+    void testTieBreakOnLongNames() {
+        CustomerRatingServiceF svc = new CustomerRatingServiceF();
+
+        // same first 8 chars: order decided past the packed prefix
+        svc.acceptRating("May", "supportteam-zed", 4.0);
+        svc.acceptRating("May", "supportteam-amy", 4.0);
+        svc.acceptRating("May", "support", 4.0);
+
+        List<AgentRating> top = svc.getTopAgents("May", 3);
+
+        assertEquals("support", top.get(0).agent);
+        assertEquals("supportteam-amy", top.get(1).agent);
+        assertEquals("supportteam-zed", top.get(2).agent);
+    }
+
+    @Test
+    void testInvalidRatingRejected() {
+        CustomerRatingServiceF svc = new CustomerRatingServiceF();
+
+        assertFalse(svc.acceptRating("May", "alice", 0.0));
+        assertFalse(svc.acceptRating("May", "alice", 5.5));
+        assertTrue(svc.getAverageRatings("May").isEmpty());
+    }
+
+    @Test
+    void testSameResultsAsSortingEveryTime() {
+        CustomerRatingServiceF svc = new CustomerRatingServiceF();
+        Map<String, double[]> sums = new HashMap<>(); // agent -> {sum, count}
+        Random random = new Random(1);
+
+        for (int i = 0; i < 20_000; i++) {
+            String agent = "agent" + random.nextInt(200);
+            double rating = 1 + random.nextInt(5);
+            svc.acceptRating("May", agent, rating);
+            double[] s = sums.computeIfAbsent(agent, a -> new double[2]);
+            s[0] += rating;
+            s[1]++;
+
+            if (i % 100 == 0) {
+                List<AgentRating> sorted = new ArrayList<>();
+                for (var e : sums.entrySet()) sorted.add(new AgentRating(e.getKey(), e.getValue()[0] / e.getValue()[1]));
+                sorted.sort((a, b) -> {
+                    int cmp = Double.compare(b.rating, a.rating);
+                    if (cmp != 0) return cmp;
+                    return a.agent.compareTo(b.agent);
+                });
+                assertEquals(sorted.get(0).agent, svc.getHighestRatedAgentForMonth("May").get().agent);
+                assertEquals(sorted.subList(0, Math.min(10, sorted.size())).toString(), svc.getTopAgents("May", 10).toString());
+            }
+        }
+        assertEquals(200, svc.getAverageRatings("May").size());
+    }
+
+    @Test
+    void testFullOrderAcrossManyBlocks() {
+        CustomerRatingServiceF svc = new CustomerRatingServiceF();
+        Map<String, double[]> sums = new HashMap<>(); // agent -> {sum, count}
+        Random random = new Random(2);
+
+        for (int i = 1; i <= 50_000; i++) {
+            String agent = "agent" + random.nextInt(3_000);
+            double rating = 1 + random.nextInt(5);
+            svc.acceptRating("May", agent, rating);
+            double[] s = sums.computeIfAbsent(agent, a -> new double[2]);
+            s[0] += rating;
+            s[1]++;
+
+            if (i % 5_000 == 0) {
+                List<AgentRating> sorted = new ArrayList<>();
+                for (var e : sums.entrySet()) sorted.add(new AgentRating(e.getKey(), e.getValue()[0] / e.getValue()[1]));
+                sorted.sort((a, b) -> {
+                    int cmp = Double.compare(b.rating, a.rating);
+                    if (cmp != 0) return cmp;
+                    return a.agent.compareTo(b.agent);
+                });
+                assertEquals(sorted.toString(), svc.getAverageRatings("May").toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * `competing` constrained routes at the same position, "/api/:x(regex)/detail":
+ *   ConstrainedRouter : one DFA scan of the segment, then only the accepted edges
+ *   naive             : routes in order, one precompiled Pattern.matcher() per constraint
+ *
+ * The constraints are the usual suspects (\d+, uuid, slug) plus generated
+ * "r<i>_[a-z]+" ones. Lookups hit routes spread over the list (the later ones are the
+ * naive scan's worst case) plus misses that every constraint has to reject.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstrainedRouteBenchmark {
+
+    @Param({"4", "16", "64"})
+    public int competing;
+
+    private ConstrainedRouter dfa;
+    private NaiveRegexRouter naive;
+    private String[] paths;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<String> regexes = new ArrayList<>(List.of("\\d+", "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}", "[a-z][a-z0-9-]*"));
+        for (int i = 0; regexes.size() < competing; i++) regexes.add(0, "r" + i + "_[a-z]+");   // generated ones first
+
+        dfa = new ConstrainedRouter();
+        naive = new NaiveRegexRouter();
+        for (int i = 0; i < regexes.size(); i++) {
+            dfa.addRoute("/api/:x(" + regexes.get(i) + ")/detail", "route-" + i);
+            naive.addRoute(new Pattern[] {null, Pattern.compile(regexes.get(i)), null}, new String[] {"api", null, "detail"}, "route-" + i);
+        }
+
+        paths = new String[] {
+                "/api/12345/detail",                                      // \d+, last routes
+                "/api/0f8fad5b-d9cb-469f-a165-70867728950e/detail",
+                "/api/order-history/detail",
+                "/api/r" + (competing - 4) / 2 + "_abc/detail",           // a generated one mid-list
+                "/api/NOPE!/detail",                                      // rejected by every constraint
+                "/api/12345/other",
+                "/api/r0_x/detail",
+                "/api/7/detail"};
+        for (String path : paths) {
+            String expected = naive.callRoute(path);
+            if (expected == null ? dfa.callRoute(path) != null : !expected.equals(dfa.callRoute(path))) {
+                throw new IllegalStateException("routers disagree on " + path);
+            }
+        }
+    }
+
+    @Benchmark
+    public String dfa() {
+        return dfa.callRoute(paths[next++ & (paths.length - 1)]);
+    }
+
+    @Benchmark
+    public String naive() {
+        return naive.callRoute(paths[next++ & (paths.length - 1)]);
+    }
+
+    // first route whose literal segments are equal and whose patterns all match
+    static final class NaiveRegexRouter {
+        private final List<Pattern[]> patterns = new ArrayList<>();
+        private final List<String[]> literals = new ArrayList<>();
+        private final List<String> results = new ArrayList<>();
+
+        void addRoute(Pattern[] segmentPatterns, String[] segmentLiterals, String result) {
+            patterns.add(segmentPatterns);
+            literals.add(segmentLiterals);
+            results.add(result);
+        }
+
+        String callRoute(String path) {
+            String[] segments = path.substring(1).split("/");
+            for (int r = 0; r < results.size(); r++) {
+                Pattern[] p = patterns.get(r);
+                String[] l = literals.get(r);
+                if (p.length != segments.length) continue;
+                boolean ok = true;
+                for (int s = 0; s < p.length && ok; s++) {
+                    ok = p[s] != null ? p[s].matcher(segments[s]).matches() : l[s].equals(segments[s]);
+                }
+                if (ok) return results.get(r);
+            }
+            return null;
+        }
+    }
+}
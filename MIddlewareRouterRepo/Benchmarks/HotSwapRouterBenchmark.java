@@ -0,0 +1,89 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Read throughput of HotSwapRouter on 32 threads, with and without a writer that
+ * reloads the whole table in a loop.
+ *
+ *   quiet  : 32 readers, no reloads (baseline)
+ *   reload : 31 readers + 1 thread doing reload() back to back
+ *
+ * Readers never lock, so their ops/µs should stay flat; the only cost of a reload is the
+ * cache misses on the freshly built arrays right after a swap. Run on a 32-core box:
+ *   java -jar benchmarks.jar HotSwapRouterBenchmark
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotSwapRouterBenchmark {
+
+    @Param({"10000"})
+    public int routes;
+
+    private static final int PATHS = 1024;
+
+    private HotSwapRouter router;
+    private String[] paths;
+    private int generation;
+
+    @Setup
+    public void setup() {
+        router = new HotSwapRouter();
+        router.reload(this::routeTable);
+
+        paths = new String[PATHS];
+        int perKind = routes / 3;
+        for (int p = 0; p < PATHS; p++) {
+            int i = (int) ((p * 2654435761L) % perKind);
+            switch (p % 4) {
+                case 0: paths[p] = "/api/v1/item" + i; break;
+                case 1: paths[p] = "/static" + i + "/css/site.css"; break;
+                case 2: paths[p] = "/svc" + i + "/res/" + p + "/sub/" + p; break;
+                default: paths[p] = "/unknown/" + p;
+            }
+        }
+    }
+
+    private void routeTable(CompiledRouter.Builder builder) {
+        String tag = "-g" + (generation++ & 1);
+        for (int i = 0; i < routes / 3; i++) {
+            builder.addRoute("/api/v1/item" + i, "exact" + tag);
+            builder.addRoute("/static" + i + "/*", "wild" + tag);
+            builder.addRoute("/svc" + i + "/res/:id/sub/:sid", "param" + tag);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        String next(String[] paths) {
+            return paths[next++ & (PATHS - 1)];
+        }
+    }
+
+    @Benchmark
+    @Group("quiet")
+    @GroupThreads(32)
+    public String quietRead(Cursor c) {
+        return router.callRoute(c.next(paths));
+    }
+
+    @Benchmark
+    @Group("reload")
+    @GroupThreads(31)
+    public String reloadRead(Cursor c) {
+        return router.callRoute(c.next(paths));
+    }
+
+    @Benchmark
+    @Group("reload")
+    @GroupThreads(1)
+    public void reloadWrite() {
+        router.reload(this::routeTable);
+    }
+}
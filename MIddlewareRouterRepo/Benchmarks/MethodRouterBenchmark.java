@@ -0,0 +1,80 @@
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * MethodRouter (one shared trie) vs one RouterCTrieImpl per method behind an EnumMap.
+ *
+ * REST-style table: every resource has GET/PUT/DELETE on "/resN/:id" and GET/POST on
+ * "/resN". Lookups cycle through hits and 405s (PATCH, no route), so the miss path
+ * that computes the allowed methods is measured too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodRouterBenchmark {
+
+    @Param({"100", "10000"})
+    public int resources;
+
+    private MethodRouter shared;
+    private Map<HttpMethod, RouterCTrieImpl> perMethod;
+    private final RouteMatch ctx = new RouteMatch();
+    private String[] paths;
+    private int next;
+
+    @Setup
+    public void setup() {
+        shared = new MethodRouter();
+        perMethod = new EnumMap<>(HttpMethod.class);
+        for (HttpMethod method : HttpMethod.values()) perMethod.put(method, new RouterCTrieImpl());
+        for (int i = 0; i < resources; i++) {
+            for (HttpMethod method : new HttpMethod[] {HttpMethod.GET, HttpMethod.PUT, HttpMethod.DELETE}) {
+                shared.addRoute(method, "/res" + i + "/:id", method + "-item-" + i);
+                perMethod.get(method).addRoute("/res" + i + "/:id", method + "-item-" + i);
+            }
+            for (HttpMethod method : new HttpMethod[] {HttpMethod.GET, HttpMethod.POST}) {
+                shared.addRoute(method, "/res" + i, method + "-list-" + i);
+                perMethod.get(method).addRoute("/res" + i, method + "-list-" + i);
+            }
+        }
+        paths = new String[1024];
+        for (int i = 0; i < paths.length; i++) paths[i] = "/res" + (i * 7919 % resources) + "/" + i;
+    }
+
+    private String nextPath() {
+        return paths[next++ & (paths.length - 1)];
+    }
+
+    @Benchmark
+    public String sharedHit() {
+        return shared.callRoute(HttpMethod.PUT, nextPath());
+    }
+
+    @Benchmark
+    public String perMethodHit() {
+        return perMethod.get(HttpMethod.PUT).callRoute(nextPath());
+    }
+
+    @Benchmark
+    public int sharedRouteWith405() {
+        return shared.route(HttpMethod.PATCH, nextPath(), ctx);
+    }
+
+    // the per-method layout has to ask every other router to tell 405 from 404
+    @Benchmark
+    public int perMethodRouteWith405() {
+        String path = nextPath();
+        if (perMethod.get(HttpMethod.PATCH).match(path, ctx)) return MethodRouter.OK;
+        int allowed = 0;
+        for (Map.Entry<HttpMethod, RouterCTrieImpl> e : perMethod.entrySet()) {
+            if (e.getValue().callRoute(path) != null) allowed |= e.getKey().bit();
+        }
+        return allowed == 0 ? MethodRouter.NOT_FOUND : MethodRouter.METHOD_NOT_ALLOWED;
+    }
+}
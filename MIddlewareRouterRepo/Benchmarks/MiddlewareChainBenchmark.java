@@ -0,0 +1,78 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Overhead of the middleware chain per interceptor.
+ *
+ * One param route under `chainLength` prefix interceptors that do almost nothing
+ * (bump a counter), so the numbers are the engine's cost: route match + prefix walk + the before/after
+ * loops. Per-middleware overhead = slope of ns/op over chainLength; chainLength 0 is the
+ * match + handler baseline.
+ *
+ *   sync  : handle(path, exchange) with a reused Exchange, expected 0 B/op with -prof gc
+ *   async : handleAsync(path) with a completed future, Exchange + futures per request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MiddlewareChainBenchmark {
+
+    @Param({"0", "1", "2", "4", "8", "16"})
+    public int chainLength;
+
+    private static final String[] PATHS = {"/api/v1/user/1", "/api/v1/user/22", "/api/v1/user/333", "/api/v1/user/4444"};
+
+    private MiddlewareRouter sync;
+    private MiddlewareRouter async;
+    private long touched;
+
+    @Setup
+    public void setup() {
+        sync = new MiddlewareRouter();
+        async = new MiddlewareRouter();
+        String[] prefixes = {"/", "/api", "/api/v1", "/api/v1/user"};
+        for (int i = 0; i < chainLength; i++) {
+            Interceptor interceptor = new Interceptor() {
+                public boolean before(Exchange exchange) {
+                    touched++;
+                    return true;
+                }
+
+                public void after(Exchange exchange) {
+                    touched--;
+                }
+            };
+            sync.use(prefixes[i % prefixes.length], interceptor);
+            async.use(prefixes[i % prefixes.length], interceptor);
+        }
+        CompletableFuture<String> done = CompletableFuture.completedFuture("user");
+        sync.addRoute("/api/v1/user/:id", exchange -> "user");
+        async.addAsyncRoute("/api/v1/user/:id", exchange -> done);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        final Exchange exchange = new Exchange();
+        int next;
+
+        String next() {
+            return PATHS[next++ & (PATHS.length - 1)];
+        }
+    }
+
+    @Benchmark
+    public String sync(Cursor c) {
+        sync.handle(c.next(), c.exchange);
+        return c.exchange.response();
+    }
+
+    @Benchmark
+    public String async(Cursor c) {
+        return async.handleAsync(c.next()).join();
+    }
+}
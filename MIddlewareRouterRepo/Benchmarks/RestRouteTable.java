@@ -0,0 +1,103 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic route table shaped like a large REST API, for the router benchmarks.
+ *
+ * Each service gets nested resources, a wildcard for its static files and one for
+ * its docs:
+ *
+ *   /api/v2/billing3/invoices                          exact
+ *   /api/v2/billing3/invoices/:invoicesId              param
+ *   /api/v2/billing3/invoices/:invoicesId/lines        param
+ *   /api/v2/billing3/invoices/:invoicesId/lines/:linesId
+ *   /static/billing3/*                                 wildcard
+ *
+ * Services are added until there are exactly `size` routes. Deterministic for a seed,
+ * so every implementation (and every run) sees the same table.
+ *
+ * hitPaths[k] is a concrete request for routes[k] (params filled in, wildcard tail
+ * appended). missPaths look just as realistic but match nothing: unknown collections
+ * under real services, or one segment too deep.
+ */
+final class RestRouteTable {
+    private static final String[] SERVICES = {"users", "billing", "orders", "catalog", "search", "auth", "media", "reports"};
+    private static final String[] COLLECTIONS = {"items", "invoices", "accounts", "events", "comments", "tags"};
+    private static final String[] SUBRESOURCES = {"lines", "history", "members", "attachments"};
+
+    final String[] routes;
+    final String[] results;
+    final String[] hitPaths;
+    final String[] missPaths;
+
+    RestRouteTable(int size, long seed) {
+        Random random = new Random(seed);
+        List<String> routes = new ArrayList<>(size);
+        List<String> hits = new ArrayList<>(size);
+        List<String> misses = new ArrayList<>(size);
+
+        for (int s = 0; routes.size() < size; s++) {
+            String service = "/api/v" + (1 + s % 3) + "/" + SERVICES[s % SERVICES.length] + s / SERVICES.length;
+            for (String collection : COLLECTIONS) {
+                String base = service + "/" + collection;
+                String item = base + "/:" + collection + "Id";
+                add(routes, hits, base, base);
+                add(routes, hits, item, base + "/" + random.nextInt(1_000_000));
+                for (int r = random.nextInt(SUBRESOURCES.length); r < SUBRESOURCES.length; r += 2) {
+                    String sub = SUBRESOURCES[r];
+                    String id = "/" + random.nextInt(1_000_000);
+                    add(routes, hits, item + "/" + sub, base + id + "/" + sub);
+                    add(routes, hits, item + "/" + sub + "/:" + sub + "Id", base + id + "/" + sub + "/" + random.nextInt(1000));
+                }
+                misses.add(base + "/" + random.nextInt(1_000_000) + "/unknown/" + random.nextInt(1000) + "/deeper/x");
+            }
+            add(routes, hits, "/static/" + service.substring(1).replace('/', '-') + "/*", "/static/" + service.substring(1).replace('/', '-') + "/js/app.js");
+            add(routes, hits, service + "/docs/*", service + "/docs/index.html");
+            misses.add(service + "/unknown" + random.nextInt(1000));
+            misses.add("/static" + service + "/js/app.js");     // '/' instead of '-': no wildcard prefix
+        }
+
+        this.routes = routes.subList(0, size).toArray(new String[0]);
+        this.hitPaths = hits.subList(0, size).toArray(new String[0]);
+        this.missPaths = misses.toArray(new String[0]);
+        this.results = new String[size];
+        for (int k = 0; k < size; k++) results[k] = "r" + k;
+    }
+
+    private static void add(List<String> routes, List<String> hits, String route, String hit) {
+        routes.add(route);
+        hits.add(hit);
+    }
+
+    // `length` picks (a power of two), uniformly over `paths`
+    static String[] uniform(String[] paths, int length, long seed) {
+        Random random = new Random(seed);
+        String[] stream = new String[length];
+        for (int s = 0; s < length; s++) stream[s] = paths[random.nextInt(paths.length)];
+        return stream;
+    }
+
+    // `length` picks with P(rank k) ~ 1 / k^skew; rank order is shuffled so the hot
+    // paths are spread over the table instead of being its first routes
+    static String[] zipfian(String[] paths, int length, double skew, long seed) {
+        Random random = new Random(seed);
+        String[] byRank = paths.clone();
+        for (int i = byRank.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String swap = byRank[i];
+            byRank[i] = byRank[j];
+            byRank[j] = swap;
+        }
+        double[] cdf = new double[byRank.length];
+        double sum = 0;
+        for (int k = 0; k < byRank.length; k++) cdf[k] = sum += 1 / Math.pow(k + 1, skew);
+        String[] stream = new String[length];
+        for (int s = 0; s < length; s++) {
+            int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            stream[s] = byRank[rank < 0 ? -rank - 1 : rank];
+        }
+        return stream;
+    }
+}
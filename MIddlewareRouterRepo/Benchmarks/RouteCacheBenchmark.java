@@ -0,0 +1,112 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * CachingRouter under a Zipfian path workload (a few paths carry most requests).
+ *
+ * 10k routes (a third exact / wildcard / param), `distinctPaths` concrete request paths
+ * ranked by popularity with P(rank k) ~ 1 / k^skew. Lookups replay a precomputed stream,
+ * so the sampling cost is not measured. Compares the bare matchers with cached ones;
+ * the hit rate is printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class RouteCacheBenchmark {
+
+    @Param({"1.0", "1.2"})
+    public double skew;
+
+    @Param({"256", "1024"})
+    public int cacheSize;
+
+    private static final int ROUTES = 10_000;
+    private static final int STREAM = 1 << 16;
+    private static final int DISTINCT_PATHS = 20_000;
+
+    private RouterC linear;
+    private RouterC trie;
+    private CachingRouter cachedLinear;
+    private CachingRouter cachedTrie;
+    private String[] stream;
+
+    @Setup
+    public void setup() {
+        linear = new RouterCImpl();
+        trie = new RouterCTrieImpl();
+        RouterC linearBehindCache = new RouterCImpl();
+        RouterC trieBehindCache = new RouterCTrieImpl();
+        for (int i = 0; i < ROUTES / 3; i++) {
+            for (RouterC router : new RouterC[] {linear, trie, linearBehindCache, trieBehindCache}) {
+                router.addRoute("/api/v1/item" + i, "exact-" + i);
+                router.addRoute("/static" + i + "/*", "wild-" + i);
+                router.addRoute("/svc" + i + "/res/:id", "param-" + i);
+            }
+        }
+        cachedLinear = new CachingRouter(linearBehindCache, cacheSize);
+        cachedTrie = new CachingRouter(trieBehindCache, cacheSize);
+
+        String[] byRank = new String[DISTINCT_PATHS];
+        for (int k = 0; k < DISTINCT_PATHS; k++) {
+            int i = k % (ROUTES / 3);
+            switch (k % 4) {
+                case 0: byRank[k] = "/svc" + i + "/res/" + k; break;
+                case 1: byRank[k] = "/static" + i + "/app.js"; break;
+                case 2: byRank[k] = "/api/v1/item" + i; break;
+                default: byRank[k] = "/nope/" + k;
+            }
+        }
+
+        // inverse-CDF sampling of the Zipf distribution
+        double[] cdf = new double[DISTINCT_PATHS];
+        double sum = 0;
+        for (int k = 0; k < DISTINCT_PATHS; k++) cdf[k] = sum += 1 / Math.pow(k + 1, skew);
+        Random random = new Random(42);
+        stream = new String[STREAM];
+        for (int s = 0; s < STREAM; s++) {
+            int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            stream[s] = byRank[rank < 0 ? -rank - 1 : rank];
+        }
+    }
+
+    @TearDown
+    public void report() {
+        System.out.println("\ncachedLinear: " + cachedLinear + "\ncachedTrie:   " + cachedTrie);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = new Random().nextInt(STREAM);
+
+        String next(String[] stream) {
+            return stream[next++ & (STREAM - 1)];
+        }
+    }
+
+    @Benchmark
+    public String linear(Cursor c) {
+        return linear.callRoute(c.next(stream));
+    }
+
+    @Benchmark
+    public String cachedLinear(Cursor c) {
+        return cachedLinear.callRoute(c.next(stream));
+    }
+
+    @Benchmark
+    public String trie(Cursor c) {
+        return trie.callRoute(c.next(stream));
+    }
+
+    @Benchmark
+    public String cachedTrie(Cursor c) {
+        return cachedTrie.callRoute(c.next(stream));
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cold start at 100k routes: time from "no router" to "first request answered".
+ *
+ *   linear   : RouterCImpl, one addRoute() per route
+ *   trie     : RouterCTrieImpl, one addRoute() per route
+ *   image    : RouteImage.open() on a precompiled image
+ *
+ * SingleShotTime in a fresh JVM per fork, no warmup: this is what a gateway pays at boot,
+ * JIT and page cache included. The image is compiled once per trial, outside the
+ * measurement, and the route strings are generated up front for the other two.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class RouteImageColdStartBenchmark {
+
+    @Param({"100000"})
+    public int routes;
+
+    private RestRouteTable table;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        table = new RestRouteTable(routes, 42);
+        RouterCTrieImpl source = new RouterCTrieImpl();
+        for (int k = 0; k < routes; k++) source.addRoute(table.routes[k], table.results[k]);
+        file = Files.createTempFile("routes", ".img");
+        RouteImage.write(source, file);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public String linear() {
+        RouterC router = new RouterCImpl();
+        for (int k = 0; k < routes; k++) router.addRoute(table.routes[k], table.results[k]);
+        return router.callRoute(table.hitPaths[routes - 1]);
+    }
+
+    @Benchmark
+    public String trie() {
+        RouterC router = new RouterCTrieImpl();
+        for (int k = 0; k < routes; k++) router.addRoute(table.routes[k], table.results[k]);
+        return router.callRoute(table.hitPaths[routes - 1]);
+    }
+
+    @Benchmark
+    public String image() throws IOException {
+        return RouteImage.open(file).callRoute(table.hitPaths[routes - 1]);
+    }
+}
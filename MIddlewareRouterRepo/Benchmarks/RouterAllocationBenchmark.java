@@ -0,0 +1,85 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Allocation per lookup, hits and misses. Run with the GC profiler:
+ *
+ *   java -jar benchmarks.jar RouterAllocationBenchmark -prof gc
+ *
+ * and read gc.alloc.rate.norm: expected 0 B/op for every benchmark here
+ * (no split, substring, Iterator or array per request).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterAllocationBenchmark {
+
+    private static final String[] HITS = {
+            "/api/v1/users", "/static/css/site.css", "/users/42/orders/7", "/users/42/profile"};
+    private static final String[] MISSES = {
+            "/api/v2/users", "/statics/x", "/users/42/orders/7/extra", "/nothing/here"};
+
+    private RouterB wildcardRouter;
+    private RouterC linear;
+    private RouterC trie;
+
+    @Setup
+    public void setup() {
+        wildcardRouter = new RouterBImpl();
+        linear = new RouterCImpl();
+        trie = new RouterCTrieImpl();
+        for (int i = 0; i < 100; i++) {
+            wildcardRouter.addRoute("/api/v" + i + "/users", "b-exact");
+            wildcardRouter.addRoute("/static" + (i == 0 ? "" : i) + "/*", "b-wild");
+            for (RouterC router : new RouterC[] {linear, trie}) {
+                router.addRoute("/api/v" + (i == 0 ? 1 : i + 2) + "/users", "exact");
+                router.addRoute("/static" + (i == 0 ? "" : i) + "/*", "wild");
+                router.addRoute("/users/:id/orders" + (i == 0 ? "" : i) + "/:oid", "param");
+                router.addRoute("/users/:id/profile" + (i == 0 ? "" : i), "profile");
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        String next(String[] paths) {
+            return paths[next++ & 3];
+        }
+    }
+
+    @Benchmark
+    public String routerBHit(Cursor c) {
+        return wildcardRouter.callRoute(c.next(HITS));
+    }
+
+    @Benchmark
+    public String routerBMiss(Cursor c) {
+        return wildcardRouter.callRoute(c.next(MISSES));
+    }
+
+    @Benchmark
+    public String linearHit(Cursor c) {
+        return linear.callRoute(c.next(HITS));
+    }
+
+    @Benchmark
+    public String linearMiss(Cursor c) {
+        return linear.callRoute(c.next(MISSES));
+    }
+
+    @Benchmark
+    public String trieHit(Cursor c) {
+        return trie.callRoute(c.next(HITS));
+    }
+
+    @Benchmark
+    public String trieMiss(Cursor c) {
+        return trie.callRoute(c.next(MISSES));
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * RouterCImpl (linear wildcard + param scans) vs RouterCTrieImpl, same route table.
+ *
+ * Table: `routes` routes, a third each of
+ *   exact     /api/v1/item{i}
+ *   wildcard  /static{i}/*
+ *   param     /svc{i}/res/:id/sub/:sid
+ * Lookups rotate through paths that hit each kind plus a miss. Param hits and misses
+ * are the linear router's worst case: they fall through both scans.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterCTrieBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int routes;
+
+    private static final int PATHS = 1024;
+
+    private RouterC linear;
+    private RouterC trie;
+    private String[] exactPaths, wildcardPaths, paramPaths, missPaths;
+
+    @Setup
+    public void setup() {
+        linear = new RouterCImpl();
+        trie = new RouterCTrieImpl();
+        int perKind = routes / 3;
+        for (int i = 0; i < perKind; i++) {
+            for (RouterC router : new RouterC[] {linear, trie}) {
+                router.addRoute("/api/v1/item" + i, "exact-" + i);
+                router.addRoute("/static" + i + "/*", "wild-" + i);
+                router.addRoute("/svc" + i + "/res/:id/sub/:sid", "param-" + i);
+            }
+        }
+
+        exactPaths = new String[PATHS];
+        wildcardPaths = new String[PATHS];
+        paramPaths = new String[PATHS];
+        missPaths = new String[PATHS];
+        for (int p = 0; p < PATHS; p++) {
+            int i = (int) ((p * 2654435761L) % perKind);   // spread over the table
+            exactPaths[p] = "/api/v1/item" + i;
+            wildcardPaths[p] = "/static" + i + "/css/site.css";
+            paramPaths[p] = "/svc" + i + "/res/" + p + "/sub/" + (p * 7);
+            missPaths[p] = "/unknown/" + p + "/path";
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        String next(String[] paths) {
+            return paths[next++ & (PATHS - 1)];
+        }
+    }
+
+    @Benchmark
+    public String linearExact(Cursor c) {
+        return linear.callRoute(c.next(exactPaths));
+    }
+
+    @Benchmark
+    public String trieExact(Cursor c) {
+        return trie.callRoute(c.next(exactPaths));
+    }
+
+    @Benchmark
+    public String linearWildcard(Cursor c) {
+        return linear.callRoute(c.next(wildcardPaths));
+    }
+
+    @Benchmark
+    public String trieWildcard(Cursor c) {
+        return trie.callRoute(c.next(wildcardPaths));
+    }
+
+    @Benchmark
+    public String linearParam(Cursor c) {
+        return linear.callRoute(c.next(paramPaths));
+    }
+
+    @Benchmark
+    public String trieParam(Cursor c) {
+        return trie.callRoute(c.next(paramPaths));
+    }
+
+    @Benchmark
+    public String linearMiss(Cursor c) {
+        return linear.callRoute(c.next(missPaths));
+    }
+
+    @Benchmark
+    public String trieMiss(Cursor c) {
+        return trie.callRoute(c.next(missPaths));
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Regression suite: every router implementation on the same REST-shaped table
+ * (RestRouteTable), 1k-100k routes, three request streams:
+ *
+ *   uniform : every route equally likely
+ *   zipfian : a few hot paths (skew 1.1), like real traffic
+ *   miss    : nothing matches, the worst case for the scanning routers
+ *
+ * Reports, per `impl` x `routes` x `workload`:
+ *   ns/op         - AverageTime
+ *   tail latency  - SampleTime (p0.99 / p0.999 / p0.9999 in the JMH output)
+ *   allocations   - run with the GC profiler, read gc.alloc.rate.norm (B/op):
+ *
+ *     java -jar benchmarks.jar RouterSuiteBenchmark -prof gc
+ *
+ * Every impl gets the same addRoute() calls. RouterA only knows exact routes and RouterB
+ * exact + wildcard, so for them param routes are plain strings that never match: compare
+ * their numbers with each other, not the hit rate. The linear RouterCImpl at 100k routes
+ * is slow on purpose, it is the baseline the others are measured against.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterSuiteBenchmark {
+
+    @Param({"RouterAImpl", "RouterBImpl", "RouterCImpl", "RouterCTrieImpl", "CompiledRouter", "CachingRouter"})
+    public String impl;
+
+    @Param({"1000", "10000", "100000"})
+    public int routes;
+
+    @Param({"uniform", "zipfian", "miss"})
+    public String workload;
+
+    private static final int STREAM = 1 << 16;
+
+    private UnaryOperator<String> router;
+    private String[] stream;
+
+    @Setup
+    public void setup() {
+        RestRouteTable table = new RestRouteTable(routes, 42);
+        router = build(impl, table);
+
+        switch (workload) {
+            case "uniform": stream = RestRouteTable.uniform(table.hitPaths, STREAM, 7); break;
+            case "zipfian": stream = RestRouteTable.zipfian(table.hitPaths, STREAM, 1.1, 7); break;
+            case "miss": stream = RestRouteTable.uniform(table.missPaths, STREAM, 7); break;
+            default: throw new IllegalArgumentException("unknown workload " + workload);
+        }
+
+        // a broken table would make the numbers meaningless: check it against the full router
+        RouterC reference = new RouterCTrieImpl();
+        for (int k = 0; k < routes; k++) reference.addRoute(table.routes[k], table.results[k]);
+        for (int k = 0; k < routes; k++) {
+            if (!table.results[k].equals(reference.callRoute(table.hitPaths[k]))) {
+                throw new IllegalStateException(table.hitPaths[k] + " does not hit " + table.routes[k]);
+            }
+        }
+        for (String miss : table.missPaths) {
+            if (reference.callRoute(miss) != null) throw new IllegalStateException(miss + " is not a miss");
+        }
+    }
+
+    private static UnaryOperator<String> build(String impl, RestRouteTable table) {
+        switch (impl) {
+            case "RouterAImpl": {
+                RouterA router = new RouterAImpl();
+                for (int k = 0; k < table.routes.length; k++) router.addRoute(table.routes[k], table.results[k]);
+                return router::callRoute;
+            }
+            case "RouterBImpl": {
+                RouterB router = new RouterBImpl();
+                for (int k = 0; k < table.routes.length; k++) router.addRoute(table.routes[k], table.results[k]);
+                return router::callRoute;
+            }
+            case "CompiledRouter": {
+                CompiledRouter.Builder builder = new CompiledRouter.Builder();
+                for (int k = 0; k < table.routes.length; k++) builder.addRoute(table.routes[k], table.results[k]);
+                return builder.build()::callRoute;
+            }
+            default: {
+                RouterC router;
+                switch (impl) {
+                    case "RouterCImpl": router = new RouterCImpl(); break;
+                    case "RouterCTrieImpl": router = new RouterCTrieImpl(); break;
+                    case "CachingRouter": router = new CachingRouter(new RouterCTrieImpl(), 1024); break;
+                    default: throw new IllegalArgumentException("unknown impl " + impl);
+                }
+                for (int k = 0; k < table.routes.length; k++) router.addRoute(table.routes[k], table.results[k]);
+                return router::callRoute;
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public String lookup(Cursor c) {
+        return router.apply(stream[c.next++ & (STREAM - 1)]);
+    }
+}
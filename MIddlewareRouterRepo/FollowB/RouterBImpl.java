@@ -1,9 +1,15 @@
+public interface RouterB {
+    void addRoute(String path, String result);
+    String callRoute(String path);
+}
+
 import java.util.*;
 
 public class RouterBImpl implements RouterB {
 
     private final Map<String, String> exactRoutes = new HashMap<>();
-    private final List<RouteEntry> wildcardRoutes = new ArrayList<>();
+    private RouteEntry[] wildcardRoutes = new RouteEntry[8];   // plain array: no Iterator per lookup
+    private int wildcardCount;
 
     static class RouteEntry {
         String prefix;
@@ -19,7 +25,9 @@ public class RouterBImpl implements RouterB {
     public void addRoute(String path, String result) {
         if (path.endsWith("/*")) {
             String prefix = path.substring(0, path.length() - 1); // remove '*'
-            wildcardRoutes.add(new RouteEntry(prefix, result));
+            if (wildcardCount == wildcardRoutes.length)
+                wildcardRoutes = Arrays.copyOf(wildcardRoutes, wildcardCount * 2);
+            wildcardRoutes[wildcardCount++] = new RouteEntry(prefix, result);
         } else {
             exactRoutes.put(path, result);
         }
@@ -27,14 +35,16 @@ public class RouterBImpl implements RouterB {
 
     @Override
     public String callRoute(String path) {
-        // 1. Check exact match
-        if (exactRoutes.containsKey(path))
-            return exactRoutes.get(path);
+        // 1. Check exact match (one lookup instead of containsKey + get)
+        String exact = exactRoutes.get(path);
+        if (exact != null)
+            return exact;
 
         // 2. Check wildcard routes — longest prefix wins
         RouteEntry best = null;
 
-        for (RouteEntry r : wildcardRoutes) {
+        for (int i = 0; i < wildcardCount; i++) {
+            RouteEntry r = wildcardRoutes[i];
             if (path.startsWith(r.prefix)) {
                 if (best == null || r.prefix.length() > best.prefix.length()) {
                     best = r;
@@ -0,0 +1,322 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Bounded lookup cache in front of any RouterC, keyed by the full path.
+ *
+ * A few hundred concrete paths carry most of the traffic; for those the wildcard/param
+ * matching is done once and later lookups are one ConcurrentHashMap.get(). Misses are
+ * cached too (NOT_FOUND), so scanners hammering a 404 path don't hit the matcher either.
+ *
+ * Eviction is CLOCK: a ring of `capacity` entries with a referenced bit set on every hit.
+ * When full, the hand clears bits until it finds an unreferenced entry and replaces it.
+ *   - hit path : map get + (at most) one volatile write, no lock
+ *   - miss path: matcher lookup under an optimistic StampedLock read (one volatile read,
+ *     nothing written, so concurrent misses share no cache line), then a short insert
+ *     under a tryLock: if another miss is inserting, this answer just isn't cached,
+ *     so a miss storm never queues on the ring
+ *
+ * The delegates (RouterCImpl, RouterCTrieImpl) are plain HashMaps and tries, so
+ * addRoute() takes the write lock. A lookup that overlapped it fails validation, throws
+ * away whatever it read (or threw) and repeats under the read lock, so no answer ever
+ * comes from a half-built table. Then addRoute() invalidates the whole cache; a
+ * generation number makes sure a lookup that started before the change can't insert its
+ * (now stale) answer after the clear. Don't add routes to the delegate directly while traffic flows; if its routes
+ * change some other safe way (e.g. HotSwapRouter.reload), call invalidate().
+ */
+public class CachingRouter implements RouterC {
+    private static final Object NOT_FOUND = new Object();
+
+    private final RouterC delegate;
+    private final int capacity;
+    private final ConcurrentHashMap<String, Entry> index;
+    private final Entry[] ring;
+    private final StampedLock delegateLock = new StampedLock();
+    private final ReentrantLock ringLock = new ReentrantLock();
+    private int size;                      // guarded by ringLock
+    private int hand;                      // guarded by ringLock
+    private volatile long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder skippedInserts = new LongAdder();
+
+    private static final class Entry {
+        final String path;
+        final Object result;               // String or NOT_FOUND
+        final long generation;
+        volatile boolean referenced;
+
+        Entry(String path, Object result, long generation) {
+            this.path = path;
+            this.result = result;
+            this.generation = generation;
+        }
+    }
+
+    public CachingRouter(RouterC delegate, int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.index = new ConcurrentHashMap<>(capacity * 2);
+        this.ring = new Entry[capacity];
+    }
+
+    @Override
+    public void addRoute(String path, String result) {
+        long stamp = delegateLock.writeLock();
+        try {
+            delegate.addRoute(path, result);
+            invalidate();
+        } finally {
+            delegateLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public String callRoute(String path) {
+        Entry entry = index.get(path);
+        if (entry != null && entry.generation == generation) {
+            if (!entry.referenced) entry.referenced = true;   // skip the write if already set
+            hits.increment();
+            return entry.result == NOT_FOUND ? null : (String) entry.result;
+        }
+
+        misses.increment();
+        long seen = 0;
+        String result = null;
+        long stamp = delegateLock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                seen = generation;
+                result = delegate.callRoute(path);
+            } catch (RuntimeException torn) {
+                stamp = 0;                 // read a table mid-addRoute; validate() would fail too
+            }
+        }
+        if (stamp == 0 || !delegateLock.validate(stamp)) {
+            stamp = delegateLock.readLock();
+            try {
+                seen = generation;
+                result = delegate.callRoute(path);
+            } finally {
+                delegateLock.unlockRead(stamp);
+            }
+        }
+        insert(new Entry(path, result == null ? NOT_FOUND : result, seen));
+        return result;
+    }
+
+    private void insert(Entry entry) {
+        if (!ringLock.tryLock()) {         // contended: answering matters, caching this one doesn't
+            skippedInserts.increment();
+            return;
+        }
+        try {
+            insertLocked(entry);
+        } finally {
+            ringLock.unlock();
+        }
+    }
+
+    private void insertLocked(Entry entry) {
+        if (entry.generation != generation || index.containsKey(entry.path)) return;   // stale or raced
+        if (size < capacity) {
+            ring[size++] = entry;
+        } else {
+            // CLOCK: second chance for referenced entries
+            while (ring[hand].referenced) {
+                ring[hand].referenced = false;
+                hand = (hand + 1) % capacity;
+            }
+            index.remove(ring[hand].path, ring[hand]);
+            evictions.increment();
+            ring[hand] = entry;
+            hand = (hand + 1) % capacity;
+        }
+        index.put(entry.path, entry);
+    }
+
+    public void invalidate() {
+        ringLock.lock();
+        try {
+            generation++;
+            index.clear();
+            Arrays.fill(ring, 0, size, null);
+            size = 0;
+            hand = 0;
+        } finally {
+            ringLock.unlock();
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    // misses answered but not cached because another insert held the ring
+    public long skippedInserts() {
+        return skippedInserts.sum();
+    }
+
+    public double hitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d hitRate=%.3f evictions=%d size=%d",
+                hits(), misses(), hitRate(), evictions(), size());
+    }
+}
+
+////////
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingRouterTest {
+
+    @Test
+    void testCachesHitsAndMisses() {
+        CachingRouter router = new CachingRouter(new RouterCTrieImpl(), 16);
+        router.addRoute("/user/:id", "user");
+
+        assertEquals("user", router.callRoute("/user/1"));
+        assertEquals("user", router.callRoute("/user/1"));
+        assertNull(router.callRoute("/missing"));
+        assertNull(router.callRoute("/missing"));           // negative result cached
+
+        assertEquals(2, router.hits());
+        assertEquals(2, router.misses());
+        assertEquals(0.5, router.hitRate(), 1e-9);
+    }
+
+    @Test
+    void testAddRouteInvalidates() {
+        CachingRouter router = new CachingRouter(new RouterCImpl(), 16);
+        assertNull(router.callRoute("/foo/1"));
+
+        router.addRoute("/foo/*", "wild");
+        assertEquals("wild", router.callRoute("/foo/1"));
+        assertEquals(0, router.hits());
+    }
+
+    @Test
+    void testClockKeepsReferencedEntries() {
+        CachingRouter router = new CachingRouter(new RouterCTrieImpl(), 2);
+        router.callRoute("/hot");
+        router.callRoute("/cold");
+        router.callRoute("/hot");                            // referenced
+
+        router.callRoute("/new");                            // evicts /cold, not /hot
+        assertEquals(2, router.size());
+        assertEquals(1, router.evictions());
+
+        long hitsBefore = router.hits();
+        router.callRoute("/hot");
+        assertEquals(hitsBefore + 1, router.hits());
+    }
+
+    @Test
+    void testBoundedUnderConcurrentMisses() throws InterruptedException {
+        CachingRouter router = new CachingRouter(new RouterCTrieImpl(), 64);
+        router.addRoute("/item/:id", "item");
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) assertEquals("item", router.callRoute("/item/" + (i * 4 + offset) % 500));
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertTrue(router.size() <= 64);
+        assertEquals(40_000, router.hits() + router.misses());
+    }
+
+    @Test
+    void testLookupsWaitForAddRoute() throws Exception {
+        CountDownLatch adding = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        RouterC slowDelegate = new RouterCTrieImpl() {
+            @Override
+            public void addRoute(String path, String result) {
+                adding.countDown();
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.addRoute(path, result);
+            }
+        };
+        CachingRouter router = new CachingRouter(slowDelegate, 16);
+
+        Thread writer = new Thread(() -> router.addRoute("/user/:id", "user"));
+        writer.start();
+        adding.await();
+        AtomicReference<String> seen = new AtomicReference<>();
+        Thread reader = new Thread(() -> seen.set(router.callRoute("/user/1")));
+        reader.start();
+        reader.join(100);
+        assertTrue(reader.isAlive());                        // blocked behind the half-done addRoute
+
+        proceed.countDown();
+        writer.join();
+        reader.join();
+        assertEquals("user", seen.get());
+        assertEquals("user", router.callRoute("/user/1"));
+    }
+
+    @Test
+    void testMissOverlappingAddRouteIsRepeated() {
+        AtomicReference<CachingRouter> router = new AtomicReference<>();
+        AtomicBoolean raced = new AtomicBoolean();
+        RouterC delegate = new RouterCTrieImpl() {
+            @Override
+            public String callRoute(String path) {
+                String result = super.callRoute(path);
+                if (raced.compareAndSet(false, true)) {      // an addRoute lands mid-lookup
+                    Thread writer = new Thread(() -> router.get().addRoute("/user/:id", "user"));
+                    writer.start();
+                    try {
+                        writer.join();                       // optimistic readers don't block writers
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return result;
+            }
+        };
+        router.set(new CachingRouter(delegate, 16));
+
+        assertEquals("user", router.get().callRoute("/user/1"));   // the stale null was thrown away
+        assertEquals("user", router.get().callRoute("/user/1"));
+        assertEquals(1, router.get().hits());
+    }
+}
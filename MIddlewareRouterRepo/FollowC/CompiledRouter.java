@@ -0,0 +1,391 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Read-only snapshot of a RouterCTrieImpl, flattened into arrays.
+ *
+ *   node i   : param[i] (child over ":param", -1 = none), wildcard[i], terminal[i], orders
+ *   edges    : ONE open-addressing table keyed by (parent node, segment text) → child node
+ *   segments : interned at compile time, equal segment text is one String
+ *
+ * Every field is final and never written after the constructor, so any number of threads
+ * can read a published instance without locks. Same matching rules as RouterCTrieImpl.
+ * Build with CompiledRouter.Builder, swap at runtime with HotSwapRouter. Being immutable
+ * it is only a RouteLookup, there is no addRoute() to call by mistake.
+ */
+public final class CompiledRouter implements RouteLookup {
+    private final SegmentMap<String> exactRoutes;
+
+    private final int[] param;
+    private final String[] wildcard;
+    private final String[] terminal;
+    private final int[] terminalOrder;
+    private final int[] minOrder;
+    private final String[][] paramNames;
+    private final int[][] paramSegments;
+
+    private final int[] edgeParent;
+    private final String[] edgeSegment;
+    private final int[] edgeChild;
+    private final int edgeMask;
+
+    private CompiledRouter(RouterCTrieImpl source) {
+        this.exactRoutes = new SegmentMap<>();
+        for (Map.Entry<String, String> e : source.exactRoutes().entrySet()) exactRoutes.put(e.getKey(), e.getValue());
+
+        // number the nodes breadth-first, root = 0
+        List<RouterCTrieImpl.Node> nodes = new ArrayList<>();
+        Map<RouterCTrieImpl.Node, Integer> ids = new IdentityHashMap<>();
+        nodes.add(source.root());
+        ids.put(source.root(), 0);
+        int edges = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            RouterCTrieImpl.Node node = nodes.get(i);
+            for (int slot = 0; slot < node.children.slots(); slot++) {
+                RouterCTrieImpl.Node child = node.children.valueAt(slot);
+                if (child == null) continue;
+                ids.put(child, nodes.size());
+                nodes.add(child);
+                edges++;
+            }
+            if (node.param != null) {
+                ids.put(node.param, nodes.size());
+                nodes.add(node.param);
+            }
+        }
+
+        int n = nodes.size();
+        this.param = new int[n];
+        this.wildcard = new String[n];
+        this.terminal = new String[n];
+        this.terminalOrder = new int[n];
+        this.minOrder = new int[n];
+        this.paramNames = new String[n][];
+        this.paramSegments = new int[n][];
+
+        int tableSize = Integer.highestOneBit(Math.max(1, edges) * 2 - 1) << 1;   // load <= 0.5
+        this.edgeParent = new int[tableSize];
+        this.edgeSegment = new String[tableSize];
+        this.edgeChild = new int[tableSize];
+        this.edgeMask = tableSize - 1;
+
+        Map<String, String> interned = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            RouterCTrieImpl.Node node = nodes.get(i);
+            param[i] = node.param == null ? -1 : ids.get(node.param);
+            wildcard[i] = node.wildcard;
+            terminal[i] = node.terminal;
+            terminalOrder[i] = node.terminalOrder;
+            minOrder[i] = node.minOrder;
+            paramNames[i] = node.paramNames;
+            paramSegments[i] = node.paramSegments;
+            for (int slot = 0; slot < node.children.slots(); slot++) {
+                String segment = node.children.keyAt(slot);
+                if (segment == null) continue;
+                addEdge(i, interned.computeIfAbsent(segment, s -> s), ids.get(node.children.valueAt(slot)));
+            }
+        }
+    }
+
+    private void addEdge(int parent, String segment, int child) {
+        for (int i = edgeHash(parent, segment, 0, segment.length()) & edgeMask; ; i = (i + 1) & edgeMask) {
+            if (edgeSegment[i] == null) {
+                edgeParent[i] = parent;
+                edgeSegment[i] = segment;
+                edgeChild[i] = child;
+                return;
+            }
+        }
+    }
+
+    private int child(int parent, String path, int start, int end) {
+        int length = end - start;
+        for (int i = edgeHash(parent, path, start, end) & edgeMask; ; i = (i + 1) & edgeMask) {
+            String segment = edgeSegment[i];
+            if (segment == null) return -1;
+            if (edgeParent[i] == parent && segment.length() == length
+                    && path.regionMatches(start, segment, 0, length)) return edgeChild[i];
+        }
+    }
+
+    private static int edgeHash(int parent, String path, int start, int end) {
+        int h = SegmentMap.hash(path, start, end) * 0x9E3779B9 + parent;
+        return h ^ (h >>> 15);
+    }
+
+    @Override
+    public String callRoute(String path) {
+        String exact = exactRoutes.get(path);
+        if (exact != null) return exact;
+
+        String wild = matchWildcard(path, null);
+        if (wild != null) return wild;
+
+        int end = RouterCImpl.trimmedEnd(path);
+        if (end < 0) return null;
+        int match = matchParam(0, path, 0, end, Integer.MAX_VALUE);
+        return match < 0 ? null : terminal[match];
+    }
+
+    // same contract as RouterCTrieImpl.match
+    public boolean match(String path, RouteMatch ctx) {
+        ctx.reset(path);
+
+        String exact = exactRoutes.get(path);
+        if (exact != null) return ctx.found(exact);
+
+        String wild = matchWildcard(path, ctx);
+        if (wild != null) return ctx.found(wild);
+
+        int end = RouterCImpl.trimmedEnd(path);
+        if (end < 0) return false;
+        int match = matchParam(0, path, 0, end, Integer.MAX_VALUE);
+        if (match < 0) return false;
+
+        int[] segments = paramSegments[match];
+        int start = 0;
+        for (int segment = 0, p = 0; p < segments.length; segment++) {
+            int slash = path.indexOf('/', start);
+            int segmentEnd = slash < 0 || slash > end ? end : slash;
+            if (segment == segments[p]) ctx.addParam(paramNames[match][p++], start, segmentEnd);
+            start = segmentEnd + 1;
+        }
+        return ctx.found(terminal[match]);
+    }
+
+    private String matchWildcard(String path, RouteMatch ctx) {
+        int node = 0;
+        String best = null;
+        int bestEnd = 0;
+        int start = 0;
+        for (int slash; (slash = path.indexOf('/', start)) >= 0; start = slash + 1) {
+            node = child(node, path, start, slash);
+            if (node < 0) break;
+            if (wildcard[node] != null) {
+                best = wildcard[node];
+                bestEnd = slash + 1;
+            }
+        }
+        if (best != null && ctx != null) ctx.addParam("*", bestEnd, path.length());
+        return best;
+    }
+
+    private int matchParam(int node, String path, int start, int end, int limit) {
+        if (minOrder[node] >= limit) return -1;
+        if (start > end) return terminal[node] != null && terminalOrder[node] < limit ? node : -1;
+
+        int slash = path.indexOf('/', start);
+        int segmentEnd = slash < 0 || slash > end ? end : slash;
+        int first = child(node, path, start, segmentEnd);
+        int second = param[node];
+
+        if (first >= 0 && second >= 0 && minOrder[second] < minOrder[first]) {
+            int swap = first;
+            first = second;
+            second = swap;
+        }
+        int best = -1;
+        if (first >= 0) {
+            best = matchParam(first, path, segmentEnd + 1, end, limit);
+            if (best >= 0) limit = terminalOrder[best];
+        }
+        if (second >= 0) {
+            int other = matchParam(second, path, segmentEnd + 1, end, limit);
+            if (other >= 0) best = other;
+        }
+        return best;
+    }
+
+    int nodeCount() {
+        return param.length;
+    }
+
+    public static final class Builder {
+        private final RouterCTrieImpl routes = new RouterCTrieImpl();
+
+        public Builder addRoute(String path, String result) {
+            routes.addRoute(path, result);
+            return this;
+        }
+
+        // the builder stays usable: later routes go into later builds only
+        public CompiledRouter build() {
+            return new CompiledRouter(routes);
+        }
+    }
+}
+
+/**
+ * Route table that can be replaced while traffic flows.
+ *
+ * Readers: one volatile read of the current CompiledRouter, then lock-free lookups on
+ * immutable arrays. Writers: build a new CompiledRouter off to the side, then one
+ * AtomicReference.set(). A reader sees either the old table or the new one, never a mix.
+ *
+ * Every write compiles a whole new table, O(routes): adding N routes one addRoute() at
+ * a time is O(N²). Register a batch with addRoutes() (one compile for all of them), or
+ * replace the table with reload(). Lookups go through RouteLookup only.
+ */
+public class HotSwapRouter implements RouteLookup {
+    private final AtomicReference<CompiledRouter> current;
+    private CompiledRouter.Builder builder = new CompiledRouter.Builder();   // writers only, under `this`
+
+    public HotSwapRouter() {
+        current = new AtomicReference<>(builder.build());
+    }
+
+    // one route, one full recompile: fine for an occasional route, not for bulk loading
+    public synchronized void addRoute(String path, String result) {
+        builder.addRoute(path, result);
+        current.set(builder.build());
+    }
+
+    // adds the routes `more` registers to the current table, compiled and published once
+    public synchronized void addRoutes(Consumer<CompiledRouter.Builder> more) {
+        more.accept(builder);
+        current.set(builder.build());
+    }
+
+    // replaces the whole table with the routes `config` adds
+    public synchronized void reload(Consumer<CompiledRouter.Builder> config) {
+        CompiledRouter.Builder next = new CompiledRouter.Builder();
+        config.accept(next);
+        current.set(next.build());
+        builder = next;
+    }
+
+    @Override
+    public String callRoute(String path) {
+        return current.get().callRoute(path);
+    }
+
+    public boolean match(String path, RouteMatch ctx) {
+        return current.get().match(path, ctx);
+    }
+
+    // the table in use right now; stays valid (and unchanged) after later reloads
+    public CompiledRouter snapshot() {
+        return current.get();
+    }
+}
+
+////////
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledRouterTest {
+
+    @Test
+    void testSamePrecedenceAsTrie() {
+        CompiledRouter router = new CompiledRouter.Builder()
+                .addRoute("/foo/:id", "param")
+                .addRoute("/foo/*", "wild")
+                .addRoute("/foo/bar/*", "bar-wild")
+                .addRoute("/foo/123", "exact")
+                .addRoute("/a/:x/c", "first")
+                .addRoute("/a/b/:y", "second")
+                .build();
+
+        assertEquals("exact", router.callRoute("/foo/123"));
+        assertEquals("bar-wild", router.callRoute("/foo/bar/x"));
+        assertEquals("wild", router.callRoute("/foo/anything"));
+        assertEquals("first", router.callRoute("/a/b/c"));
+        assertEquals("second", router.callRoute("/a/b/d"));
+        assertNull(router.callRoute("/a/b"));
+    }
+
+    @Test
+    void testMatchesTrieOnRandomTables() {
+        Random random = new Random(11);
+        String[] words = {"", "a", "b", "c", ":p", ":q"};
+        RouteMatch expected = new RouteMatch();
+        RouteMatch actual = new RouteMatch();
+        for (int round = 0; round < 200; round++) {
+            RouterCTrieImpl trie = new RouterCTrieImpl();
+            CompiledRouter.Builder builder = new CompiledRouter.Builder();
+            for (int r = 0; r < 20; r++) {
+                String route = randomPath(random, words) + (random.nextInt(4) == 0 ? "/*" : "");
+                trie.addRoute(route, "r" + r);
+                builder.addRoute(route, "r" + r);
+            }
+            CompiledRouter compiled = builder.build();
+            for (int q = 0; q < 50; q++) {
+                String path = randomPath(random, new String[] {"", "a", "b", "c", "d"});
+                assertEquals(trie.callRoute(path), compiled.callRoute(path), path);
+                assertEquals(trie.match(path, expected), compiled.match(path, actual), path);
+                assertEquals(expected.paramCount(), actual.paramCount(), path);
+                for (int i = 0; i < expected.paramCount(); i++) {
+                    assertEquals(expected.paramName(i), actual.paramName(i));
+                    assertEquals(expected.paramStart(i), actual.paramStart(i));
+                    assertEquals(expected.paramEnd(i), actual.paramEnd(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testReadersSeeWholeTablesDuringReloads() throws InterruptedException {
+        HotSwapRouter router = new HotSwapRouter();
+        router.reload(b -> b.addRoute("/v/:id", "one").addRoute("/x/*", "one"));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                while (running.get()) {
+                    CompiledRouter table = router.snapshot();
+                    String a = table.callRoute("/v/1");
+                    String b = table.callRoute("/x/y");
+                    if (a == null || !a.equals(b)) failure.set(a + " vs " + b);
+                }
+            });
+            readers[t].start();
+        }
+        for (int i = 0; i < 2_000; i++) {
+            String version = i % 2 == 0 ? "two" : "one";
+            router.reload(b -> b.addRoute("/v/:id", version).addRoute("/x/*", version));
+        }
+        running.set(false);
+        for (Thread reader : readers) reader.join();
+
+        assertNull(failure.get());
+        assertEquals("one", router.callRoute("/v/1"));
+    }
+
+    @Test
+    void testAddRoutePublishesImmediately() {
+        HotSwapRouter router = new HotSwapRouter();
+        CompiledRouter before = router.snapshot();
+        router.addRoute("/user/:id", "user");
+
+        assertEquals("user", router.callRoute("/user/7"));
+        assertNull(before.callRoute("/user/7"));            // old snapshot unchanged
+    }
+
+    @Test
+    void testAddRoutesCompilesOnceAndKeepsExistingRoutes() {
+        HotSwapRouter router = new HotSwapRouter();
+        router.addRoute("/user/:id", "user");
+        CompiledRouter before = router.snapshot();
+        router.addRoutes(b -> {
+            for (int i = 0; i < 100; i++) b.addRoute("/item" + i, "item" + i);
+        });
+
+        assertEquals("user", router.callRoute("/user/7"));
+        assertEquals("item42", router.callRoute("/item42"));
+        assertNull(before.callRoute("/item42"));
+    }
+
+    private static String randomPath(Random random, String[] words) {
+        StringBuilder path = new StringBuilder();
+        int segments = random.nextInt(4);
+        for (int i = 0; i < segments; i++) path.append('/').append(words[random.nextInt(words.length)]);
+        return path.toString();
+    }
+}
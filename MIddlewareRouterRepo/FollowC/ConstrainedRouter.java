@@ -0,0 +1,373 @@
+import java.util.*;
+
+/**
+ * RouterCTrieImpl plus constrained segments:
+ *
+ *   /user/:id(\d+)            param that only matches digits
+ *   /files/([a-z]+\.txt)      regex segment, matched but not captured
+ *
+ * Every other rule is RouterCTrieImpl's (exact > longest wildcard > first registered
+ * param route); an unconstrained ":id" still matches any segment. A constraint matches
+ * one whole segment and can't contain '/'. Constraints are checked before the path is cut
+ * into segments: ":file([^/]+)", an unclosed ":id(" or text after the closing ')' are an
+ * IllegalArgumentException, not a param with a garbled name.
+ *
+ * All constraints at one trie position share one SegmentAutomaton (a DFA over the union
+ * of their regexes), rebuilt when a route adds a new one there. At lookup the segment is
+ * scanned once and the DFA's final state lists the constrained edges worth descending,
+ * so 50 competing "/items/:x(...)" routes cost one scan, not 50 Pattern.matcher() calls.
+ */
+public class ConstrainedRouter implements RouterC {
+
+    private final Map<String, String> exactRoutes = new HashMap<>();
+    private final Node root = new Node();
+    private int nextOrder;
+
+    static final class Node {
+        final SegmentMap<Node> children = new SegmentMap<>();
+        Node param;                                           // unconstrained ":name"
+        final List<String> regexes = new ArrayList<>();       // constrained edges, by index
+        Node[] constrained = new Node[0];
+        SegmentAutomaton automaton;                           // over `regexes`, null if none
+        String wildcard;
+        String terminal;
+        int terminalOrder = Integer.MAX_VALUE;
+        String[] paramNames;
+        int[] paramSegments;
+        int minOrder = Integer.MAX_VALUE;
+
+        Node child(String segment) {
+            return children.computeIfAbsent(segment, s -> new Node());
+        }
+
+        Node constrainedChild(String regex) {
+            int i = regexes.indexOf(regex);
+            if (i >= 0) return constrained[i];
+            List<String> grown = new ArrayList<>(regexes);
+            grown.add(regex);
+            SegmentAutomaton rebuilt = new SegmentAutomaton(grown);   // throws on bad regex: node unchanged
+            regexes.add(regex);
+            automaton = rebuilt;
+            constrained = Arrays.copyOf(constrained, constrained.length + 1);
+            return constrained[constrained.length - 1] = new Node();
+        }
+    }
+
+    @Override
+    public void addRoute(String path, String result) {
+        checkConstraints(path);
+        String[] tokens = path.split("/");
+        boolean constrained = false;
+        for (String token : tokens) constrained |= isRegex(token);
+
+        if (path.contains(":") || constrained) {      // param route
+            addParamRoute(tokens, result);
+        }
+        else if (path.endsWith("/*")) {               // wildcard route
+            Node node = root;
+            String prefix = path.substring(0, path.length() - 1);
+            int start = 0;
+            for (int slash; (slash = prefix.indexOf('/', start)) >= 0; start = slash + 1) {
+                node = node.child(prefix.substring(start, slash));
+            }
+            if (node.wildcard == null) node.wildcard = result;
+        }
+        else {                                        // exact route
+            exactRoutes.put(path, result);
+        }
+    }
+
+    // every "(...)" opening a segment or following ":name" must close in that segment
+    private static void checkConstraints(String path) {
+        for (int start = 0; start < path.length(); ) {
+            int slash = path.indexOf('/', start);
+            int segmentEnd = slash < 0 ? path.length() : slash;
+            char first = path.charAt(start);
+            int open = first == '(' ? start : first == ':' ? path.indexOf('(', start) : -1;
+            if (open < 0 || open >= segmentEnd) {
+                start = segmentEnd + 1;
+                continue;
+            }
+            int close = closingParen(path, open);
+            if (close + 1 < path.length() && path.charAt(close + 1) != '/') {
+                throw new IllegalArgumentException("text after the constraint at " + (close + 1) + " in \"" + path + "\"");
+            }
+            start = close + 2;
+        }
+    }
+
+    // index of the ')' closing path[open]; escapes and [classes] don't count
+    private static int closingParen(String path, int open) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = open; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '\\' && i + 1 < path.length()) c = path.charAt(++i);
+            else if (inClass) inClass = c != ']';
+            else if (c == '[') inClass = true;
+            else if (c == '(') depth++;
+            else if (c == ')' && --depth == 0) return i;
+            if (c == '/') throw new IllegalArgumentException("constraint can't contain '/' at " + i + " in \"" + path + "\"");
+        }
+        throw new IllegalArgumentException("unbalanced '(' at " + open + " in \"" + path + "\"");
+    }
+
+    private static boolean isRegex(String token) {
+        return token.length() >= 2 && token.charAt(0) == '(' && token.charAt(token.length() - 1) == ')';
+    }
+
+    private void addParamRoute(String[] tokens, String result) {
+        // resolve the whole path first, so a bad regex leaves no half-registered route
+        Node node = root;
+        Node[] path = new Node[tokens.length];
+        List<String> names = new ArrayList<>();
+        List<Integer> segments = new ArrayList<>();
+        for (int i = 0; i < tokens.length; i++) {
+            String token = tokens[i];
+            int open = token.indexOf('(');
+            if (token.startsWith(":") && open > 0 && token.endsWith(")")) {          // :name(regex)
+                node = node.constrainedChild(token.substring(open + 1, token.length() - 1));
+                names.add(token.substring(1, open));
+                segments.add(i);
+            } else if (isRegex(token)) {                                             // (regex)
+                node = node.constrainedChild(token.substring(1, token.length() - 1));
+            } else if (token.startsWith(":")) {
+                if (node.param == null) node.param = new Node();
+                node = node.param;
+                names.add(token.substring(1));
+                segments.add(i);
+            } else {
+                node = node.child(token);
+            }
+            path[i] = node;
+        }
+
+        int order = nextOrder++;
+        root.minOrder = Math.min(root.minOrder, order);
+        for (Node n : path) n.minOrder = Math.min(n.minOrder, order);
+        if (node.terminal == null) {
+            node.terminal = result;
+            node.terminalOrder = order;
+            node.paramNames = names.toArray(new String[0]);
+            node.paramSegments = segments.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    @Override
+    public String callRoute(String path) {
+        String exact = exactRoutes.get(path);
+        if (exact != null) return exact;
+
+        String wildcard = matchWildcard(path);
+        if (wildcard != null) return wildcard;
+
+        int end = RouterCImpl.trimmedEnd(path);
+        if (end < 0) return null;
+        Node match = matchParam(root, path, 0, end, Integer.MAX_VALUE);
+        return match == null ? null : match.terminal;
+    }
+
+    // same contract as RouterCTrieImpl.match; regex segments without a name are not params
+    public boolean match(String path, RouteMatch ctx) {
+        ctx.reset(path);
+        String exact = exactRoutes.get(path);
+        if (exact != null) return ctx.found(exact);
+
+        String wildcard = matchWildcard(path);
+        if (wildcard != null) {
+            ctx.addParam("*", wildcardEnd(path), path.length());
+            return ctx.found(wildcard);
+        }
+
+        int end = RouterCImpl.trimmedEnd(path);
+        if (end < 0) return false;
+        Node match = matchParam(root, path, 0, end, Integer.MAX_VALUE);
+        if (match == null) return false;
+
+        int[] paramSegments = match.paramSegments;
+        int start = 0;
+        for (int segment = 0, p = 0; p < paramSegments.length; segment++) {
+            int slash = path.indexOf('/', start);
+            int segmentEnd = slash < 0 || slash > end ? end : slash;
+            if (segment == paramSegments[p]) ctx.addParam(match.paramNames[p++], start, segmentEnd);
+            start = segmentEnd + 1;
+        }
+        return ctx.found(match.terminal);
+    }
+
+    private String matchWildcard(String path) {
+        Node node = root;
+        String best = null;
+        int start = 0;
+        for (int slash; (slash = path.indexOf('/', start)) >= 0; start = slash + 1) {
+            node = node.children.get(path, start, slash);
+            if (node == null) break;
+            if (node.wildcard != null) best = node.wildcard;
+        }
+        return best;
+    }
+
+    // where the "*" tail starts, for a path matchWildcard() matched
+    private int wildcardEnd(String path) {
+        Node node = root;
+        int bestEnd = 0;
+        int start = 0;
+        for (int slash; (slash = path.indexOf('/', start)) >= 0; start = slash + 1) {
+            node = node.children.get(path, start, slash);
+            if (node == null) break;
+            if (node.wildcard != null) bestEnd = slash + 1;
+        }
+        return bestEnd;
+    }
+
+    // best (lowest order) terminal below `limit`; each edge can only return a better one
+    private static Node matchParam(Node node, String path, int start, int end, int limit) {
+        if (node.minOrder >= limit) return null;
+        if (start > end) return node.terminal != null && node.terminalOrder < limit ? node : null;
+
+        int slash = path.indexOf('/', start);
+        int segmentEnd = slash < 0 || slash > end ? end : slash;
+        Node best = null;
+
+        Node literal = node.children.get(path, start, segmentEnd);
+        if (literal != null) {
+            best = matchParam(literal, path, segmentEnd + 1, end, limit);
+            if (best != null) limit = best.terminalOrder;
+        }
+        if (node.param != null) {
+            Node other = matchParam(node.param, path, segmentEnd + 1, end, limit);
+            if (other != null) {
+                best = other;
+                limit = other.terminalOrder;
+            }
+        }
+        if (node.automaton != null) {
+            for (int i : node.automaton.accepts(node.automaton.run(path, start, segmentEnd))) {
+                Node other = matchParam(node.constrained[i], path, segmentEnd + 1, end, limit);
+                if (other != null) {
+                    best = other;
+                    limit = other.terminalOrder;
+                }
+            }
+        }
+        return best;
+    }
+}
+
+////////
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConstrainedRouterTest {
+
+    @Test
+    void testConstraintsPickTheRoute() {
+        ConstrainedRouter router = new ConstrainedRouter();
+        router.addRoute("/user/:id(\\d+)", "by-id");
+        router.addRoute("/user/:name([a-z][a-z0-9_]*)", "by-name");
+        router.addRoute("/files/([a-z]+\\.txt)", "text-file");
+        router.addRoute("/user/:any", "fallback");
+
+        assertEquals("by-id", router.callRoute("/user/42"));
+        assertEquals("by-name", router.callRoute("/user/alice_1"));
+        assertEquals("fallback", router.callRoute("/user/42abc"));
+        assertEquals("text-file", router.callRoute("/files/notes.txt"));
+        assertNull(router.callRoute("/files/notes.pdf"));
+    }
+
+    @Test
+    void testFirstRegisteredStillWins() {
+        ConstrainedRouter router = new ConstrainedRouter();
+        router.addRoute("/a/:x/c", "any-first");
+        router.addRoute("/a/:n(\\d+)/c", "digits");
+        router.addRoute("/a/:v(v\\d+)/:rest", "versioned");
+
+        assertEquals("any-first", router.callRoute("/a/1/c"));
+        assertEquals("versioned", router.callRoute("/a/v2/x"));
+    }
+
+    @Test
+    void testMatchCapturesNamedConstraints() {
+        ConstrainedRouter router = new ConstrainedRouter();
+        router.addRoute("/order/:oid(\\d+)/(items|lines)/:iid", "item");
+        RouteMatch ctx = new RouteMatch();
+
+        assertTrue(router.match("/order/10/lines/55", ctx));
+        assertEquals(2, ctx.paramCount());
+        assertEquals("10", ctx.param("oid"));
+        assertEquals("55", ctx.param("iid"));
+        assertFalse(router.match("/order/10/other/55", ctx));
+    }
+
+    @Test
+    void testBadRegexLeavesRouterUnchanged() {
+        ConstrainedRouter router = new ConstrainedRouter();
+        router.addRoute("/a/:n(\\d+)", "digits");
+        assertThrows(IllegalArgumentException.class, () -> router.addRoute("/a/:n(^x)", "bad"));
+        assertEquals("digits", router.callRoute("/a/7"));
+        assertNull(router.callRoute("/a/x"));
+    }
+
+    @Test
+    void testMalformedConstraintsRejectedBeforeSplitting() {
+        ConstrainedRouter router = new ConstrainedRouter();
+        router.addRoute("/files/:name([a-z]+)", "file");
+        for (String bad : new String[] {"/files/:file([^/]+)", "/files/:id(", "/files/:id(\\d+", "/x/(a/b)",
+                "/files/:id(\\d+)x", "/files/:id(a\\/b)", "/files/(a(b)/c"}) {
+            assertThrows(IllegalArgumentException.class, () -> router.addRoute(bad, "bad"), bad);
+        }
+        assertEquals("file", router.callRoute("/files/abc"));
+        assertNull(router.callRoute("/files/42"));
+
+        router.addRoute("/files/:id(\\(\\d+[)(])/raw", "escaped");       // escaped and in-class parens
+        assertEquals("escaped", router.callRoute("/files/(12)/raw"));
+    }
+
+    @Test
+    void testMatchesPerRoutePatternScan() {
+        Random random = new Random(9);
+        String[] tokens = {"a", "b", ":p", ":d(\\d+)", ":l([a-c]+)", "(b|1)", ":e(a\\d?)"};
+        for (int round = 0; round < 200; round++) {
+            ConstrainedRouter router = new ConstrainedRouter();
+            List<Pattern[]> naive = new ArrayList<>();
+            List<String> results = new ArrayList<>();
+            for (int r = 0; r < 15; r++) {
+                int length = 1 + random.nextInt(3);
+                StringBuilder route = new StringBuilder();
+                Pattern[] segments = new Pattern[length + 1];
+                segments[0] = Pattern.compile("");
+                for (int s = 1; s <= length; s++) {
+                    String token = tokens[random.nextInt(tokens.length)];
+                    route.append('/').append(token);
+                    int open = token.indexOf('(');
+                    segments[s] = open >= 0 ? Pattern.compile(token.substring(open + 1, token.length() - 1))
+                            : token.startsWith(":") ? Pattern.compile("[^/]*") : Pattern.compile(Pattern.quote(token));
+                }
+                route.append("/:tail");                  // always a param route
+                router.addRoute(route.toString(), "r" + r);
+                naive.add(segments);
+                results.add("r" + r);
+            }
+            for (int q = 0; q < 40; q++) {
+                StringBuilder path = new StringBuilder();
+                String[] words = {"a", "b", "1", "23", "abc", "a7", ""};
+                for (int s = 1 + random.nextInt(4); s > 0; s--) path.append('/').append(words[random.nextInt(words.length)]);
+                String expected = null;
+                String[] parts = path.toString().split("/", -1);
+                for (int r = 0; r < naive.size() && expected == null; r++) {
+                    Pattern[] segments = naive.get(r);
+                    if (parts.length != segments.length + 1) continue;
+                    boolean ok = true;
+                    for (int s = 0; s < segments.length && ok; s++) ok = segments[s].matcher(parts[s]).matches();
+                    if (ok) expected = results.get(r);
+                }
+                if (!path.toString().endsWith("/")) assertEquals(expected, router.callRoute(path.toString()), path.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+import java.util.*;
+
+public enum HttpMethod {
+    GET, HEAD, POST, PUT, DELETE, PATCH, OPTIONS, TRACE, CONNECT;
+
+    private static final HttpMethod[] VALUES = values();
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    // methods in an allowedMethods() mask, e.g. for the Allow header
+    public static List<HttpMethod> fromMask(int mask) {
+        List<HttpMethod> methods = new ArrayList<>();
+        for (HttpMethod method : VALUES) {
+            if ((mask & method.bit()) != 0) methods.add(method);
+        }
+        return methods;
+    }
+}
+
+/**
+ * Method-aware RouterC: one trie for all methods instead of one RouterCImpl per method.
+ *
+ * The segment structure (SegmentMap children, ":param" edge) exists once; only the
+ * per-route data hangs off the nodes as arrays indexed by HttpMethod.ordinal(), plus a
+ * bit mask saying which methods have a route there. For one method the rules are
+ * exactly RouterCTrieImpl's (exact > longest wildcard > first-registered param).
+ *
+ * No route for the method, but one for another method → 405 with the allowed methods,
+ * found in the same trie by the same walk with "any method" instead of one bit.
+ */
+public class MethodRouter {
+    public static final int OK = 200;
+    public static final int NOT_FOUND = 404;
+    public static final int METHOD_NOT_ALLOWED = 405;
+
+    private static final int METHODS = HttpMethod.values().length;
+
+    private final SegmentMap<Exact> exactRoutes = new SegmentMap<>();
+    private final Node root = new Node();
+    private int nextOrder;
+
+    static final class Exact {
+        final String[] results = new String[METHODS];
+        int mask;
+    }
+
+    static final class Node {
+        final SegmentMap<Node> children = new SegmentMap<>();
+        Node param;
+        String[] wildcard;                  // by method, allocated on first wildcard here
+        int wildcardMask;
+        String[] terminal;                  // by method, allocated on first param route ending here
+        int[] terminalOrder;
+        String[][] paramNames;              // by method: names can differ (GET /u/:id, DELETE /u/:uid)
+        int[] paramSegments;                // same shape for every method ending here
+        int terminalMask;
+        int minOrder = Integer.MAX_VALUE;   // any method: a valid lower bound for each of them
+
+        Node child(String segment) {
+            return children.computeIfAbsent(segment, s -> new Node());
+        }
+    }
+
+    public void addRoute(HttpMethod method, String path, String result) {
+        int m = method.ordinal();
+        if (path.contains(":")) {                     // param route
+            addParamRoute(m, path.split("/"), result);
+        }
+        else if (path.endsWith("/*")) {               // wildcard route
+            Node node = root;
+            String prefix = path.substring(0, path.length() - 1);
+            int start = 0;
+            for (int slash; (slash = prefix.indexOf('/', start)) >= 0; start = slash + 1) {
+                node = node.child(prefix.substring(start, slash));
+            }
+            if (node.wildcard == null) node.wildcard = new String[METHODS];
+            if (node.wildcard[m] == null) node.wildcard[m] = result;
+            node.wildcardMask |= method.bit();
+        }
+        else {                                        // exact route
+            Exact exact = exactRoutes.computeIfAbsent(path, p -> new Exact());
+            exact.results[m] = result;
+            exact.mask |= method.bit();
+        }
+    }
+
+    private void addParamRoute(int m, String[] tokens, String result) {
+        int order = nextOrder++;
+        Node node = root;
+        node.minOrder = Math.min(node.minOrder, order);
+        List<String> names = new ArrayList<>();
+        List<Integer> segments = new ArrayList<>();
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].startsWith(":")) {
+                if (node.param == null) node.param = new Node();
+                node = node.param;
+                names.add(tokens[i].substring(1));
+                segments.add(i);
+            } else {
+                node = node.child(tokens[i]);
+            }
+            node.minOrder = Math.min(node.minOrder, order);
+        }
+        if (node.terminal == null) {
+            node.terminal = new String[METHODS];
+            node.terminalOrder = new int[METHODS];
+            node.paramNames = new String[METHODS][];
+            node.paramSegments = segments.stream().mapToInt(Integer::intValue).toArray();
+        }
+        if (node.terminal[m] == null) {
+            node.terminal[m] = result;
+            node.terminalOrder[m] = order;
+            node.paramNames[m] = names.toArray(new String[0]);
+            node.terminalMask |= 1 << m;
+        }
+    }
+
+    // null for both 404 and 405; use route() to tell them apart
+    public String callRoute(HttpMethod method, String path) {
+        int m = method.ordinal();
+        Exact exact = exactRoutes.get(path);
+        if (exact != null && exact.results[m] != null) return exact.results[m];
+
+        String wildcard = matchWildcard(path, m, null);
+        if (wildcard != null) return wildcard;
+
+        int end = RouterCImpl.trimmedEnd(path);
+        if (end < 0) return null;
+        Node match = matchParam(root, path, 0, end, m, Integer.MAX_VALUE);
+        return match == null ? null : match.terminal[m];
+    }
+
+    /**
+     * 200: ctx holds the result and params. 405: ctx.allowedMethods() lists the methods
+     * the path exists for. 404: no route under any method.
+     */
+    public int route(HttpMethod method, String path, RouteMatch ctx) {
+        ctx.reset(path);
+        int m = method.ordinal();
+
+        Exact exact = exactRoutes.get(path);
+        if (exact != null && exact.results[m] != null) {
+            ctx.found(exact.results[m]);
+            return OK;
+        }
+
+        String wildcard = matchWildcard(path, m, ctx);
+        if (wildcard != null) {
+            ctx.found(wildcard);
+            return OK;
+        }
+
+        int end = RouterCImpl.trimmedEnd(path);
+        Node match = end < 0 ? null : matchParam(root, path, 0, end, m, Integer.MAX_VALUE);
+        if (match != null) {
+            int[] paramSegments = match.paramSegments;
+            int start = 0;
+            for (int segment = 0, p = 0; p < paramSegments.length; segment++) {
+                int slash = path.indexOf('/', start);
+                int segmentEnd = slash < 0 || slash > end ? end : slash;
+                if (segment == paramSegments[p]) ctx.addParam(match.paramNames[m][p++], start, segmentEnd);
+                start = segmentEnd + 1;
+            }
+            ctx.found(match.terminal[m]);
+            return OK;
+        }
+
+        // slow path, misses only: which methods would have matched?
+        int allowed = (exact == null ? 0 : exact.mask) | wildcardMask(path) | (end < 0 ? 0 : paramMask(root, path, 0, end));
+        ctx.allowedMethods(allowed);
+        return allowed == 0 ? NOT_FOUND : METHOD_NOT_ALLOWED;
+    }
+
+    private String matchWildcard(String path, int m, RouteMatch ctx) {
+        Node node = root;
+        String best = null;
+        int bestEnd = 0;
+        int start = 0;
+        for (int slash; (slash = path.indexOf('/', start)) >= 0; start = slash + 1) {
+            node = node.children.get(path, start, slash);
+            if (node == null) break;
+            if ((node.wildcardMask & (1 << m)) != 0) {
+                best = node.wildcard[m];
+                bestEnd = slash + 1;
+            }
+        }
+        if (best != null && ctx != null) ctx.addParam("*", bestEnd, path.length());
+        return best;
+    }
+
+    private static Node matchParam(Node node, String path, int start, int end, int m, int limit) {
+        if (node.minOrder >= limit) return null;
+        if (start > end) {
+            return (node.terminalMask & (1 << m)) != 0 && node.terminalOrder[m] < limit ? node : null;
+        }
+
+        int slash = path.indexOf('/', start);
+        int segmentEnd = slash < 0 || slash > end ? end : slash;
+        Node literal = node.children.get(path, start, segmentEnd);
+        Node param = node.param;
+
+        if (literal != null && param != null && param.minOrder < literal.minOrder) {
+            Node swap = literal;
+            literal = param;
+            param = swap;
+        }
+        Node best = null;
+        if (literal != null) {
+            best = matchParam(literal, path, segmentEnd + 1, end, m, limit);
+            if (best != null) limit = best.terminalOrder[m];
+        }
+        if (param != null) {
+            Node other = matchParam(param, path, segmentEnd + 1, end, m, limit);
+            if (other != null) best = other;
+        }
+        return best;
+    }
+
+    private int wildcardMask(String path) {
+        Node node = root;
+        int mask = 0;
+        int start = 0;
+        for (int slash; (slash = path.indexOf('/', start)) >= 0; start = slash + 1) {
+            node = node.children.get(path, start, slash);
+            if (node == null) break;
+            mask |= node.wildcardMask;
+        }
+        return mask;
+    }
+
+    // every method with a param route matching the path (no pruning: all branches count)
+    private static int paramMask(Node node, String path, int start, int end) {
+        if (start > end) return node.terminalMask;
+
+        int slash = path.indexOf('/', start);
+        int segmentEnd = slash < 0 || slash > end ? end : slash;
+        Node literal = node.children.get(path, start, segmentEnd);
+        int mask = literal == null ? 0 : paramMask(literal, path, segmentEnd + 1, end);
+        return node.param == null ? mask : mask | paramMask(node.param, path, segmentEnd + 1, end);
+    }
+}
+
+////////
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MethodRouterTest {
+
+    @Test
+    void testRoutesPerMethod() {
+        MethodRouter router = new MethodRouter();
+        router.addRoute(HttpMethod.GET, "/user/:id", "get-user");
+        router.addRoute(HttpMethod.DELETE, "/user/:uid", "delete-user");
+        router.addRoute(HttpMethod.POST, "/user", "create-user");
+        RouteMatch ctx = new RouteMatch();
+
+        assertEquals("get-user", router.callRoute(HttpMethod.GET, "/user/1"));
+        assertEquals("delete-user", router.callRoute(HttpMethod.DELETE, "/user/1"));
+        assertEquals("create-user", router.callRoute(HttpMethod.POST, "/user"));
+
+        assertEquals(MethodRouter.OK, router.route(HttpMethod.DELETE, "/user/9", ctx));
+        assertEquals("9", ctx.param("uid"));
+        assertNull(ctx.param("id"));
+    }
+
+    @Test
+    void testMethodNotAllowedVsNotFound() {
+        MethodRouter router = new MethodRouter();
+        router.addRoute(HttpMethod.GET, "/user/:id", "get-user");
+        router.addRoute(HttpMethod.PUT, "/user/:id", "put-user");
+        router.addRoute(HttpMethod.GET, "/files/*", "files");
+        RouteMatch ctx = new RouteMatch();
+
+        assertEquals(MethodRouter.METHOD_NOT_ALLOWED, router.route(HttpMethod.POST, "/user/1", ctx));
+        assertEquals(List.of(HttpMethod.GET, HttpMethod.PUT), HttpMethod.fromMask(ctx.allowedMethods()));
+
+        assertEquals(MethodRouter.METHOD_NOT_ALLOWED, router.route(HttpMethod.DELETE, "/files/a", ctx));
+        assertEquals(HttpMethod.GET.bit(), ctx.allowedMethods());
+
+        assertEquals(MethodRouter.NOT_FOUND, router.route(HttpMethod.GET, "/nothing", ctx));
+        assertNull(router.callRoute(HttpMethod.POST, "/user/1"));
+    }
+
+    @Test
+    void testPrecedenceIsPerMethod() {
+        MethodRouter router = new MethodRouter();
+        router.addRoute(HttpMethod.GET, "/foo/123", "get-exact");
+        router.addRoute(HttpMethod.POST, "/foo/*", "post-wild");
+        router.addRoute(HttpMethod.GET, "/foo/:id", "get-param");
+
+        // the GET-only exact route must not shadow POST's wildcard, and vice versa
+        assertEquals("get-exact", router.callRoute(HttpMethod.GET, "/foo/123"));
+        assertEquals("post-wild", router.callRoute(HttpMethod.POST, "/foo/123"));
+        assertEquals("get-param", router.callRoute(HttpMethod.GET, "/foo/7"));
+    }
+
+    @Test
+    void testMatchesOneTriePerMethod() {
+        Random random = new Random(5);
+        String[] words = {"", "a", "b", ":p", ":q"};
+        HttpMethod[] methods = {HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT};
+        for (int round = 0; round < 200; round++) {
+            MethodRouter shared = new MethodRouter();
+            Map<HttpMethod, RouterC> separate = new EnumMap<>(HttpMethod.class);
+            for (HttpMethod method : methods) separate.put(method, new RouterCTrieImpl());
+
+            for (int r = 0; r < 20; r++) {
+                HttpMethod method = methods[random.nextInt(methods.length)];
+                String route = randomPath(random, words) + (random.nextInt(4) == 0 ? "/*" : "");
+                shared.addRoute(method, route, "r" + r);
+                separate.get(method).addRoute(route, "r" + r);
+            }
+            for (int q = 0; q < 50; q++) {
+                String path = randomPath(random, new String[] {"", "a", "b", "c"});
+                for (HttpMethod method : methods) {
+                    assertEquals(separate.get(method).callRoute(path), shared.callRoute(method, path), method + " " + path);
+                }
+            }
+        }
+    }
+
+    private static String randomPath(Random random, String[] words) {
+        StringBuilder path = new StringBuilder();
+        int segments = random.nextInt(4);
+        for (int i = 0; i < segments; i++) path.append('/').append(words[random.nextInt(words.length)]);
+        return path.toString();
+    }
+}
@@ -0,0 +1,398 @@
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+// runs around every request whose path is under its prefix; before() returning false stops the chain
+public interface Interceptor {
+    boolean before(Exchange exchange);
+
+    default void after(Exchange exchange) {
+    }
+}
+
+public interface Handler {
+    String handle(Exchange exchange);
+}
+
+public interface AsyncHandler {
+    CompletableFuture<String> handle(Exchange exchange);
+}
+
+/**
+ * One request going through the chain: the path, its route match (params) and the
+ * response so far. Interceptors may respond() to short-circuit (auth, rate limit) or
+ * rewrite the response in after().
+ *
+ * Sync mode: keep one per thread and reuse it, a request then allocates nothing.
+ */
+public final class Exchange {
+    private final RouteMatch match = new RouteMatch();
+    private String response;
+
+    public RouteMatch match() {
+        return match;
+    }
+
+    public String path() {
+        return match.path();
+    }
+
+    public String response() {
+        return response;
+    }
+
+    public void respond(String response) {
+        this.response = response;
+    }
+
+    void reset() {
+        response = null;
+    }
+}
+
+/**
+ * Middleware engine on top of the trie router.
+ *
+ *   use("/api", auth)                 interceptor for every request path under /api
+ *   addRoute("/api/user/:id", h)      endpoint
+ *
+ * Interceptors apply by the REQUEST path, not by the route pattern that matched it: after
+ * use("/admin", auth), "/admin/panel" runs auth whether "/admin/panel", "/:section/panel"
+ * or "/*" serves it. Prefixes live in their own segment trie; every node where a prefix
+ * ends owns the flat Interceptor[] (registration order) for paths under it, resolved at
+ * use() time. A request walks that trie over its path (no allocation, O(P)) and keeps the
+ * deepest chain it passes, then it is one trie match plus
+ *
+ *   for i in 0..n-1 : chain[i].before()   (stop at the first false)
+ *   handler
+ *   for i in k..0   : chain[i].after()    (only the ones whose before() returned true)
+ *
+ * no recursion, no iterator, no list built per request. handleAsync() runs the same
+ * before() loop, then lets the handler's future complete and runs after() on completion,
+ * so no thread waits for a slow handler.
+ *
+ * "/api" covers "/api", "/api/..." and "/api/*", not "/apiv2". Registration is not
+ * thread-safe: register everything before serving, like the other routers.
+ */
+public class MiddlewareRouter {
+    private static final Interceptor[] NO_INTERCEPTORS = new Interceptor[0];
+
+    private final RouterCTrieImpl router = new RouterCTrieImpl();
+    private final Map<String, Route> routes = new HashMap<>();     // registration only, keyed by pattern
+    private final List<String> prefixes = new ArrayList<>();
+    private final List<Interceptor> interceptors = new ArrayList<>();
+    private final PrefixNode prefixRoot = new PrefixNode(null);
+    private final List<PrefixNode> prefixEnds = new ArrayList<>();
+
+    // the trie's value for the route: handed back by match(), no lookup by pattern
+    private static final class Route {
+        Handler handler;                    // exactly one of handler / async is set
+        AsyncHandler async;
+    }
+
+    // one segment of an interceptor prefix; `text` is the prefix up to here, no trailing '/'
+    private static final class PrefixNode {
+        final String text;
+        final SegmentMap<PrefixNode> children = new SegmentMap<>();
+        Interceptor[] atChain;              // "text" is a prefix: chain for paths ending here
+        Interceptor[] underChain;           // "text/" or "text" is a prefix: chain below here
+        boolean plain, trailing;
+
+        PrefixNode(String text) {
+            this.text = text;
+        }
+    }
+
+    public MiddlewareRouter use(String prefix, Interceptor interceptor) {
+        prefixes.add(prefix);
+        interceptors.add(interceptor);
+
+        boolean trailing = prefix.endsWith("/");
+        String text = trailing ? prefix.substring(0, prefix.length() - 1) : prefix;
+        PrefixNode node = prefixRoot;
+        int start = 0;
+        for (;;) {
+            int slash = text.indexOf('/', start);
+            String segment = text.substring(start, slash < 0 ? text.length() : slash);
+            int end = slash < 0 ? text.length() : slash;
+            node = node.children.computeIfAbsent(segment, s -> new PrefixNode(text.substring(0, end)));
+            if (slash < 0) break;
+            start = slash + 1;
+        }
+        if (!node.plain && !node.trailing) prefixEnds.add(node);
+        if (trailing) node.trailing = true;
+        else node.plain = true;
+
+        // a new prefix can join the chain of any deeper one: re-resolve them all
+        for (PrefixNode end : prefixEnds) {
+            end.atChain = end.plain ? resolve(end.text) : null;
+            end.underChain = resolve(end.text + "/");
+        }
+        return this;
+    }
+
+    public MiddlewareRouter addRoute(String pattern, Handler handler) {
+        return add(pattern, handler, null);
+    }
+
+    public MiddlewareRouter addAsyncRoute(String pattern, AsyncHandler handler) {
+        return add(pattern, null, handler);
+    }
+
+    // registering a pattern again replaces its handler
+    private MiddlewareRouter add(String pattern, Handler handler, AsyncHandler async) {
+        Route route = routes.get(pattern);
+        if (route == null) {
+            route = new Route();
+            routes.put(pattern, route);
+            router.addRoute(pattern, pattern, route);
+        }
+        route.handler = handler;
+        route.async = async;
+        return this;
+    }
+
+    private Interceptor[] resolve(String path) {
+        List<Interceptor> chain = new ArrayList<>();
+        for (int i = 0; i < prefixes.size(); i++) {
+            if (covers(prefixes.get(i), path)) chain.add(interceptors.get(i));
+        }
+        return chain.toArray(NO_INTERCEPTORS);
+    }
+
+    // prefix match on segment boundaries
+    static boolean covers(String prefix, String path) {
+        return path.startsWith(prefix) && (prefix.endsWith("/")
+                || path.length() == prefix.length() || path.charAt(prefix.length()) == '/');
+    }
+
+    // interceptors covering `path`: the chain of the deepest prefix end on its way
+    private Interceptor[] chainFor(String path) {
+        Interceptor[] chain = NO_INTERCEPTORS;
+        PrefixNode node = prefixRoot;
+        int start = 0;
+        for (;;) {
+            int slash = path.indexOf('/', start);
+            node = node.children.get(path, start, slash < 0 ? path.length() : slash);
+            if (node == null) return chain;
+            if (node.atChain != null) chain = node.atChain;
+            if (slash < 0) return chain;
+            if (node.underChain != null) chain = node.underChain;
+            start = slash + 1;
+        }
+    }
+
+    // number of interceptors a request for `path` runs through
+    int chainLength(String path) {
+        return chainFor(path).length;
+    }
+
+    /**
+     * Runs the chain for `path` with a caller-owned exchange. Returns false if no route
+     * matches; otherwise the response is in exchange.response(). An async route is
+     * waited for here, use handleAsync() to avoid that.
+     */
+    public boolean handle(String path, Exchange exchange) {
+        exchange.reset();
+        if (!router.match(path, exchange.match())) return false;
+        Route route = (Route) exchange.match().value();
+        Interceptor[] chain = chainFor(path);
+
+        int ran = 0;
+        try {
+            while (ran < chain.length && chain[ran].before(exchange)) ran++;
+            if (ran == chain.length) {
+                exchange.respond(route.handler != null ? route.handler.handle(exchange)
+                        : route.async.handle(exchange).join());
+            }
+        } finally {
+            for (int i = ran - 1; i >= 0; i--) chain[i].after(exchange);
+        }
+        return true;
+    }
+
+    // convenience: allocates an Exchange; null if no route matches
+    public String handle(String path) {
+        Exchange exchange = new Exchange();
+        return handle(path, exchange) ? exchange.response() : null;
+    }
+
+    /**
+     * Non-blocking mode: completes with the response (null if no route matches). after()
+     * hooks run on whichever thread completes the handler's future.
+     */
+    public CompletableFuture<String> handleAsync(String path) {
+        Exchange exchange = new Exchange();
+        if (!router.match(path, exchange.match())) return CompletableFuture.completedFuture(null);
+        Route route = (Route) exchange.match().value();
+        Interceptor[] chain = chainFor(path);
+
+        int ran = 0;
+        CompletableFuture<String> result;
+        try {
+            while (ran < chain.length && chain[ran].before(exchange)) ran++;
+            if (ran < chain.length) result = CompletableFuture.completedFuture(exchange.response());
+            else if (route.handler != null) result = CompletableFuture.completedFuture(route.handler.handle(exchange));
+            else result = route.async.handle(exchange);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        int last = ran - 1;
+        return result.handle((response, failure) -> {
+            if (failure == null) exchange.respond(response);
+            for (int i = last; i >= 0; i--) chain[i].after(exchange);
+            if (failure != null) throw failure instanceof RuntimeException ? (RuntimeException) failure : new RuntimeException(failure);
+            return exchange.response();
+        });
+    }
+}
+
+////////
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MiddlewareRouterTest {
+
+    private static Interceptor recording(List<String> log, String name) {
+        return new Interceptor() {
+            public boolean before(Exchange exchange) {
+                log.add(name + ">");
+                return true;
+            }
+
+            public void after(Exchange exchange) {
+                log.add("<" + name);
+            }
+        };
+    }
+
+    @Test
+    void testChainRunsInOrderAroundHandler() {
+        List<String> log = new ArrayList<>();
+        MiddlewareRouter router = new MiddlewareRouter()
+                .use("/", recording(log, "log"))
+                .use("/api", recording(log, "auth"))
+                .addRoute("/api/user/:id", exchange -> {
+                    log.add("handler");
+                    return "user " + exchange.match().param("id");
+                });
+
+        assertEquals("user 7", router.handle("/api/user/7"));
+        assertEquals(List.of("log>", "auth>", "handler", "<auth", "<log"), log);
+        assertNull(router.handle("/missing"));
+    }
+
+    @Test
+    void testPrefixesMatchWholeSegments() {
+        MiddlewareRouter router = new MiddlewareRouter()
+                .addRoute("/api", exchange -> "root")
+                .addRoute("/api/*", exchange -> "all")
+                .addRoute("/apiv2/x", exchange -> "other");
+        router.use("/api", exchange -> true);                 // added after the routes
+
+        assertEquals(1, router.chainLength("/api"));
+        assertEquals(1, router.chainLength("/api/anything"));
+        assertEquals(0, router.chainLength("/apiv2/x"));
+    }
+
+    @Test
+    void testChainFollowsRequestPathNotRoutePattern() {
+        List<String> log = new ArrayList<>();
+        Interceptor deny = exchange -> {
+            exchange.respond("403");
+            return false;
+        };
+        MiddlewareRouter params = new MiddlewareRouter()
+                .use("/admin", deny)
+                .use("/", recording(log, "log"))
+                .addRoute("/:section/panel", exchange -> "panel " + exchange.match().param("section"));
+        MiddlewareRouter wildcard = new MiddlewareRouter()
+                .use("/admin", deny)
+                .addRoute("/*", exchange -> "fallback");
+
+        assertEquals("403", params.handle("/admin/panel"));     // pattern "/:section/panel" isn't under /admin
+        assertEquals("403", params.handleAsync("/admin/panel").join());
+        assertEquals("panel public", params.handle("/public/panel"));
+        assertEquals("panel adminx", params.handle("/adminx/panel"));
+        assertEquals(List.of("log>", "<log", "log>", "<log"), log);   // only the two non-admin requests got past deny
+
+        assertEquals("403", wildcard.handle("/admin/users"));
+        assertEquals("403", wildcard.handle("/admin"));
+        assertEquals("fallback", wildcard.handle("/public/users"));
+    }
+
+    @Test
+    void testChainsMatchPrefixScan() {
+        Random random = new Random(5);
+        String[] words = {"", "a", "b", "ab"};
+        for (int round = 0; round < 200; round++) {
+            MiddlewareRouter router = new MiddlewareRouter();
+            List<String> prefixes = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                String prefix = randomPath(random, words) + (random.nextBoolean() ? "/" : "");
+                prefixes.add(prefix);
+                router.use(prefix, exchange -> true);
+            }
+            for (int q = 0; q < 50; q++) {
+                String path = randomPath(random, words);
+                int expected = 0;
+                for (String prefix : prefixes) if (MiddlewareRouter.covers(prefix, path)) expected++;
+                assertEquals(expected, router.chainLength(path), prefixes + " " + path);
+            }
+        }
+    }
+
+    @Test
+    void testReRegisteringReplacesHandler() {
+        MiddlewareRouter router = new MiddlewareRouter()
+                .addRoute("/a/:id", exchange -> "old")
+                .addRoute("/a/:id", exchange -> "new");
+
+        assertEquals("new", router.handle("/a/1"));
+    }
+
+    private static String randomPath(Random random, String[] words) {
+        StringBuilder path = new StringBuilder();
+        for (int i = random.nextInt(4); i > 0; i--) path.append('/').append(words[random.nextInt(words.length)]);
+        return path.toString();
+    }
+
+    @Test
+    void testShortCircuitRunsOnlyStartedAfters() {
+        List<String> log = new ArrayList<>();
+        MiddlewareRouter router = new MiddlewareRouter()
+                .use("/", recording(log, "log"))
+                .use("/admin", exchange -> {
+                    exchange.respond("403");
+                    return false;
+                })
+                .use("/admin", recording(log, "never"))
+                .addRoute("/admin/panel", exchange -> "panel");
+
+        assertEquals("403", router.handle("/admin/panel"));
+        assertEquals(List.of("log>", "<log"), log);
+    }
+
+    @Test
+    void testAsyncModeRunsAfterOnCompletion() {
+        List<String> log = new ArrayList<>();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        MiddlewareRouter router = new MiddlewareRouter()
+                .use("/", recording(log, "log"))
+                .addAsyncRoute("/slow", exchange -> pending);
+
+        CompletableFuture<String> response = router.handleAsync("/slow");
+        assertFalse(response.isDone());
+        assertEquals(List.of("log>"), log);
+
+        pending.complete("done");
+        assertEquals("done", response.join());
+        assertEquals(List.of("log>", "<log"), log);
+        assertNull(router.handleAsync("/missing").join());
+    }
+}
@@ -0,0 +1,459 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A route table compiled once into a binary trie image, served straight from a
+ * memory-mapped file.
+ *
+ * Boot with RouterCImpl/RouterCTrieImpl = one addRoute() per route: split, substring,
+ * nodes, list growth. Boot with open() = map the file, check the header. Nothing is built
+ * per route; pages are faulted in by the lookups that touch them.
+ *
+ * Layout (big-endian ints; strings are referenced by byte offset into the pool):
+ *
+ *   header  : magic | version | nodeCount | resultCount | exactSlots | edgeSlots | poolBytes
+ *   nodes   : param | wildcard | terminal | terminalOrder | minOrder        × nodeCount
+ *             (wildcard/terminal are result ids, -1 = none; param is a node id)
+ *   results : string offset                                                 × resultCount
+ *   exact   : key string | result id      open addressing, key -1 = empty   × exactSlots
+ *   edges   : parent | segment string | child   keyed by (parent, segment)  × edgeSlots
+ *   pool    : int length | UTF-16 chars, each distinct string once
+ *
+ * Lookups compare path chars against the pool in place and use the same rules and hashes
+ * as CompiledRouter. Result strings are decoded on first use and cached by id, so a hot
+ * lookup allocates nothing. Read-only (a RouteLookup) and thread-safe (absolute reads only).
+ *
+ * The file is untrusted input: open() checks magic, version, that every count is sane,
+ * that both slot counts are powers of two and that the sections add up to the file size
+ * (IOException otherwise). That stays O(1), so references inside the sections are checked
+ * as lookups follow them instead: every probe loop stops after one pass over its table and
+ * an out-of-range node, result or string reference is an IllegalStateException, never an
+ * endless probe or an IndexOutOfBoundsException.
+ */
+public final class RouteImage implements RouteLookup {
+    private static final int MAGIC = 0x5254494D;    // "RTIM"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 7 * 4;
+    private static final int NODE_INTS = 5;
+
+    private final ByteBuffer image;
+    private final int nodes, results, exact, edges, pool;
+    private final int nodeCount, poolBytes;
+    private final int exactMask, edgeMask;
+    private final String[] decoded;                 // result id → String, filled lazily
+
+    private RouteImage(ByteBuffer image) throws IOException {
+        if (image.capacity() < HEADER_BYTES || image.getInt(0) != MAGIC) throw new IOException("not a route image");
+        if (image.getInt(4) != VERSION) throw new IOException("unsupported route image version " + image.getInt(4));
+        int nodeCount = image.getInt(8);
+        int resultCount = image.getInt(12);
+        int exactSlots = image.getInt(16);
+        int edgeSlots = image.getInt(20);
+        int poolBytes = image.getInt(24);
+        if (nodeCount < 1 || resultCount < 0 || poolBytes < 0) throw new IOException("corrupt route image header");
+        if (Integer.bitCount(exactSlots) != 1 || Integer.bitCount(edgeSlots) != 1) {
+            throw new IOException("corrupt route image header: slot counts " + exactSlots + ", " + edgeSlots
+                    + " are not powers of two");
+        }
+        long size = HEADER_BYTES + (long) nodeCount * NODE_INTS * 4 + resultCount * 4L
+                + exactSlots * 8L + edgeSlots * 12L + poolBytes;   // long: counts from the file can overflow int
+        if (size != image.capacity()) {
+            throw new IOException("truncated route image: header says " + size + " bytes, file has " + image.capacity());
+        }
+
+        this.image = image;
+        this.nodeCount = nodeCount;
+        this.poolBytes = poolBytes;
+        this.nodes = HEADER_BYTES;
+        this.results = nodes + nodeCount * NODE_INTS * 4;
+        this.exact = results + resultCount * 4;
+        this.edges = exact + exactSlots * 8;
+        this.pool = edges + edgeSlots * 12;
+        this.exactMask = exactSlots - 1;
+        this.edgeMask = edgeSlots - 1;
+        this.decoded = new String[resultCount];
+    }
+
+    public static RouteImage open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("route image over 2GB");
+            return new RouteImage(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));   // stays valid after close
+        }
+    }
+
+    /** Compiles `routes` into an image at `file` (written to "<file>.tmp", then renamed). */
+    public static void write(RouterCTrieImpl routes, Path file) throws IOException {
+        ByteBuffer image = new Compiler(routes).toImage();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (image.hasRemaining()) channel.write(image);
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public String callRoute(String path) {
+        int exactResult = exactResult(path);
+        if (exactResult >= 0) return result(exactResult);
+
+        int wild = matchWildcard(path);
+        if (wild >= 0) return result(wild);
+
+        int end = RouterCImpl.trimmedEnd(path);
+        if (end < 0) return null;
+        int match = matchParam(0, path, 0, end, Integer.MAX_VALUE);
+        return match < 0 ? null : result(field(match, 2));
+    }
+
+    int nodeCount() {
+        return nodeCount;
+    }
+
+    private int field(int node, int i) {
+        return image.getInt(nodes + (node * NODE_INTS + i) * 4);
+    }
+
+    // a node id read from the image (param / edge child), -1 = none
+    private int nodeRef(int node) {
+        if (node < -1 || node >= nodeCount) throw corrupt("node " + node);
+        return node;
+    }
+
+    private String result(int id) {
+        if (id < 0 || id >= decoded.length) throw corrupt("result " + id);
+        String result = decoded[id];
+        if (result == null) {
+            int offset = image.getInt(results + id * 4);
+            char[] chars = new char[stringLength(offset)];
+            offset += pool;
+            for (int i = 0; i < chars.length; i++) chars[i] = image.getChar(offset + 4 + i * 2);
+            decoded[id] = result = new String(chars);   // racy but idempotent
+        }
+        return result;
+    }
+
+    // length of the pool string at `string`, which must lie wholly inside the pool
+    private int stringLength(int string) {
+        if (string < 0 || string > poolBytes - 4) throw corrupt("string offset " + string);
+        int length = image.getInt(pool + string);
+        if (length < 0 || length > (poolBytes - 4 - string) / 2) throw corrupt("string length " + length);
+        return length;
+    }
+
+    private static IllegalStateException corrupt(String what) {
+        return new IllegalStateException("corrupt route image: bad " + what);
+    }
+
+    private boolean poolEquals(int string, String path, int start, int end) {
+        int offset = pool + string;
+        int length = end - start;
+        if (stringLength(string) != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (image.getChar(offset + 4 + i * 2) != path.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    // probes stop after one pass: a corrupt table with no empty slot is a miss, not a hang
+    private int exactResult(String path) {
+        int i = SegmentMap.hash(path, 0, path.length()) & exactMask;
+        for (int probe = 0; probe <= exactMask; probe++, i = (i + 1) & exactMask) {
+            int key = image.getInt(exact + i * 8);
+            if (key < 0) return -1;
+            if (poolEquals(key, path, 0, path.length())) return image.getInt(exact + i * 8 + 4);
+        }
+        return -1;
+    }
+
+    private int child(int parent, String path, int start, int end) {
+        int i = edgeHash(parent, path, start, end) & edgeMask;
+        for (int probe = 0; probe <= edgeMask; probe++, i = (i + 1) & edgeMask) {
+            int slot = edges + i * 12;
+            int segment = image.getInt(slot + 4);
+            if (segment < 0) return -1;
+            if (image.getInt(slot) == parent && poolEquals(segment, path, start, end)) return nodeRef(image.getInt(slot + 8));
+        }
+        return -1;
+    }
+
+    private static int edgeHash(int parent, String path, int start, int end) {
+        int h = SegmentMap.hash(path, start, end) * 0x9E3779B9 + parent;
+        return h ^ (h >>> 15);
+    }
+
+    private int matchWildcard(String path) {
+        int node = 0;
+        int best = -1;
+        int start = 0;
+        for (int slash; (slash = path.indexOf('/', start)) >= 0; start = slash + 1) {
+            node = child(node, path, start, slash);
+            if (node < 0) break;
+            int wildcard = field(node, 1);
+            if (wildcard >= 0) best = wildcard;
+        }
+        return best;
+    }
+
+    private int matchParam(int node, String path, int start, int end, int limit) {
+        if (field(node, 4) >= limit) return -1;
+        if (start > end) return field(node, 2) >= 0 && field(node, 3) < limit ? node : -1;
+
+        int slash = path.indexOf('/', start);
+        int segmentEnd = slash < 0 || slash > end ? end : slash;
+        int first = child(node, path, start, segmentEnd);
+        int second = nodeRef(field(node, 0));
+
+        if (first >= 0 && second >= 0 && field(second, 4) < field(first, 4)) {
+            int swap = first;
+            first = second;
+            second = swap;
+        }
+        int best = -1;
+        if (first >= 0) {
+            best = matchParam(first, path, segmentEnd + 1, end, limit);
+            if (best >= 0) limit = field(best, 3);
+        }
+        if (second >= 0) {
+            int other = matchParam(second, path, segmentEnd + 1, end, limit);
+            if (other >= 0) best = other;
+        }
+        return best;
+    }
+
+    // RouterCTrieImpl → image bytes; runs once, offline, so it favours clarity over speed
+    private static final class Compiler {
+        private final List<RouterCTrieImpl.Node> nodeList = new ArrayList<>();
+        private final Map<RouterCTrieImpl.Node, Integer> ids = new IdentityHashMap<>();
+        private final Map<String, Integer> strings = new LinkedHashMap<>();   // string → pool offset
+        private final Map<String, Integer> resultIds = new LinkedHashMap<>();
+        private final Map<String, String> exactRoutes;
+        private int poolBytes;
+        private int edgeCount;
+
+        Compiler(RouterCTrieImpl routes) {
+            this.exactRoutes = routes.exactRoutes();
+            nodeList.add(routes.root());
+            ids.put(routes.root(), 0);
+            for (int i = 0; i < nodeList.size(); i++) {            // breadth-first, root = 0
+                RouterCTrieImpl.Node node = nodeList.get(i);
+                for (int slot = 0; slot < node.children.slots(); slot++) {
+                    RouterCTrieImpl.Node child = node.children.valueAt(slot);
+                    if (child == null) continue;
+                    ids.put(child, nodeList.size());
+                    nodeList.add(child);
+                    edgeCount++;
+                }
+                if (node.param != null) {
+                    ids.put(node.param, nodeList.size());
+                    nodeList.add(node.param);
+                }
+            }
+        }
+
+        private int string(String s) {
+            return strings.computeIfAbsent(s, k -> {
+                int offset = poolBytes;
+                poolBytes += 4 + k.length() * 2;
+                return offset;
+            });
+        }
+
+        private int resultId(String result) {
+            if (result == null) return -1;
+            string(result);
+            return resultIds.computeIfAbsent(result, r -> resultIds.size());
+        }
+
+        private static int tableSize(int entries) {
+            return Integer.highestOneBit(Math.max(1, entries) * 2 - 1) << 1;   // load <= 0.5
+        }
+
+        ByteBuffer toImage() {
+            int exactSlots = tableSize(exactRoutes.size());
+            int edgeSlots = tableSize(edgeCount);
+            int[] nodeInts = new int[nodeList.size() * NODE_INTS];
+            int[] exactInts = new int[exactSlots * 2];
+            int[] edgeInts = new int[edgeSlots * 3];
+            Arrays.fill(exactInts, -1);
+            Arrays.fill(edgeInts, -1);
+
+            for (int i = 0; i < nodeList.size(); i++) {
+                RouterCTrieImpl.Node node = nodeList.get(i);
+                nodeInts[i * NODE_INTS] = node.param == null ? -1 : ids.get(node.param);
+                nodeInts[i * NODE_INTS + 1] = resultId(node.wildcard);
+                nodeInts[i * NODE_INTS + 2] = resultId(node.terminal);
+                nodeInts[i * NODE_INTS + 3] = node.terminalOrder;
+                nodeInts[i * NODE_INTS + 4] = node.minOrder;
+                for (int slot = 0; slot < node.children.slots(); slot++) {
+                    String segment = node.children.keyAt(slot);
+                    if (segment == null) continue;
+                    int h = edgeHash(i, segment, 0, segment.length()) & (edgeSlots - 1);
+                    while (edgeInts[h * 3 + 1] >= 0) h = (h + 1) & (edgeSlots - 1);
+                    edgeInts[h * 3] = i;
+                    edgeInts[h * 3 + 1] = string(segment);
+                    edgeInts[h * 3 + 2] = ids.get(node.children.valueAt(slot));
+                }
+            }
+            for (Map.Entry<String, String> e : exactRoutes.entrySet()) {
+                String key = e.getKey();
+                int h = SegmentMap.hash(key, 0, key.length()) & (exactSlots - 1);
+                while (exactInts[h * 2] >= 0) h = (h + 1) & (exactSlots - 1);
+                exactInts[h * 2] = string(key);
+                exactInts[h * 2 + 1] = resultId(e.getValue());
+            }
+
+            int resultCount = resultIds.size();
+            ByteBuffer image = ByteBuffer.allocate(HEADER_BYTES
+                    + (nodeInts.length + resultCount + exactInts.length + edgeInts.length) * 4 + poolBytes);
+            image.putInt(MAGIC).putInt(VERSION).putInt(nodeList.size()).putInt(resultCount)
+                    .putInt(exactSlots).putInt(edgeSlots).putInt(poolBytes);
+            for (int v : nodeInts) image.putInt(v);
+            for (String result : resultIds.keySet()) image.putInt(strings.get(result));
+            for (int v : exactInts) image.putInt(v);
+            for (int v : edgeInts) image.putInt(v);
+            for (String s : strings.keySet()) {
+                image.putInt(s.length());
+                for (int i = 0; i < s.length(); i++) image.putChar(s.charAt(i));
+            }
+            return image.flip();
+        }
+    }
+}
+
+////////
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteImageTest {
+
+    private static RouteImage roundTrip(RouterCTrieImpl routes) throws Exception {
+        Path file = Files.createTempFile("routes", ".img");
+        file.toFile().deleteOnExit();
+        RouteImage.write(routes, file);
+        return RouteImage.open(file);
+    }
+
+    @Test
+    void testServesAllRouteKinds() throws Exception {
+        RouterCTrieImpl routes = new RouterCTrieImpl();
+        routes.addRoute("/foo/123", "exact");
+        routes.addRoute("/foo/*", "wild");
+        routes.addRoute("/user/:id/orders/:oid", "orders");
+        routes.addRoute("/user/:id/profile", "profile");
+        RouteImage image = roundTrip(routes);
+
+        assertEquals("exact", image.callRoute("/foo/123"));
+        assertEquals("wild", image.callRoute("/foo/bar"));
+        assertEquals("orders", image.callRoute("/user/1/orders/2"));
+        assertEquals("profile", image.callRoute("/user/1/profile"));
+        assertNull(image.callRoute("/user/1"));
+        assertNull(image.callRoute(""));
+    }
+
+    @Test
+    void testMatchesTrieOnRandomTables() throws Exception {
+        Random random = new Random(11);
+        String[] words = {"", "a", "b", ":p", "*"};
+        for (int round = 0; round < 100; round++) {
+            RouterCTrieImpl routes = new RouterCTrieImpl();
+            for (int r = 0; r < 20; r++) routes.addRoute(randomPath(random, words), "r" + r);
+            RouteImage image = roundTrip(routes);
+            for (int q = 0; q < 50; q++) {
+                String path = randomPath(random, new String[] {"", "a", "b", "c"});
+                assertEquals(routes.callRoute(path), image.callRoute(path), path);
+            }
+        }
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws Exception {
+        Path file = Files.createTempFile("routes", ".img");
+        file.toFile().deleteOnExit();
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> RouteImage.open(file));
+    }
+
+    @Test
+    void testRejectsTruncatedAndBadHeaders() throws Exception {
+        byte[] bytes = imageBytes();
+        Path file = Files.createTempFile("routes", ".img");
+        file.toFile().deleteOnExit();
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> RouteImage.open(file));
+
+        byte[] badSlots = bytes.clone();
+        ByteBuffer.wrap(badSlots).putInt(16, 3);                      // exactSlots not a power of two
+        Files.write(file, badSlots);
+        assertThrows(IOException.class, () -> RouteImage.open(file));
+
+        byte[] huge = bytes.clone();
+        ByteBuffer.wrap(huge).putInt(8, Integer.MAX_VALUE);           // nodeCount overflowing the size
+        Files.write(file, huge);
+        assertThrows(IOException.class, () -> RouteImage.open(file));
+    }
+
+    @Test
+    void testCorruptSectionsFailFast() throws Exception {
+        byte[] bytes = imageBytes();
+        ByteBuffer header = ByteBuffer.wrap(bytes);
+        int exact = 28 + header.getInt(8) * 20 + header.getInt(12) * 4;
+        int edges = exact + header.getInt(16) * 8;
+        Path file = Files.createTempFile("routes", ".img");
+        file.toFile().deleteOnExit();
+
+        // every exact slot taken by a real key: a miss must still end
+        byte[] full = bytes.clone();
+        int someKey = -1;
+        for (int i = 0; i < header.getInt(16) && someKey < 0; i++) someKey = header.getInt(exact + i * 8);
+        for (int i = 0; i < header.getInt(16); i++) ByteBuffer.wrap(full).putInt(exact + i * 8, someKey);
+        Files.write(file, full);
+        assertNull(RouteImage.open(file).callRoute("/nope"));
+
+        // edge children and string offsets pointing outside the image
+        byte[] badRefs = bytes.clone();
+        for (int i = 0; i < header.getInt(20); i++) {
+            if (header.getInt(edges + i * 12 + 4) >= 0) ByteBuffer.wrap(badRefs).putInt(edges + i * 12 + 8, 1 << 20);
+        }
+        for (int i = 0; i < header.getInt(16); i++) {
+            if (header.getInt(exact + i * 8) >= 0) ByteBuffer.wrap(badRefs).putInt(exact + i * 8, 1 << 30);
+        }
+        Files.write(file, badRefs);
+        RouteImage image = RouteImage.open(file);
+        assertThrows(IllegalStateException.class, () -> image.callRoute("/foo/123"));
+        assertThrows(IllegalStateException.class, () -> image.callRoute("/user/1/profile"));
+    }
+
+    private static byte[] imageBytes() throws Exception {
+        RouterCTrieImpl routes = new RouterCTrieImpl();
+        routes.addRoute("/foo/123", "exact");
+        routes.addRoute("/foo/*", "wild");
+        routes.addRoute("/user/:id/profile", "profile");
+        Path file = Files.createTempFile("routes", ".img");
+        file.toFile().deleteOnExit();
+        RouteImage.write(routes, file);
+        return Files.readAllBytes(file);
+    }
+
+    private static String randomPath(Random random, String[] words) {
+        StringBuilder path = new StringBuilder();
+        int segments = random.nextInt(4);
+        for (int i = 0; i < segments; i++) path.append('/').append(words[random.nextInt(words.length)]);
+        return path.toString();
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.Arrays;
+
+/**
+ * Caller-owned result of RouterCTrieImpl.match(): the route's result plus where each
+ * path parameter sits in the original path.
+ *
+ * Values are (start, end) offsets into path(), not Strings, so a match allocates nothing;
+ * keep one RouteMatch per thread (or per connection) and reuse it for every request.
+ * param(name) is there for convenience and does allocate the substring.
+ *
+ *   "/order/:oid/item/:iid" matched by "/order/10/item/55"
+ *     paramName(0) = "oid", path().substring(paramStart(0), paramEnd(0)) = "10"
+ *
+ * A wildcard match has one parameter named "*": the rest of the path after the prefix.
+ * After a 405 from MethodRouter, allowedMethods() holds the methods the path does exist for.
+ */
+public final class RouteMatch {
+    private String path;
+    private String result;
+    private Object value;
+    private int count;
+    private String[] names = new String[4];
+    private int[] starts = new int[4];
+    private int[] ends = new int[4];
+    private int allowedMethods;
+
+    void reset(String path) {
+        this.path = path;
+        this.result = null;
+        this.value = null;
+        this.count = 0;
+        this.allowedMethods = 0;
+    }
+
+    void addParam(String name, int start, int end) {
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        names[count] = name;
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    boolean found(String result) {
+        return found(result, null);
+    }
+
+    boolean found(String result, Object value) {
+        this.result = result;
+        this.value = value;
+        return true;
+    }
+
+    // what the route was registered with via RouterCTrieImpl.addRoute(path, result, value)
+    Object value() {
+        return value;
+    }
+
+    void allowedMethods(int mask) {
+        this.allowedMethods = mask;
+    }
+
+    // bit per HttpMethod (see HttpMethod.bit()), for the Allow header of a 405
+    public int allowedMethods() {
+        return allowedMethods;
+    }
+
+    public boolean matched() {
+        return result != null;
+    }
+
+    public String result() {
+        return result;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    public int paramCount() {
+        return count;
+    }
+
+    public String paramName(int i) {
+        return names[i];
+    }
+
+    public int paramStart(int i) {
+        return starts[i];
+    }
+
+    public int paramEnd(int i) {
+        return ends[i];
+    }
+
+    // index of the parameter called `name`, -1 if the route has none
+    public int indexOf(String name) {
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    // compares in place, no substring
+    public boolean paramEquals(String name, String value) {
+        int i = indexOf(name);
+        return i >= 0 && ends[i] - starts[i] == value.length()
+                && path.regionMatches(starts[i], value, 0, value.length());
+    }
+
+    // allocates: prefer the offsets on hot paths
+    public String param(String name) {
+        int i = indexOf(name);
+        return i < 0 ? null : path.substring(starts[i], ends[i]);
+    }
+}
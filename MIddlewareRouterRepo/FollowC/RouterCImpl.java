@@ -1,3 +1,12 @@
+// lookups only: what read-only tables (CompiledRouter, HotSwapRouter, RouteImage) offer
+public interface RouteLookup {
+    String callRoute(String path);
+}
+
+public interface RouterC extends RouteLookup {
+    void addRoute(String path, String result);
+}
+
 import java.util.*;
 
 public class RouterCImpl implements RouterC {
@@ -43,9 +52,10 @@ public class RouterCImpl implements RouterC {
         if (exactRoutes.containsKey(path))
             return exactRoutes.get(path);
 
-        // 2. Wildcard (longest prefix wins)
+        // 2. Wildcard (longest prefix wins); indexed loops: no Iterator per call
         WildcardEntry best = null;
-        for (WildcardEntry we : wildcardRoutes) {
+        for (int i = 0; i < wildcardRoutes.size(); i++) {
+            WildcardEntry we = wildcardRoutes.get(i);
             if (path.startsWith(we.prefix)) {
                 if (best == null || we.prefix.length() > best.prefix.length())
                     best = we;
@@ -53,24 +63,42 @@ public class RouterCImpl implements RouterC {
         }
         if (best != null) return best.result;
 
-        // 3. Param matching
-        String[] incoming = path.split("/");
-
-        for (ParamEntry pe : paramRoutes) {
-            if (incoming.length != pe.tokens.length) continue;
+        // 3. Param matching, segments compared in place instead of path.split("/")
+        int end = trimmedEnd(path);
+        if (end < 0) return null;
 
-            boolean match = true;
-            for (int i = 0; i < incoming.length; i++) {
-                if (pe.tokens[i].startsWith(":")) continue; // param
-                if (!pe.tokens[i].equals(incoming[i])) {
-                    match = false; break;
-                }
-            }
-            if (match) return pe.result;
+        for (int i = 0; i < paramRoutes.size(); i++) {
+            ParamEntry pe = paramRoutes.get(i);
+            if (matches(pe.tokens, path, end)) return pe.result;
         }
 
         return null;
     }
+
+    /**
+     * Segments are the same as path.split("/"): trailing empty segments are dropped.
+     * Returns the end of the last kept segment, or -1 if nothing is left ("/", "//", ...).
+     */
+    static int trimmedEnd(String path) {
+        int end = path.length();
+        while (end > 0 && path.charAt(end - 1) == '/') end--;
+        return end == 0 && path.length() > 0 ? -1 : end;
+    }
+
+    // tokens vs the segments of path[0, end], without materializing the segments
+    private static boolean matches(String[] tokens, String path, int end) {
+        int start = 0;
+        for (String token : tokens) {
+            if (start > end) return false;              // path has fewer segments
+            int slash = path.indexOf('/', start);
+            int segmentEnd = slash < 0 || slash > end ? end : slash;
+            boolean param = token.startsWith(":");
+            if (!param && (token.length() != segmentEnd - start || !path.regionMatches(start, token, 0, token.length())))
+                return false;
+            start = segmentEnd + 1;
+        }
+        return start > end;                              // and not more
+    }
 }
 
 
@@ -0,0 +1,356 @@
+import java.util.*;
+
+/**
+ * RouterC on a segment trie instead of linear scans.
+ *
+ * Same rules as RouterCImpl:
+ *   1. exact route (HashMap, whole path)
+ *   2. wildcard "/prefix/*" - longest prefix wins
+ *   3. param route "/user/:id" - first registered match wins
+ *
+ * Wildcard and param routes share one trie: static segments are SegmentMap children,
+ * ":param" is a single separate edge per node, a wildcard is a flag on the node where
+ * its prefix ends.
+ *
+ * Lookups walk the path in place with index offsets: no split, no substring, no arrays,
+ * so callRoute() allocates nothing, hit or miss.
+ *
+ *   wildcard lookup: walk static children, remember the deepest wildcard  → O(P)
+ *   param lookup   : DFS over static + param edges                         → O(P) typical
+ *
+ * match(path, ctx) also reports where each ":param" value sits in the path (RouteMatch),
+ * so handlers don't parse the path a second time.
+ *
+ * "First registered wins" needs a DFS: /a/:x/c (added first) must beat /a/b/:y for /a/b/c.
+ * Every node keeps the smallest registration order in its subtree, so a branch that
+ * can't beat the best match found so far is never entered.
+ */
+public class RouterCTrieImpl implements RouterC {
+
+    private final Map<String, String> exactRoutes = new HashMap<>();
+    private final Map<String, Object> exactValues = new HashMap<>();
+    private final Node root = new Node();
+    private int nextOrder;
+
+    static class Node {
+        final SegmentMap<Node> children = new SegmentMap<>();
+        Node param;                         // ":name" edge, the name doesn't affect matching
+        String wildcard;                    // result of "<path to here>/*"
+        Object wildcardValue;
+        String terminal;                    // result of a param route ending here
+        Object terminalValue;
+        int terminalOrder = Integer.MAX_VALUE;
+        String[] paramNames;                // terminal only: names of the route's params, in order
+        int[] paramSegments;                // terminal only: which segments they are
+        int minOrder = Integer.MAX_VALUE;   // smallest terminalOrder in this subtree
+
+        Node child(String segment) {
+            return children.computeIfAbsent(segment, s -> new Node());
+        }
+    }
+
+    @Override
+    public void addRoute(String path, String result) {
+        addRoute(path, result, null);
+    }
+
+    // same, plus an object match() hands back in ctx.value(): no second lookup by result
+    void addRoute(String path, String result, Object value) {
+        if (path.contains(":")) {                     // param route
+            addParamRoute(path.split("/"), result, value);
+        }
+        else if (path.endsWith("/*")) {               // wildcard route
+            addWildcardRoute(path.substring(0, path.length() - 1), result, value);
+        }
+        else {                                        // exact route
+            exactRoutes.put(path, result);
+            if (value != null) exactValues.put(path, value);
+            else exactValues.remove(path);
+        }
+    }
+
+    // prefix ends with '/': every segment of it is followed by a '/'
+    private void addWildcardRoute(String prefix, String result, Object value) {
+        Node node = root;
+        int start = 0;
+        for (int slash; (slash = prefix.indexOf('/', start)) >= 0; start = slash + 1) {
+            node = node.child(prefix.substring(start, slash));
+        }
+        if (node.wildcard == null) {                 // equal prefixes: first one wins, like the scan
+            node.wildcard = result;
+            node.wildcardValue = value;
+        }
+    }
+
+    private void addParamRoute(String[] tokens, String result, Object value) {
+        int order = nextOrder++;
+        Node node = root;
+        node.minOrder = Math.min(node.minOrder, order);
+        List<String> names = new ArrayList<>();
+        List<Integer> segments = new ArrayList<>();
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].startsWith(":")) {
+                if (node.param == null) node.param = new Node();
+                node = node.param;
+                names.add(tokens[i].substring(1));
+                segments.add(i);
+            } else {
+                node = node.child(tokens[i]);
+            }
+            node.minOrder = Math.min(node.minOrder, order);
+        }
+        if (node.terminal == null) {
+            node.terminal = result;
+            node.terminalValue = value;
+            node.terminalOrder = order;
+            node.paramNames = names.toArray(new String[0]);
+            node.paramSegments = segments.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    @Override
+    public String callRoute(String path) {
+        // 1. Exact
+        String exact = exactRoutes.get(path);
+        if (exact != null) return exact;
+
+        // 2. Wildcard (longest prefix wins)
+        Node wildcard = matchWildcard(path, null);
+        if (wildcard != null) return wildcard.wildcard;
+
+        // 3. Param matching
+        int end = RouterCImpl.trimmedEnd(path);   // same segments as the linear router
+        if (end < 0) return null;
+        Node match = matchParam(root, path, 0, end, Integer.MAX_VALUE);
+        return match == null ? null : match.terminal;
+    }
+
+    /**
+     * Same lookup as callRoute(), plus parameter offsets. Fills `ctx` (reset first) and
+     * returns true on a match; allocates nothing once ctx has grown to the largest route.
+     */
+    public boolean match(String path, RouteMatch ctx) {
+        ctx.reset(path);
+
+        String exact = exactRoutes.get(path);
+        if (exact != null) return ctx.found(exact, exactValues.get(path));
+
+        Node wildcard = matchWildcard(path, ctx);
+        if (wildcard != null) return ctx.found(wildcard.wildcard, wildcard.wildcardValue);
+
+        int end = RouterCImpl.trimmedEnd(path);
+        if (end < 0) return false;
+        Node match = matchParam(root, path, 0, end, Integer.MAX_VALUE);
+        if (match == null) return false;
+
+        // second pass over the winning route only: the DFS may have tried other branches
+        int[] paramSegments = match.paramSegments;
+        int start = 0;
+        for (int segment = 0, p = 0; p < paramSegments.length; segment++) {
+            int slash = path.indexOf('/', start);
+            int segmentEnd = slash < 0 || slash > end ? end : slash;
+            if (segment == paramSegments[p]) ctx.addParam(match.paramNames[p++], start, segmentEnd);
+            start = segmentEnd + 1;
+        }
+        return ctx.found(match.terminal, match.terminalValue);
+    }
+
+    // for CompiledRouter.compile(): the structure to flatten
+    Node root() {
+        return root;
+    }
+
+    Map<String, String> exactRoutes() {
+        return exactRoutes;
+    }
+
+    // deepest node whose segments are all followed by '/' in path, i.e. path.startsWith(prefix)
+    private Node matchWildcard(String path, RouteMatch ctx) {
+        Node node = root;
+        Node best = null;
+        int bestEnd = 0;
+        int start = 0;
+        for (int slash; (slash = path.indexOf('/', start)) >= 0; start = slash + 1) {
+            node = node.children.get(path, start, slash);
+            if (node == null) break;
+            if (node.wildcard != null) {
+                best = node;
+                bestEnd = slash + 1;
+            }
+        }
+        if (best != null && ctx != null) ctx.addParam("*", bestEnd, path.length());
+        return best;
+    }
+
+    // best (lowest order) terminal for the segments in path[start, end], below `limit`
+    private static Node matchParam(Node node, String path, int start, int end, int limit) {
+        if (node.minOrder >= limit) return null;
+        if (start > end) return node.terminal != null && node.terminalOrder < limit ? node : null;
+
+        int slash = path.indexOf('/', start);
+        int segmentEnd = slash < 0 || slash > end ? end : slash;
+        Node literal = node.children.get(path, start, segmentEnd);
+        Node param = node.param;
+
+        // cheaper-looking branch first, its result tightens the limit for the other one
+        if (literal != null && param != null && param.minOrder < literal.minOrder) {
+            Node swap = literal;
+            literal = param;
+            param = swap;
+        }
+        Node best = null;
+        if (literal != null) {
+            best = matchParam(literal, path, segmentEnd + 1, end, limit);
+            if (best != null) limit = best.terminalOrder;
+        }
+        if (param != null) {
+            Node other = matchParam(param, path, segmentEnd + 1, end, limit);
+            if (other != null) best = other;
+        }
+        return best;
+    }
+}
+
+////////
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouterCTrieTest {
+
+    @Test
+    void testSimplePathParam() {
+        RouterC router = new RouterCTrieImpl();
+        router.addRoute("/user/:id", "user-page");
+
+        assertEquals("user-page", router.callRoute("/user/123"));
+        assertEquals("user-page", router.callRoute("/user/xyz"));
+        assertNull(router.callRoute("/user/123/extra"));
+    }
+
+    @Test
+    void testPrecedenceExactWildcardParam() {
+        RouterC router = new RouterCTrieImpl();
+        router.addRoute("/foo/:id", "param");
+        router.addRoute("/foo/*", "wild");
+        router.addRoute("/foo/bar/*", "bar-wild");
+        router.addRoute("/foo/123", "exact");
+
+        assertEquals("exact", router.callRoute("/foo/123"));
+        assertEquals("bar-wild", router.callRoute("/foo/bar/x"));
+        assertEquals("wild", router.callRoute("/foo/anything"));   // wildcard shadows /foo/:id
+
+        router.addRoute("/user/:id", "user-param");
+        assertEquals("user-param", router.callRoute("/user/1"));
+    }
+
+    @Test
+    void testFirstRegisteredParamRouteWins() {
+        RouterC router = new RouterCTrieImpl();
+        router.addRoute("/a/:x/c", "first");
+        router.addRoute("/a/b/:y", "second");
+
+        assertEquals("first", router.callRoute("/a/b/c"));
+        assertEquals("second", router.callRoute("/a/b/d"));
+    }
+
+    @Test
+    void testTrailingSlashesLikeSplit() {
+        RouterC router = new RouterCTrieImpl();
+        router.addRoute("/user/:id", "user-page");
+
+        assertEquals("user-page", router.callRoute("/user/123/"));
+        assertNull(router.callRoute("/"));
+    }
+
+    @Test
+    void testMatchReportsParamOffsets() {
+        RouterCTrieImpl router = new RouterCTrieImpl();
+        router.addRoute("/order/:oid/item/:iid", "order-item");
+        router.addRoute("/files/*", "files");
+        router.addRoute("/health", "ok");
+        RouteMatch ctx = new RouteMatch();
+
+        assertTrue(router.match("/order/10/item/55", ctx));
+        assertEquals("order-item", ctx.result());
+        assertEquals(2, ctx.paramCount());
+        assertEquals("oid", ctx.paramName(0));
+        assertEquals("10", ctx.path().substring(ctx.paramStart(0), ctx.paramEnd(0)));
+        assertEquals("55", ctx.param("iid"));
+        assertTrue(ctx.paramEquals("iid", "55"));
+
+        assertTrue(router.match("/files/a/b.txt", ctx));    // same ctx, reset by match()
+        assertEquals("files", ctx.result());
+        assertEquals("a/b.txt", ctx.param("*"));
+
+        assertTrue(router.match("/health", ctx));
+        assertEquals(0, ctx.paramCount());
+
+        assertFalse(router.match("/order/10", ctx));
+        assertFalse(ctx.matched());
+        assertNull(ctx.param("oid"));
+    }
+
+    @Test
+    void testMatchUsesWinningRouteNames() {
+        RouterCTrieImpl router = new RouterCTrieImpl();
+        router.addRoute("/a/:x/c", "first");
+        router.addRoute("/a/b/:y", "second");
+        RouteMatch ctx = new RouteMatch();
+
+        assertTrue(router.match("/a/b/c", ctx));
+        assertEquals("b", ctx.param("x"));
+        assertTrue(router.match("/a/b/d/", ctx));              // trailing slash, like split()
+        assertEquals("d", ctx.param("y"));
+        assertEquals(-1, ctx.indexOf("x"));
+    }
+
+    @Test
+    void testMatchesLinearRouter() {
+        Random random = new Random(42);
+        String[] words = {"", "a", "b", "c", ":p", ":q", "*"};
+        for (int round = 0; round < 200; round++) {
+            RouterC linear = new RouterCImpl();
+            RouterC trie = new RouterCTrieImpl();
+            for (int r = 0; r < 20; r++) {
+                String route = randomPath(random, words) + (random.nextInt(4) == 0 ? "/*" : "");
+                linear.addRoute(route, "r" + r);
+                trie.addRoute(route, "r" + r);
+            }
+            for (int q = 0; q < 50; q++) {
+                String path = randomPath(random, new String[] {"", "a", "b", "c", "d"});
+                assertEquals(linear.callRoute(path), trie.callRoute(path), path);
+            }
+        }
+    }
+
+    @Test
+    void testLookupsDoNotAllocate() {
+        RouterCTrieImpl router = new RouterCTrieImpl();
+        router.addRoute("/api/v1/users", "exact");
+        router.addRoute("/static/*", "wild");
+        router.addRoute("/users/:id/orders/:oid", "param");
+        String[] paths = {"/api/v1/users", "/static/css/site.css", "/users/42/orders/7", "/users/42/nothing"};
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        RouteMatch ctx = new RouteMatch();
+        for (int i = 0; i < 50_000; i++) router.match(paths[i & 3], ctx);   // warm up
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10_000; i++) {
+            router.callRoute(paths[i & 3]);
+            router.match(paths[i & 3], ctx);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(allocated < 1_000, "allocated " + allocated + " bytes for 10k lookups");
+    }
+
+    private static String randomPath(Random random, String[] words) {
+        StringBuilder path = new StringBuilder();
+        int segments = random.nextInt(4);
+        for (int i = 0; i < segments; i++) path.append('/').append(words[random.nextInt(words.length)]);
+        return path.toString();
+    }
+}
@@ -0,0 +1,537 @@
+import java.util.*;
+
+/**
+ * Several segment regexes compiled into ONE DFA.
+ *
+ * ConstrainedRouter keeps one of these per trie position: whatever the number of
+ * constrained params competing there, a segment is scanned once, char by char, and the
+ * final state says which of the constraints accept it (full match, like Pattern.matches).
+ *
+ *   regexes → Thompson NFA per regex → one start state ε-linked to all of them
+ *           → subset construction (eager, at registration) → int[] transition table
+ *
+ * Chars are grouped into classes (ranges no regex tells apart), so the table is
+ * states × classes, not states × 65536. run() is a table walk over the chars in place,
+ * no allocation.
+ *
+ * Supported subset: literals, escapes (\d \D \w \W \s \S \t \n \r and escaped
+ * punctuation), ".", [classes] with ranges and ^, groups ( ) and (?: ), |, * + ?, {n}
+ * {n,} {n,m}. Anything else (anchors, backrefs, lookaround, lazy/possessive quantifiers,
+ * flags) is rejected with IllegalArgumentException, as is a union that needs more than
+ * MAX_STATES DFA states. {n,m} copies its body up to m times into the NFA, so counts
+ * above MAX_REPEAT and NFAs over MAX_NFA_STATES (nested repeats) are rejected before
+ * anything is built: "a{100000000}" fails at parse time instead of filling the heap.
+ */
+final class SegmentAutomaton {
+    static final int MAX_STATES = 10_000;
+    static final int MAX_REPEAT = 1_000;
+    static final int MAX_NFA_STATES = 100_000;
+    private static final int[] NONE = new int[0];
+
+    private final int[] boundaries;     // class i = chars [boundaries[i], boundaries[i + 1])
+    private final int[] asciiClass;
+    private final int classes;
+    private final int[] transitions;    // state * classes + class → state, -1 = dead
+    private final int[][] accepts;      // state → indexes of accepting regexes, ascending
+
+    SegmentAutomaton(List<String> regexes) {
+        Nfa nfa = new Nfa();
+        int start = nfa.state();
+        for (int i = 0; i < regexes.size(); i++) {
+            int[] fragment = nfa.build(new Parser(regexes.get(i)).parse());
+            nfa.epsilon(start, fragment[0]);
+            nfa.accept(fragment[1], i);
+        }
+
+        // char classes: cut 0..0xFFFF at every range edge used by any transition
+        TreeSet<Integer> cuts = new TreeSet<>(List.of(0, 0x10000));
+        for (int[] ranges : nfa.sets) {
+            for (int r = 0; r < ranges.length; r += 2) {
+                cuts.add(ranges[r]);
+                cuts.add(ranges[r + 1] + 1);
+            }
+        }
+        boundaries = cuts.stream().mapToInt(Integer::intValue).toArray();
+        classes = boundaries.length - 1;
+        asciiClass = new int[128];
+        for (char c = 0; c < 128; c++) asciiClass[c] = classOf(c);
+
+        // subset construction
+        Map<BitSet, Integer> ids = new HashMap<>();
+        List<BitSet> states = new ArrayList<>();
+        BitSet initial = nfa.closure(start);
+        ids.put(initial, 0);
+        states.add(initial);
+        int[] table = new int[16 * classes];
+        for (int s = 0; s < states.size(); s++) {
+            BitSet from = states.get(s);
+            for (int k = 0; k < classes; k++) {
+                BitSet to = nfa.step(from, boundaries[k]);
+                int target = -1;
+                if (!to.isEmpty()) {
+                    Integer id = ids.get(to);
+                    if (id == null) {
+                        if (states.size() == MAX_STATES) throw new IllegalArgumentException("constraints need more than " + MAX_STATES + " DFA states: " + regexes);
+                        id = states.size();
+                        ids.put(to, id);
+                        states.add(to);
+                    }
+                    target = id;
+                }
+                if (s * classes + k >= table.length) table = Arrays.copyOf(table, table.length * 2);
+                table[s * classes + k] = target;
+            }
+        }
+        transitions = Arrays.copyOf(table, states.size() * classes);
+        accepts = new int[states.size()][];
+        for (int s = 0; s < states.size(); s++) accepts[s] = nfa.accepting(states.get(s));
+    }
+
+    /** DFA state after reading path[start, end), -1 if no regex can match any more. */
+    int run(String path, int start, int end) {
+        int state = 0;
+        for (int i = start; i < end && state >= 0; i++) {
+            char c = path.charAt(i);
+            state = transitions[state * classes + (c < 128 ? asciiClass[c] : classOf(c))];
+        }
+        return state;
+    }
+
+    /** Regexes that fully match, for a state returned by run(). Shared array, don't modify. */
+    int[] accepts(int state) {
+        return state < 0 ? NONE : accepts[state];
+    }
+
+    int stateCount() {
+        return accepts.length;
+    }
+
+    private int classOf(char c) {
+        int i = Arrays.binarySearch(boundaries, c);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    // ---- regex AST: char sets are sorted, disjoint, inclusive [lo, hi] pairs ----
+
+    private interface Regex {
+    }
+
+    private static final class CharSet implements Regex {
+        final int[] ranges;
+
+        CharSet(int[] ranges) {
+            this.ranges = ranges;
+        }
+    }
+
+    private static final class Concat implements Regex {
+        final List<Regex> parts;
+
+        Concat(List<Regex> parts) {
+            this.parts = parts;
+        }
+    }
+
+    private static final class Alternation implements Regex {
+        final List<Regex> options;
+
+        Alternation(List<Regex> options) {
+            this.options = options;
+        }
+    }
+
+    private static final class Repeat implements Regex {
+        final Regex body;
+        final int min, max;             // max -1 = unbounded
+
+        Repeat(Regex body, int min, int max) {
+            this.body = body;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    private static final int[] DIGIT = {'0', '9'};
+    private static final int[] WORD = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+    private static final int[] SPACE = {'\t', '\r', ' ', ' '};                        // \t \n \x0B \f \r and space
+    private static final int[] DOT = complement(new int[] {'\n', '\n', '\r', '\r', 0x85, 0x85, 0x2028, 0x2029});
+
+    static int[] union(int[] a, int[] b) {
+        int[] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        Integer[] order = new Integer[all.length / 2];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(i -> all[i * 2]));
+        int[] merged = new int[all.length];
+        int n = 0;
+        for (int i : order) {
+            int lo = all[i * 2], hi = all[i * 2 + 1];
+            if (n > 0 && lo <= merged[n - 1] + 1) merged[n - 1] = Math.max(merged[n - 1], hi);
+            else {
+                merged[n++] = lo;
+                merged[n++] = hi;
+            }
+        }
+        return Arrays.copyOf(merged, n);
+    }
+
+    static int[] complement(int[] set) {
+        int[] out = new int[set.length + 2];
+        int n = 0, next = 0;
+        for (int r = 0; r < set.length; r += 2) {
+            if (set[r] > next) {
+                out[n++] = next;
+                out[n++] = set[r] - 1;
+            }
+            next = set[r + 1] + 1;
+        }
+        if (next <= 0xFFFF) {
+            out[n++] = next;
+            out[n++] = 0xFFFF;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static final class Parser {
+        private final String regex;
+        private int pos;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        Regex parse() {
+            Regex regex = alternation();
+            if (pos < this.regex.length()) throw error("unexpected '" + this.regex.charAt(pos) + "'");
+            return regex;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + pos + " in segment regex \"" + regex + "\"");
+        }
+
+        private boolean more() {
+            return pos < regex.length();
+        }
+
+        private Regex alternation() {
+            List<Regex> options = new ArrayList<>();
+            options.add(concat());
+            while (more() && regex.charAt(pos) == '|') {
+                pos++;
+                options.add(concat());
+            }
+            return options.size() == 1 ? options.get(0) : new Alternation(options);
+        }
+
+        private Regex concat() {
+            List<Regex> parts = new ArrayList<>();
+            while (more() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') parts.add(repeat());
+            return parts.size() == 1 ? parts.get(0) : new Concat(parts);
+        }
+
+        private Regex repeat() {
+            Regex atom = atom();
+            while (more()) {
+                char c = regex.charAt(pos);
+                if (c == '*') atom = new Repeat(atom, 0, -1);
+                else if (c == '+') atom = new Repeat(atom, 1, -1);
+                else if (c == '?') atom = new Repeat(atom, 0, 1);
+                else if (c == '{') {
+                    int close = regex.indexOf('}', pos);
+                    if (close < 0) throw error("unclosed {");
+                    String[] bounds = regex.substring(pos + 1, close).split(",", -1);
+                    try {
+                        int min = Integer.parseInt(bounds[0]);
+                        int max = bounds.length == 1 ? min : bounds[1].isEmpty() ? -1 : Integer.parseInt(bounds[1]);
+                        if (bounds.length > 2 || (max >= 0 && max < min)) throw error("bad repeat");
+                        if (min > MAX_REPEAT || max > MAX_REPEAT) throw error("repeat count over " + MAX_REPEAT);
+                        atom = new Repeat(atom, min, max);
+                    } catch (NumberFormatException e) {
+                        throw error("bad repeat");
+                    }
+                    pos = close;
+                }
+                else break;
+                pos++;
+                if (more() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) throw error("lazy/possessive quantifiers are not supported");
+            }
+            return atom;
+        }
+
+        private Regex atom() {
+            char c = regex.charAt(pos++);
+            switch (c) {
+                case '(': {
+                    if (regex.startsWith("?:", pos)) pos += 2;
+                    else if (more() && regex.charAt(pos) == '?') throw error("group flags/lookaround are not supported");
+                    Regex inner = alternation();
+                    if (!more() || regex.charAt(pos) != ')') throw error("unclosed (");
+                    pos++;
+                    return inner;
+                }
+                case '[':
+                    return new CharSet(charClass());
+                case '.':
+                    return new CharSet(DOT);
+                case '\\':
+                    return new CharSet(escape());
+                case '^': case '$':
+                    throw error("anchors are not supported (segments always match whole)");
+                case '*': case '+': case '?': case '{': case ')':
+                    throw error("nothing to repeat");
+                default:
+                    return new CharSet(new int[] {c, c});
+            }
+        }
+
+        private int[] escape() {
+            if (!more()) throw error("trailing \\");
+            char c = regex.charAt(pos++);
+            switch (c) {
+                case 'd': return DIGIT;
+                case 'D': return complement(DIGIT);
+                case 'w': return WORD;
+                case 'W': return complement(WORD);
+                case 's': return SPACE;
+                case 'S': return complement(SPACE);
+                case 't': return new int[] {'\t', '\t'};
+                case 'n': return new int[] {'\n', '\n'};
+                case 'r': return new int[] {'\r', '\r'};
+                default:
+                    if (Character.isLetterOrDigit(c)) throw error("unsupported escape \\" + c);
+                    return new int[] {c, c};
+            }
+        }
+
+        private int[] charClass() {
+            boolean negate = more() && regex.charAt(pos) == '^';
+            if (negate) pos++;
+            int[] set = new int[0];
+            boolean first = true;
+            while (true) {
+                if (!more()) throw error("unclosed [");
+                char c = regex.charAt(pos);
+                if (c == ']' && !first) break;
+                first = false;
+                if (c == '[' || (c == '&' && regex.startsWith("&&", pos))) throw error("nested classes are not supported");
+                pos++;
+                int[] item;
+                int lo;
+                if (c == '\\') {
+                    item = escape();
+                    if (item.length != 2 || item[0] != item[1]) {     // \d etc. can't start a range
+                        set = union(set, item);
+                        continue;
+                    }
+                    lo = item[0];
+                } else {
+                    lo = c;
+                }
+                int hi = lo;
+                if (pos + 1 < regex.length() && regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+                    pos++;
+                    char h = regex.charAt(pos++);
+                    if (h == '\\') {
+                        int[] escaped = escape();
+                        if (escaped.length != 2 || escaped[0] != escaped[1]) throw error("bad range");
+                        hi = escaped[0];
+                    } else {
+                        hi = h;
+                    }
+                    if (hi < lo) throw error("bad range");
+                }
+                set = union(set, new int[] {lo, hi});
+            }
+            pos++;
+            return negate ? complement(set) : set;
+        }
+    }
+
+    // ---- Thompson NFA ----
+
+    private static final class Nfa {
+        final List<int[]> sets = new ArrayList<>();         // edge i: char set
+        final List<Integer> edgeFrom = new ArrayList<>();
+        final List<Integer> edgeTo = new ArrayList<>();
+        final List<List<Integer>> epsilons = new ArrayList<>();
+        final List<List<Integer>> edgesOut = new ArrayList<>();
+        final Map<Integer, List<Integer>> accepting = new HashMap<>();
+
+        int state() {
+            if (epsilons.size() == MAX_NFA_STATES) {
+                throw new IllegalArgumentException("segment regexes need more than " + MAX_NFA_STATES + " NFA states");
+            }
+            epsilons.add(new ArrayList<>());
+            edgesOut.add(new ArrayList<>());
+            return epsilons.size() - 1;
+        }
+
+        void epsilon(int from, int to) {
+            epsilons.get(from).add(to);
+        }
+
+        void accept(int state, int regex) {
+            accepting.computeIfAbsent(state, s -> new ArrayList<>()).add(regex);
+        }
+
+        // returns {entry, exit}
+        int[] build(Regex regex) {
+            if (regex instanceof CharSet) {
+                int in = state(), out = state();
+                edgesOut.get(in).add(sets.size());
+                sets.add(((CharSet) regex).ranges);
+                edgeFrom.add(in);
+                edgeTo.add(out);
+                return new int[] {in, out};
+            }
+            if (regex instanceof Concat) {
+                int in = state(), at = in;
+                for (Regex part : ((Concat) regex).parts) {
+                    int[] f = build(part);
+                    epsilon(at, f[0]);
+                    at = f[1];
+                }
+                return new int[] {in, at};
+            }
+            if (regex instanceof Alternation) {
+                int in = state(), out = state();
+                for (Regex option : ((Alternation) regex).options) {
+                    int[] f = build(option);
+                    epsilon(in, f[0]);
+                    epsilon(f[1], out);
+                }
+                return new int[] {in, out};
+            }
+            Repeat repeat = (Repeat) regex;
+            int in = state(), at = in;
+            for (int i = 0; i < repeat.min; i++) {                  // mandatory copies
+                int[] f = build(repeat.body);
+                epsilon(at, f[0]);
+                at = f[1];
+            }
+            if (repeat.max < 0) {                                   // then a loop
+                int[] f = build(repeat.body);
+                int out = state();
+                epsilon(at, f[0]);
+                epsilon(at, out);
+                epsilon(f[1], f[0]);
+                epsilon(f[1], out);
+                return new int[] {in, out};
+            }
+            int out = state();
+            epsilon(at, out);
+            for (int i = repeat.min; i < repeat.max; i++) {         // optional copies
+                int[] f = build(repeat.body);
+                epsilon(at, f[0]);
+                epsilon(f[1], out);
+                at = f[1];
+            }
+            return new int[] {in, out};
+        }
+
+        BitSet closure(int state) {
+            BitSet set = new BitSet();
+            close(set, state);
+            return set;
+        }
+
+        private void close(BitSet set, int state) {
+            Deque<Integer> stack = new ArrayDeque<>();
+            stack.push(state);
+            while (!stack.isEmpty()) {
+                int s = stack.pop();
+                if (set.get(s)) continue;
+                set.set(s);
+                for (int next : epsilons.get(s)) stack.push(next);
+            }
+        }
+
+        BitSet step(BitSet from, int c) {
+            BitSet to = new BitSet();
+            for (int s = from.nextSetBit(0); s >= 0; s = from.nextSetBit(s + 1)) {
+                for (int edge : edgesOut.get(s)) {
+                    if (contains(sets.get(edge), c)) close(to, edgeTo.get(edge));
+                }
+            }
+            return to;
+        }
+
+        int[] accepting(BitSet states) {
+            TreeSet<Integer> regexes = new TreeSet<>();
+            for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+                List<Integer> tags = accepting.get(s);
+                if (tags != null) regexes.addAll(tags);
+            }
+            return regexes.isEmpty() ? NONE : regexes.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private static boolean contains(int[] ranges, int c) {
+            for (int r = 0; r < ranges.length; r += 2) {
+                if (c >= ranges[r] && c <= ranges[r + 1]) return true;
+            }
+            return false;
+        }
+    }
+}
+
+////////
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentAutomatonTest {
+
+    private static int[] accepted(SegmentAutomaton automaton, String segment) {
+        return automaton.accepts(automaton.run(segment, 0, segment.length()));
+    }
+
+    @Test
+    void testReportsEveryAcceptingRegex() {
+        SegmentAutomaton automaton = new SegmentAutomaton(List.of("\\d+", "[a-z][a-z0-9-]*", "v\\d{1,2}", "[0-9a-f]{4}"));
+
+        assertArrayEquals(new int[] {0}, accepted(automaton, "123"));
+        assertArrayEquals(new int[] {0, 3}, accepted(automaton, "1234"));
+        assertArrayEquals(new int[] {1, 2}, accepted(automaton, "v12"));
+        assertArrayEquals(new int[] {1, 3}, accepted(automaton, "beef"));
+        assertArrayEquals(new int[] {}, accepted(automaton, "V12"));
+        assertArrayEquals(new int[] {}, accepted(automaton, ""));
+    }
+
+    @Test
+    void testMatchesJavaRegexOnRandomInput() {
+        List<String> regexes = List.of("\\d+", "a|bc*", "(?:ab)+c?", "[^a-c]{2,3}", "x.y", "\\w*-\\W", "(a|b)*abb", "[\\d_]{0,2}z");
+        SegmentAutomaton automaton = new SegmentAutomaton(regexes);
+        Pattern[] patterns = regexes.stream().map(Pattern::compile).toArray(Pattern[]::new);
+        Random random = new Random(3);
+        String alphabet = "abcxyz019_-. é";
+        for (int n = 0; n < 20_000; n++) {
+            StringBuilder segment = new StringBuilder();
+            for (int i = random.nextInt(7); i > 0; i--) segment.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            int[] accepted = accepted(automaton, segment.toString());
+            for (int r = 0; r < patterns.length; r++) {
+                boolean expected = patterns[r].matcher(segment).matches();
+                assertEquals(expected, Arrays.binarySearch(accepted, r) >= 0, regexes.get(r) + " on \"" + segment + "\"");
+            }
+        }
+    }
+
+    @Test
+    void testRejectsUnsupportedSyntax() {
+        for (String regex : new String[] {"^a", "a$", "(?=a)", "a*?", "\\1", "[a", "(a", "*"}) {
+            assertThrows(IllegalArgumentException.class, () -> new SegmentAutomaton(List.of(regex)), regex);
+        }
+    }
+
+    @Test
+    void testHugeRepeatsRejectedBeforeBuilding() {
+        for (String regex : new String[] {"a{100000000}", "a{2,100000000}", "a{1001,}", "(a{1000}){1000}", "((ab){999}){999}"}) {
+            assertThrows(IllegalArgumentException.class, () -> new SegmentAutomaton(List.of(regex)), regex);
+        }
+        assertEquals(1, accepted(new SegmentAutomaton(List.of("a{1000}")), "a".repeat(1000)).length);
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.function.Function;
+
+/**
+ * String-keyed map that can be queried with a region of a larger string.
+ *
+ * HashMap<String, V> needs path.substring(start, end) just to build the lookup key,
+ * one allocation per segment per request. Here get(path, start, end) hashes and compares
+ * the chars in place (String.hashCode formula, regionMatches), so a lookup allocates nothing.
+ *
+ * Open addressing, linear probing, load factor <= 0.5. Not thread-safe for writes,
+ * same as the HashMaps the routers used before.
+ */
+class SegmentMap<V> {
+    private String[] keys = new String[4];
+    private Object[] values = new Object[4];
+    private int size;
+
+    V get(String key) {
+        return get(key, 0, key.length());
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(String path, int start, int end) {
+        int length = end - start;
+        int mask = keys.length - 1;
+        for (int i = hash(path, start, end) & mask; ; i = (i + 1) & mask) {
+            String key = keys[i];
+            if (key == null) return null;
+            if (key.length() == length && path.regionMatches(start, key, 0, length)) return (V) values[i];
+        }
+    }
+
+    V computeIfAbsent(String key, Function<String, V> factory) {
+        V value = get(key);
+        if (value == null) {
+            value = factory.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    void put(String key, V value) {
+        if ((size + 1) * 2 > keys.length) resize();
+        if (insert(keys, values, key, value)) size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // raw slots, for code that walks the whole map (null key = empty slot)
+    int slots() {
+        return keys.length;
+    }
+
+    String keyAt(int slot) {
+        return keys[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    private static boolean insert(String[] keys, Object[] values, String key, Object value) {
+        int mask = keys.length - 1;
+        for (int i = hash(key, 0, key.length()) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == null) {
+                keys[i] = key;
+                values[i] = value;
+                return true;
+            }
+            if (keys[i].equals(key)) {
+                values[i] = value;
+                return false;
+            }
+        }
+    }
+
+    private void resize() {
+        String[] newKeys = new String[keys.length * 2];
+        Object[] newValues = new Object[values.length * 2];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) insert(newKeys, newValues, keys[i], values[i]);
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    // String.hashCode() of path.substring(start, end), spread so linear probing sees the high bits
+    static int hash(String path, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) h = 31 * h + path.charAt(i);
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,348 @@
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side batcher for the distributed limiter.
+ *
+ * Readme.md's design is one atomic script call per request. Here concurrent
+ * allowRequest() calls (any users) are queued, and one flusher thread turns up to
+ * maxBatchSize of them, or whatever arrived within maxDelay of the first one, into a
+ * single pipelined RemoteTokenStore.acquireAll() round trip, then completes each
+ * caller's future.
+ *
+ * - Duplicate keys in a batch are coalesced: the store sees one entry per key with the
+ *   summed permits, and the granted tokens go to the callers in arrival order. Tokens
+ *   left over (a later caller needed more than remained) are released back in one
+ *   more round trip.
+ * - Queue is bounded: when it is full the request is rejected immediately (load shedding),
+ *   instead of queueing unbounded latency.
+ * - Futures complete on the flusher thread; chain heavy work with *Async variants.
+ * - close() rejects everything still queued; a batch already sent to the store completes
+ *   with the store's answer, one still being filled is rejected. Every future completes.
+ */
+class BatchingRateLimiter implements AutoCloseable {
+    private final RemoteTokenStore store;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final ArrayBlockingQueue<Pending> queue;
+    private final Thread flusher;
+    private final TimeSource clock;
+    private volatile boolean running = true;
+
+    private final LongAdder roundTrips = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    BatchingRateLimiter(RemoteTokenStore store, int maxBatchSize, long maxDelay, TimeUnit unit, int queueCapacity) {
+        this(store, maxBatchSize, maxDelay, unit, queueCapacity, TimeSource.SYSTEM);
+    }
+
+    BatchingRateLimiter(RemoteTokenStore store, int maxBatchSize, long maxDelay, TimeUnit unit, int queueCapacity,
+                        TimeSource clock) {
+        this.store = store;
+        this.clock = clock;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::flushLoop, "rate-limiter-batcher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    BatchingRateLimiter(RemoteTokenStore store) {
+        this(store, 256, 200, TimeUnit.MICROSECONDS, 65_536);
+    }
+
+    public CompletableFuture<Boolean> allowRequest(String userId) {
+        return allowRequests(userId, 1);
+    }
+
+    // all-or-nothing for the `permits` of this one caller
+    public CompletableFuture<Boolean> allowRequests(String userId, int permits) {
+        Pending pending = new Pending(userId, permits, clock.nanoTime());
+        if (!running || !queue.offer(pending)) {
+            shed.increment();
+            pending.future.complete(false);
+        } else if (!running && queue.remove(pending)) {
+            // close() ran between the check and the offer and may have drained already;
+            // if remove() lost, whoever polled it completes it
+            pending.future.complete(false);
+        }
+        return pending.future;
+    }
+
+    private void flushLoop() {
+        Pending[] batch = new Pending[maxBatchSize];
+        Batch scratch = new Batch(maxBatchSize);
+        try {
+            while (running) {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                batch[0] = first;
+                int n = 1;
+                long deadline = first.enqueuedAt + maxDelayNanos;
+                while (n < maxBatchSize) {
+                    Pending next = queue.poll();
+                    if (next == null) {
+                        long wait = deadline - clock.nanoTime();
+                        if (wait <= 0) break;
+                        next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                    }
+                    batch[n++] = next;
+                }
+                flush(batch, n, scratch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();     // close(): reject below what wasn't sent
+        } finally {
+            for (int i = 0; i < batch.length; i++) {
+                if (batch[i] != null) batch[i].future.complete(false);
+                batch[i] = null;
+            }
+            rejectQueued();
+        }
+    }
+
+    private void flush(Pending[] batch, int n, Batch scratch) {
+        // 1. coalesce per key
+        scratch.clear();
+        for (int i = 0; i < n; i++) scratch.add(batch[i].userId, batch[i].permits);
+
+        // 2. one pipelined round trip
+        try {
+            store.acquireAll(scratch.keys, scratch.requested, scratch.granted, scratch.size);
+            roundTrips.increment();
+        } catch (RuntimeException e) {
+            for (int i = 0; i < n; i++) {
+                batch[i].future.completeExceptionally(e);
+                batch[i] = null;
+            }
+            return;
+        }
+
+        // 3. hand out grants in arrival order
+        for (int i = 0; i < n; i++) {
+            Pending p = batch[i];
+            int slot = scratch.index.get(p.userId);
+            boolean admitted = scratch.granted[slot] >= p.permits;
+            if (admitted) scratch.granted[slot] -= p.permits;
+            p.future.complete(admitted);
+            batch[i] = null;
+        }
+
+        // 4. give back what nobody could use, so it isn't lost until the next refill
+        boolean leftover = false;
+        for (int i = 0; i < scratch.size; i++) leftover |= scratch.granted[i] > 0;
+        if (!leftover) return;
+        try {
+            store.releaseAll(scratch.keys, scratch.granted, scratch.size);
+            roundTrips.increment();
+        } catch (RuntimeException e) {
+            // the callers are answered already; the tokens come back with the next refill
+        }
+    }
+
+    long roundTrips() {
+        return roundTrips.sum();
+    }
+
+    long shed() {
+        return shed.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        rejectQueued();
+    }
+
+    // safe from both threads: each Pending is completed by whoever polled it
+    private void rejectQueued() {
+        for (Pending p; (p = queue.poll()) != null; ) p.future.complete(false);
+    }
+
+    private static final class Pending {
+        final String userId;
+        final int permits;
+        final long enqueuedAt;
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        Pending(String userId, int permits, long enqueuedAt) {
+            this.userId = userId;
+            this.permits = permits;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    // per-flush scratch space, owned by the flusher thread and reused across batches
+    private static final class Batch {
+        final String[] keys;
+        final long[] requested;
+        final long[] granted;
+        final HashMap<String, Integer> index;
+        int size;
+
+        Batch(int capacity) {
+            keys = new String[capacity];
+            requested = new long[capacity];
+            granted = new long[capacity];
+            index = new HashMap<>(capacity * 2);
+        }
+
+        void add(String key, int permits) {
+            Integer slot = index.get(key);
+            if (slot == null) {
+                index.put(key, size);
+                keys[size] = key;
+                requested[size] = permits;
+                size++;
+            } else {
+                requested[slot] += permits;
+            }
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) keys[i] = null;
+            index.clear();
+            size = 0;
+        }
+    }
+}
+
+////////
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchingRateLimiterTest {
+
+    @Test
+    void testConcurrentCallersShareRoundTrips() throws Exception {
+        InMemoryTokenStore store = new InMemoryTokenStore(1_000_000, 0, 1);
+        try (BatchingRateLimiter limiter = new BatchingRateLimiter(store, 256, 5, TimeUnit.MILLISECONDS, 10_000)) {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[1_000];
+            for (int i = 0; i < futures.length; i++) futures[i] = limiter.allowRequest("user-" + (i % 50));
+
+            CompletableFuture.allOf(futures).get(5, TimeUnit.SECONDS);
+            for (CompletableFuture<?> f : futures) assertEquals(true, f.get());
+            assertTrue(limiter.roundTrips() < 100, "round trips: " + limiter.roundTrips());
+            assertEquals(limiter.roundTrips(), store.calls());
+        }
+    }
+
+    @Test
+    void testDuplicateKeysGrantedInArrivalOrder() throws Exception {
+        InMemoryTokenStore store = new InMemoryTokenStore(3, 0, 0.001);
+        try (BatchingRateLimiter limiter = new BatchingRateLimiter(store, 64, 20, TimeUnit.MILLISECONDS, 64)) {
+            CompletableFuture<Boolean> a = limiter.allowRequests("u1", 2);
+            CompletableFuture<Boolean> b = limiter.allowRequests("u1", 2);   // only 1 token left
+            CompletableFuture<Boolean> c = limiter.allowRequest("u1");
+
+            assertTrue(a.get(5, TimeUnit.SECONDS));
+            assertFalse(b.get(5, TimeUnit.SECONDS));
+            assertTrue(c.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testLeftoverGrantsAreReleased() throws Exception {
+        InMemoryTokenStore store = new InMemoryTokenStore(3, 0, 0.001);
+        try (BatchingRateLimiter limiter = new BatchingRateLimiter(store, 64, 20, TimeUnit.MILLISECONDS, 64)) {
+            CompletableFuture<Boolean> a = limiter.allowRequests("u1", 2);
+            CompletableFuture<Boolean> b = limiter.allowRequests("u1", 2);   // granted 3 of 4: 1 unused
+
+            assertTrue(a.get(5, TimeUnit.SECONDS));
+            assertFalse(b.get(5, TimeUnit.SECONDS));
+            assertTrue(limiter.allowRequest("u1").get(5, TimeUnit.SECONDS));
+            assertFalse(limiter.allowRequest("u1").get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testFullQueueShedsLoad() throws Exception {
+        BlockingStore store = new BlockingStore();
+        try (BatchingRateLimiter limiter = new BatchingRateLimiter(store, 1, 1, TimeUnit.MILLISECONDS, 1)) {
+            CompletableFuture<Boolean> inFlight = limiter.allowRequest("u1");
+            store.entered.await(5, TimeUnit.SECONDS);                 // flusher is stuck in the store
+            CompletableFuture<Boolean> queued = limiter.allowRequest("u2");
+            CompletableFuture<Boolean> shed = limiter.allowRequest("u3");
+
+            assertFalse(shed.getNow(true));
+            assertEquals(1, limiter.shed());
+            store.release.countDown();
+            assertTrue(inFlight.get(5, TimeUnit.SECONDS));
+            assertTrue(queued.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testCloseCompletesEveryFuture() throws Exception {
+        BlockingStore store = new BlockingStore();
+        BatchingRateLimiter limiter = new BatchingRateLimiter(store, 1, 1, TimeUnit.MILLISECONDS, 16);
+        CompletableFuture<Boolean> inFlight = limiter.allowRequest("u1");
+        store.entered.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Boolean> queued = limiter.allowRequest("u2");
+
+        limiter.close();
+        assertFalse(queued.getNow(true));
+        assertFalse(limiter.allowRequest("u3").getNow(true));
+
+        store.release.countDown();                                    // the sent batch gets its answer
+        assertTrue(inFlight.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testEnqueueRacingCloseNeverHangs() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            BatchingRateLimiter limiter = new BatchingRateLimiter(new InMemoryTokenStore(1_000, 0, 1), 8, 1, TimeUnit.MILLISECONDS, 1_000);
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[100];
+            Thread caller = new Thread(() -> {
+                for (int i = 0; i < futures.length; i++) futures[i] = limiter.allowRequest("u" + i);
+            });
+            caller.start();
+            limiter.close();
+            caller.join();
+            CompletableFuture.allOf(futures).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    // acquireAll blocks (ignoring interrupts, like a client mid-request) until released
+    static final class BlockingStore implements RemoteTokenStore {
+        final InMemoryTokenStore delegate = new InMemoryTokenStore(10, 0, 1);
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public long acquire(String key, long requested) {
+            return delegate.acquire(key, requested);
+        }
+
+        @Override
+        public void acquireAll(String[] keys, long[] requested, long[] granted, int count) {
+            entered.countDown();
+            boolean interrupted = false;
+            for (;;) {
+                try {
+                    release.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            delegate.acquireAll(keys, requested, granted, count);
+        }
+
+        @Override
+        public void release(String key, long tokens) {
+            delegate.release(key, tokens);
+        }
+    }
+}
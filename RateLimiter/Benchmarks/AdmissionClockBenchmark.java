@@ -0,0 +1,63 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Admission throughput of one bucket per thread, by clock source:
+ *  - system : System.nanoTime() on every call (the old behaviour)
+ *  - cached : CachedTimeSource volatile read, ticked at `resolutionMicros`
+ *  - manual : ManualTimeSource, a floor for "clock cost = one field read"
+ *             (time never moves, so this one mostly measures the reject path)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdmissionClockBenchmark {
+
+    @Param({"system", "cached", "manual"})
+    public String clockType;
+
+    @Param({"100", "1000"})
+    public long resolutionMicros;
+
+    private TimeSource clock;
+    private LeakyBucket leakyBucket;
+    private CreditBucket creditBucket;
+    private LockFreeLeakyBucket lockFreeBucket;
+
+    @Setup
+    public void setup() {
+        switch (clockType) {
+            case "cached": clock = new CachedTimeSource(resolutionMicros, TimeUnit.MICROSECONDS); break;
+            case "manual": clock = new ManualTimeSource(); break;
+            default:       clock = TimeSource.SYSTEM;
+        }
+        // huge rates so the admit path stays hot, not the reject path
+        leakyBucket = new LeakyBucket(1_000_000, 1e12, clock);
+        creditBucket = new CreditBucket(1_000_000, 0, 1e12, clock);
+        lockFreeBucket = new LockFreeLeakyBucket(1_000_000, 1e12, clock);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (clock instanceof CachedTimeSource) ((CachedTimeSource) clock).close();
+    }
+
+    @Benchmark
+    public boolean leakyBucket() {
+        return leakyBucket.allowRequest();
+    }
+
+    @Benchmark
+    public boolean creditBucket() {
+        return creditBucket.allowRequest();
+    }
+
+    @Benchmark
+    public boolean lockFreeBucket() {
+        return lockFreeBucket.allowRequest();
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The four algorithms behind the same UserLimiterRegistry, same key set, same limits
+ * (~`limit` requests per second per user).
+ *
+ * limit matters for the log: its per-user ring buffer is `limit` longs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class AlgorithmComparisonBenchmark {
+
+    @Param({"100", "10000"})
+    public int limit;
+
+    private static final int USERS = 4096;
+
+    private String[] userIds;
+    private UserLimiterRegistry<LeakyBucket> leaky;
+    private UserLimiterRegistry<CreditBucket> tokenBucket;
+    private UserLimiterRegistry<SlidingWindowCounter> windowCounter;
+    private UserLimiterRegistry<SlidingWindowLog> windowLog;
+
+    @Setup
+    public void setup() {
+        leaky = new UserLimiterRegistry<>(userId -> new LeakyBucket(limit, limit));
+        tokenBucket = new UserLimiterRegistry<>(userId -> new CreditBucket(limit, 0, limit));
+        windowCounter = new UserLimiterRegistry<>(userId -> new SlidingWindowCounter(limit, 1, TimeUnit.SECONDS));
+        windowLog = new UserLimiterRegistry<>(userId -> new SlidingWindowLog(limit, 1, TimeUnit.SECONDS));
+
+        userIds = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = "user-" + i;
+            leaky.allowRequest(userIds[i]);
+            tokenBucket.allowRequest(userIds[i]);
+            windowCounter.allowRequest(userIds[i]);
+            windowLog.allowRequest(userIds[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        String nextUser(String[] userIds) {
+            return userIds[next++ & (USERS - 1)];
+        }
+    }
+
+    @Benchmark
+    public boolean leakyBucket(Cursor cursor) {
+        return leaky.allowRequest(cursor.nextUser(userIds));
+    }
+
+    @Benchmark
+    public boolean tokenBucket(Cursor cursor) {
+        return tokenBucket.allowRequest(cursor.nextUser(userIds));
+    }
+
+    @Benchmark
+    public boolean slidingWindowCounter(Cursor cursor) {
+        return windowCounter.allowRequest(cursor.nextUser(userIds));
+    }
+
+    @Benchmark
+    public boolean slidingWindowLog(Cursor cursor) {
+        return windowLog.allowRequest(cursor.nextUser(userIds));
+    }
+}
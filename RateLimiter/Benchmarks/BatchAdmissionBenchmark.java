@@ -0,0 +1,73 @@
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * One micro-batch per op: per-request allowRequest() loop vs allowRequests(String[], boolean[]).
+ *
+ * runLength = how many consecutive requests in the batch belong to the same user
+ * (1 = fully interleaved, 8 = gateway already grouped the batch by key).
+ * Divide the reported time by batchSize for the per-request cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchAdmissionBenchmark {
+
+    @Param({"64", "256", "512"})
+    public int batchSize;
+
+    @Param({"1", "8"})
+    public int runLength;
+
+    private static final int USERS = 4096;
+
+    private String[] batch;
+    private boolean[] out;
+    private UserRateLimiter rateLimiter;
+    private UserCreditLimiter creditLimiter;
+
+    @Setup
+    public void setup() {
+        rateLimiter = new UserRateLimiter(1_000, 1_000_000);
+        creditLimiter = new UserCreditLimiter(1_000, 1_000, 1_000_000);
+
+        Random random = new Random(42);
+        batch = new String[batchSize];
+        out = new boolean[batchSize];
+        for (int i = 0; i < batchSize; i += runLength) {
+            String userId = "user-" + random.nextInt(USERS);
+            for (int j = i; j < Math.min(batchSize, i + runLength); j++) batch[j] = userId;
+        }
+        rateLimiter.allowRequests(batch, out);
+        creditLimiter.allowRequests(batch, out);
+    }
+
+    @Benchmark
+    public boolean[] rateLimiterLoop() {
+        for (int i = 0; i < batch.length; i++) out[i] = rateLimiter.allowRequest(batch[i]);
+        return out;
+    }
+
+    @Benchmark
+    public boolean[] rateLimiterBatch() {
+        rateLimiter.allowRequests(batch, out);
+        return out;
+    }
+
+    @Benchmark
+    public boolean[] creditLimiterLoop() {
+        for (int i = 0; i < batch.length; i++) out[i] = creditLimiter.allowRequest(batch[i]);
+        return out;
+    }
+
+    @Benchmark
+    public boolean[] creditLimiterBatch() {
+        creditLimiter.allowRequests(batch, out);
+        return out;
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Per-request latency distribution (SampleTime → p50/p99/p99.9) against a store with a
+ * simulated network round trip:
+ *  - direct  : one acquire() round trip per request (Readme's one-script-per-request design)
+ *  - batched : BatchingRateLimiter, one pipelined round trip per batch
+ *
+ * Run with many threads to reach gateway-like concurrency:
+ *   java -jar benchmarks.jar BatchingLatencyBenchmark -t 64
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class BatchingLatencyBenchmark {
+
+    @Param({"100"})
+    public long roundTripMicros;
+
+    @Param({"64", "512"})
+    public int maxBatchSize;
+
+    private static final int USERS = 10_000;
+
+    private RemoteTokenStore store;
+    private BatchingRateLimiter batcher;
+    private String[] userIds;
+
+    @Setup
+    public void setup() {
+        InMemoryTokenStore local = new InMemoryTokenStore(1_000_000, 0, 1_000_000);
+        long rttNanos = TimeUnit.MICROSECONDS.toNanos(roundTripMicros);
+        store = new RemoteTokenStore() {
+            @Override
+            public long acquire(String key, long requested) {
+                LockSupport.parkNanos(rttNanos);
+                return local.acquire(key, requested);
+            }
+
+            @Override
+            public void acquireAll(String[] keys, long[] requested, long[] granted, int count) {
+                LockSupport.parkNanos(rttNanos);
+                local.acquireAll(keys, requested, granted, count);
+            }
+
+            @Override
+            public void release(String key, long tokens) {
+                LockSupport.parkNanos(rttNanos);
+                local.release(key, tokens);
+            }
+        };
+        batcher = new BatchingRateLimiter(store, maxBatchSize, 200, TimeUnit.MICROSECONDS, 65_536);
+
+        userIds = new String[USERS];
+        for (int i = 0; i < USERS; i++) userIds[i] = "user-" + i;
+    }
+
+    @TearDown
+    public void tearDown() {
+        batcher.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = (int) Thread.currentThread().getId() * 7919;
+    }
+
+    @Benchmark
+    public long direct(Cursor cursor) {
+        return store.acquire(userIds[Math.floorMod(cursor.next++, USERS)], 1);
+    }
+
+    @Benchmark
+    public boolean batched(Cursor cursor) {
+        return batcher.allowRequest(userIds[Math.floorMod(cursor.next++, USERS)]).join();
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of the three-level check vs one level, same key set:
+ *  - singleLevel   : UserLimiterRegistry of LockFreeLeakyBucket (the leaf alone)
+ *  - userRate      : UserRateLimiter, the existing flat per-user limiter
+ *  - hierarchical  : user ⊂ tenant ⊂ global, every request admitted at all three levels
+ *  - globalRejects : global limit saturated, so every request is charged and refunded twice
+ *
+ * Limits are huge so the admitted paths never reject; the difference is the extra map
+ * lookup plus the tenant/global CASes (the global one is shared by every thread).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class HierarchicalLimiterBenchmark {
+
+    private static final int USERS = 4096;
+    private static final int TENANTS = 64;
+    private static final int HUGE = 1_000_000_000;
+
+    private String[] userIds;
+    private String[] tenantIds;
+    private UserLimiterRegistry<LockFreeLeakyBucket> singleLevel;
+    private UserRateLimiter userRate;
+    private HierarchicalLimiter hierarchical;
+    private HierarchicalLimiter globalFull;
+
+    @Setup
+    public void setup() {
+        singleLevel = new UserLimiterRegistry<>(userId -> new LockFreeLeakyBucket(HUGE, HUGE));
+        userRate = new UserRateLimiter(HUGE, HUGE);
+        hierarchical = new HierarchicalLimiter(HUGE, HUGE, HUGE, HUGE, HUGE, HUGE);
+        globalFull = new HierarchicalLimiter(1, 0.001, HUGE, HUGE, HUGE, HUGE);
+
+        userIds = new String[USERS];
+        tenantIds = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = "user-" + i;
+            tenantIds[i] = "tenant-" + (i % TENANTS);
+            singleLevel.allowRequest(userIds[i]);
+            userRate.allowRequest(userIds[i]);
+            hierarchical.allowRequest(tenantIds[i], userIds[i]);
+            globalFull.allowRequest(tenantIds[i], userIds[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int nextIndex() {
+            return next++ & (USERS - 1);
+        }
+    }
+
+    @Benchmark
+    public boolean singleLevel(Cursor cursor) {
+        return singleLevel.allowRequest(userIds[cursor.nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean userRate(Cursor cursor) {
+        return userRate.allowRequest(userIds[cursor.nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean hierarchical(Cursor cursor) {
+        int i = cursor.nextIndex();
+        return hierarchical.allowRequest(tenantIds[i], userIds[i]);
+    }
+
+    @Benchmark
+    public boolean globalRejects(Cursor cursor) {
+        int i = cursor.nextIndex();
+        return globalFull.allowRequest(tenantIds[i], userIds[i]);
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * All threads on ONE user: UserRateLimiter (single monitor) vs HotKeyRateLimiter
+ * (key gets promoted to per-core cells during warmup).
+ *
+ *   java -jar benchmarks.jar HotKeyContentionBenchmark -t 1 -t 8 -t 32
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class HotKeyContentionBenchmark {
+
+    private static final String HOT_USER = "big-tenant";
+
+    private UserRateLimiter plain;
+    private HotKeyRateLimiter split;
+    private HotKeyRateLimiter saturated;
+
+    @Setup
+    public void setup() {
+        // capacity/leak high enough that most requests are admitted (the write path)
+        plain = new UserRateLimiter(100_000, 50_000_000);
+        split = new HotKeyRateLimiter(100_000, 50_000_000, 100_000, 60_000, 1_000_000);
+        // almost every request rejects: the path that must not touch every cell
+        saturated = new HotKeyRateLimiter(1_000, 1_000, 100_000, 60_000, 1_000_000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        split.close();
+        saturated.close();
+    }
+
+    @Benchmark
+    public boolean singleMonitor() {
+        return plain.allowRequest(HOT_USER);
+    }
+
+    @Benchmark
+    public boolean hotKeySplit() {
+        return split.allowRequest(HOT_USER);
+    }
+
+    @Benchmark
+    public boolean hotKeySaturated() {
+        return saturated.allowRequest(HOT_USER);
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Synchronized LeakyBucket vs LockFreeLeakyBucket, many threads hammering ONE key.
+ *
+ * leakRate controls the mix:
+ *  - 1e9  → bucket almost never full, mostly the admit (write) path
+ *  - 1e3  → bucket full after warmup, mostly the reject (read-only) path
+ *
+ * Run (sweep thread counts):
+ *   java -jar benchmarks.jar LeakyBucketContentionBenchmark -t 1 -t 4 -t 16 -t 64
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class LeakyBucketContentionBenchmark {
+
+    @Param({"1000", "1000000000"})
+    public double leakRate;
+
+    @Param({"1000"})
+    public int capacity;
+
+    private LeakyBucket locked;
+    private LockFreeLeakyBucket lockFree;
+
+    @Setup
+    public void setup() {
+        locked = new LeakyBucket(capacity, leakRate);
+        lockFree = new LockFreeLeakyBucket(capacity, leakRate);
+    }
+
+    @Benchmark
+    public boolean synchronizedBucket() {
+        return locked.allowRequest();
+    }
+
+    @Benchmark
+    public boolean lockFreeBucket() {
+        return lockFree.allowRequest();
+    }
+}
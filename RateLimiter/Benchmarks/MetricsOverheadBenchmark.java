@@ -0,0 +1,48 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of LimiterMetrics around one admission: bare bucket vs InstrumentedLimiter at
+ * different latency sampling rates. Target: the default (1 in 64) within a few ns of bare.
+ *
+ * Uses ManualTimeSource so the bucket itself stays cheap and the difference is the metrics.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"1", "64", "1024"})
+    public int sampleEvery;
+
+    private Limiter bare;
+    private Limiter instrumented;
+
+    @Setup
+    public void setup() {
+        ManualTimeSource clock = new ManualTimeSource();
+        bare = new LockFreeLeakyBucket(1_000_000, 1, clock);
+        instrumented = new InstrumentedLimiter(new LockFreeLeakyBucket(1_000_000, 1, clock),
+                                               new LimiterMetrics(sampleEvery));
+    }
+
+    @Benchmark
+    public boolean bare() {
+        return bare.allowRequest();
+    }
+
+    @Benchmark
+    public boolean instrumented() {
+        return instrumented.allowRequest();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean instrumentedContended() {
+        return instrumented.allowRequest();
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memory per key, off-heap table vs the on-heap UserRateLimiter layout.
+ *
+ * Not a JMH benchmark: it measures bytes, not time. For each key count it fills an
+ * OffHeapLeakyTable (keys pre-hashed, so no Strings are kept alive) and reports
+ * off-heap bytes/key, heap growth and fill rate. The on-heap baseline
+ * (ConcurrentHashMap<String, LeakyBucket>) is measured at the smallest count only;
+ * it scales linearly and 100M of it does not fit a normal heap.
+ *
+ *   java -Xmx4g -XX:MaxDirectMemorySize=8g OffHeapFootprint 10000000 50000000 100000000
+ */
+public class OffHeapFootprint {
+
+    public static void main(String[] args) {
+        long[] counts = args.length == 0
+                ? new long[] {10_000_000, 50_000_000, 100_000_000}
+                : java.util.Arrays.stream(args).mapToLong(Long::parseLong).toArray();
+
+        for (long keys : counts) {
+            long heapBefore = usedHeap();
+            long start = System.nanoTime();
+
+            OffHeapLeakyTable table = new OffHeapLeakyTable(keys, 10, 10);
+            for (long k = 1; k <= keys; k++) table.tryAcquire(k * 0x9E3779B97F4A7C15L, 1);
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("off-heap  %,12d keys: %6.1f bytes/key off-heap, %6.2f bytes/key heap, %,.0f inserts/s%n",
+                    keys, (double) table.offHeapBytes() / keys,
+                    (double) Math.max(0, usedHeap() - heapBefore) / keys, keys / seconds);
+        }
+
+        long keys = counts[0];
+        long heapBefore = usedHeap();
+        ConcurrentHashMap<String, LeakyBucket> buckets = new ConcurrentHashMap<>();
+        for (long k = 0; k < keys; k++) buckets.put("user-" + k, new LeakyBucket(10, 10));
+        System.out.printf("on-heap   %,12d keys: %6.1f bytes/key heap (map node + String + LeakyBucket)%n",
+                keys, (double) (usedHeap() - heapBefore) / keys);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,56 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Warm restart cost for `buckets` credit buckets:
+ *  - snapshot : walk the live limiter and write the mapped file
+ *  - restore  : load the file into an empty limiter (what a restarting node waits for)
+ *
+ * 10M buckets need a large heap (bucket objects + keys) on top of the ~250 MB file:
+ *   java -Xmx8g -jar benchmarks.jar SnapshotRestoreBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SnapshotRestoreBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int buckets;
+
+    private Path file;
+    private CreditSnapshotter snapshotter;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = Files.createTempFile("credit-limiter", ".snapshot");
+        UserCreditLimiter limiter = new UserCreditLimiter(10, 10, 1);
+        for (int i = 0; i < buckets; i++) limiter.allowRequest("user-" + i);
+        snapshotter = new CreditSnapshotter(limiter, file, 1, TimeUnit.DAYS);
+        snapshotter.snapshot();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        snapshotter.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long snapshot() throws IOException {
+        return snapshotter.snapshot();
+    }
+
+    @Benchmark
+    public UserCreditLimiter restore() throws IOException {
+        UserCreditLimiter restarted = new UserCreditLimiter(10, 10, 1);
+        CreditSnapshotter.restore(restarted, file);
+        return restarted;
+    }
+}
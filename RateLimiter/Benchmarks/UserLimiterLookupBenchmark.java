@@ -0,0 +1,53 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Per-user lookup cost once every user already has a bucket (steady state).
+ *
+ * Run with the GC profiler; gc.alloc.rate.norm should read ~0 B/op for both limiters:
+ *   java -jar benchmarks.jar UserLimiterLookupBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserLimiterLookupBenchmark {
+
+    @Param({"1024", "1048576"})
+    public int users;
+
+    private String[] userIds;
+    private UserRateLimiter rateLimiter;
+    private UserCreditLimiter creditLimiter;
+
+    @Setup
+    public void setup() {
+        userIds = new String[users];
+        rateLimiter = new UserRateLimiter(100, 1_000_000);
+        creditLimiter = new UserCreditLimiter(100, 50, 1_000_000);
+        for (int i = 0; i < users; i++) {
+            userIds[i] = "user-" + i;
+            // warm the maps and the cached String hash codes, so only hits are measured
+            rateLimiter.allowRequest(userIds[i]);
+            creditLimiter.allowRequest(userIds[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public boolean rateLimiterHit(Cursor cursor) {
+        return rateLimiter.allowRequest(userIds[cursor.next++ & (users - 1)]);
+    }
+
+    @Benchmark
+    public boolean creditLimiterHit(Cursor cursor) {
+        return creditLimiter.allowRequest(userIds[cursor.next++ & (users - 1)]);
+    }
+}
@@ -0,0 +1,50 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of parking many waiters on the shared TimerWheel.
+ *
+ * One shot = `waiters` acquireAsync() calls against a bucket leaking 1M tokens/sec, then
+ * wait for all of them. Ideal time is waiters / leakRate (100ms for 100k); anything above
+ * that is wheel overhead (tick granularity + completing futures on one thread).
+ *
+ * The blocking acquire() parks on the same future, so on JDK 21+ the same load as 100k
+ * virtual threads is:
+ *   try (var pool = Executors.newVirtualThreadPerTaskExecutor()) {
+ *       for (int i = 0; i < 100_000; i++) pool.submit(() -> { bucket.acquire(); return null; });
+ *   }
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class WaitingAcquireBenchmark {
+
+    @Param({"10000", "100000"})
+    public int waiters;
+
+    private CompletableFuture<?>[] futures;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        futures = new CompletableFuture<?>[waiters];
+    }
+
+    @Benchmark
+    public void leakyAcquireAsync() {
+        LeakyBucket bucket = new LeakyBucket(1, 1_000_000);
+        for (int i = 0; i < waiters; i++) futures[i] = bucket.acquireAsync();
+        CompletableFuture.allOf(futures).join();
+    }
+
+    @Benchmark
+    public void creditAcquireAsync() {
+        CreditBucket bucket = new CreditBucket(1, 0, 1_000_000);
+        for (int i = 0; i < waiters; i++) futures[i] = bucket.acquireAsync();
+        CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,270 @@
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bucket the sweeper is allowed to drop. Both methods are called from the sweeper
+ * thread and must not take the bucket's lock (read published volatile state instead).
+ */
+interface Evictable {
+    // nanoTime of the last request this bucket served
+    long lastAccessNanos();
+
+    // true if a freshly created bucket would be at least as strict as this one,
+    // i.e. dropping it now can never let the user through sooner
+    boolean isAtRest(long now);
+}
+
+/**
+ * Background eviction for the per-user bucket maps.
+ *
+ * - Idle TTL: buckets untouched for idleTtl AND at rest (drained / refilled) are removed.
+ * - Hard cap: if the map is still above maxEntries, the least recently used buckets go,
+ *   regardless of their level (LRU fallback), down to a low watermark of ~90% of the
+ *   cap. The next O(N) sweep then waits for ~10% more new keys, not the next one.
+ *
+ * Runs on its own daemon thread and only uses the map's weakly consistent iterator
+ * plus remove(key, bucket), so allowRequest() never waits on a sweep.
+ */
+class BucketSweeper<B extends Evictable> implements AutoCloseable {
+    private final ConcurrentHashMap<String, B> buckets;
+    private final long idleTtlNanos;
+    private final int maxEntries;
+    private final int lowWatermark;     // the LRU pass evicts down to this
+    private final TimeSource clock;   // must be the buckets' clock
+
+    private final AtomicLong idleEvictions = new AtomicLong();
+    private final AtomicLong lruEvictions = new AtomicLong();
+    private final AtomicBoolean sweepPending = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+
+    BucketSweeper(ConcurrentHashMap<String, B> buckets, long idleTtlMillis, int maxEntries) {
+        this(buckets, idleTtlMillis, maxEntries, TimeSource.SYSTEM);
+    }
+
+    BucketSweeper(ConcurrentHashMap<String, B> buckets, long idleTtlMillis, int maxEntries, TimeSource clock) {
+        this.buckets = buckets;
+        this.idleTtlNanos = TimeUnit.MILLISECONDS.toNanos(idleTtlMillis);
+        this.maxEntries = maxEntries;
+        this.lowWatermark = maxEntries - Math.max(1, maxEntries / 10);
+        this.clock = clock;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rate-limiter-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+
+        long intervalMillis = Math.max(10, idleTtlMillis / 2);
+        scheduler.scheduleWithFixedDelay(this::sweep, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called by the limiter after inserting a new bucket. If that pushed the map
+     * over the cap, schedule an immediate sweep instead of waiting for the next tick.
+     */
+    void onInsert() {
+        if (buckets.size() > maxEntries && sweepPending.compareAndSet(false, true)) {
+            scheduler.execute(this::sweep);
+        }
+    }
+
+    void sweep() {
+        sweepPending.set(false);
+        long now = clock.nanoTime();
+
+        // 1. TTL pass
+        for (Map.Entry<String, B> e : buckets.entrySet()) {
+            B bucket = e.getValue();
+            if (now - bucket.lastAccessNanos() > idleTtlNanos && bucket.isAtRest(now)) {
+                // remove(key, value): never drops a bucket that was replaced meanwhile
+                if (buckets.remove(e.getKey(), bucket)) idleEvictions.incrementAndGet();
+            }
+        }
+
+        // 2. LRU fallback: keep the `excess` oldest entries in a max-heap on lastAccess
+        if (buckets.size() <= maxEntries) return;
+        int excess = buckets.size() - lowWatermark;
+
+        PriorityQueue<Candidate<B>> oldest = new PriorityQueue<>(
+                (a, b) -> Long.compare(b.lastAccess, a.lastAccess));
+        for (Map.Entry<String, B> e : buckets.entrySet()) {
+            long lastAccess = e.getValue().lastAccessNanos();
+            if (oldest.size() < excess) {
+                oldest.add(new Candidate<>(e.getKey(), e.getValue(), lastAccess));
+            } else if (lastAccess < oldest.peek().lastAccess) {
+                oldest.poll();
+                oldest.add(new Candidate<>(e.getKey(), e.getValue(), lastAccess));
+            }
+        }
+        for (Candidate<B> c : oldest) {
+            if (buckets.remove(c.key, c.bucket)) lruEvictions.incrementAndGet();
+        }
+    }
+
+    long idleEvictions() {
+        return idleEvictions.get();
+    }
+
+    long lruEvictions() {
+        return lruEvictions.get();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private static final class Candidate<B> {
+        final String key;
+        final B bucket;
+        final long lastAccess;
+
+        Candidate(String key, B bucket, long lastAccess) {
+            this.key = key;
+            this.bucket = bucket;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
+
+/*
+  Race worth knowing about:
+
+  A request can fetch a bucket right before the sweeper removes it and then admit
+  against the now-orphaned bucket. Only idle, at-rest buckets are removed on the TTL
+  pass, so that costs at most one extra admission per eviction. The LRU pass can
+  drop a bucket with a level in it; that is the price of the hard memory cap.
+*/
+
+////////
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BucketSweeperTest {
+
+    @Test
+    void testIdleDrainedBucketIsEvicted() {
+        ManualTimeSource clock = new ManualTimeSource();
+        ConcurrentHashMap<String, LeakyBucket> buckets = new ConcurrentHashMap<>();
+        LeakyBucket bucket = new LeakyBucket(3, 1000, clock);
+        bucket.allowRequest();
+        buckets.put("u1", bucket);
+
+        try (BucketSweeper<LeakyBucket> sweeper = new BucketSweeper<>(buckets, 60_000, 1_000, clock)) {
+            clock.advance(30, TimeUnit.SECONDS);      // drained after 1ms, not idle yet
+            sweeper.sweep();
+            assertEquals(1, buckets.size());
+
+            clock.advance(31, TimeUnit.SECONDS);
+            sweeper.sweep();
+            assertEquals(0, buckets.size());
+            assertEquals(1, sweeper.idleEvictions());
+        }
+    }
+
+    @Test
+    void testBucketWithLevelIsKept() {
+        ManualTimeSource clock = new ManualTimeSource();
+        ConcurrentHashMap<String, LeakyBucket> buckets = new ConcurrentHashMap<>();
+        LeakyBucket bucket = new LeakyBucket(3, 0.001, clock); // one token takes 1000s to leak
+        bucket.allowRequest();
+        buckets.put("u1", bucket);
+
+        try (BucketSweeper<LeakyBucket> sweeper = new BucketSweeper<>(buckets, 0, 1_000, clock)) {
+            clock.advance(999, TimeUnit.SECONDS);
+            sweeper.sweep();
+            assertTrue(buckets.containsKey("u1"));
+            assertEquals(0, sweeper.idleEvictions());
+
+            clock.advance(1, TimeUnit.SECONDS);
+            sweeper.sweep();
+            assertFalse(buckets.containsKey("u1"));
+        }
+    }
+
+    @Test
+    void testCreditBucketIsKeptUntilRefilled() {
+        ManualTimeSource clock = new ManualTimeSource();
+        ConcurrentHashMap<String, CreditBucket> buckets = new ConcurrentHashMap<>();
+        CreditBucket bucket = new CreditBucket(3, 5, 1, clock);
+        bucket.tryAcquire(3);
+        buckets.put("u1", bucket);
+
+        try (BucketSweeper<CreditBucket> sweeper = new BucketSweeper<>(buckets, 0, 1_000, clock)) {
+            clock.advance(2_999, TimeUnit.MILLISECONDS);
+            sweeper.sweep();
+            assertTrue(buckets.containsKey("u1"));
+
+            clock.advance(1, TimeUnit.MILLISECONDS);   // back at baseCapacity
+            sweeper.sweep();
+            assertFalse(buckets.containsKey("u1"));
+        }
+    }
+
+    @Test
+    void testSweepNeverTakesABucketMonitor() throws InterruptedException {
+        ManualTimeSource clock = new ManualTimeSource();
+        ConcurrentHashMap<String, LeakyBucket> buckets = new ConcurrentHashMap<>();
+        LeakyBucket bucket = new LeakyBucket(3, 1000, clock);
+        bucket.allowRequest();
+        buckets.put("u1", bucket);
+        clock.advance(1, TimeUnit.HOURS);
+
+        try (BucketSweeper<LeakyBucket> sweeper = new BucketSweeper<>(buckets, 60_000, 1_000, clock)) {
+            synchronized (bucket) {                   // an admission holding the monitor
+                Thread sweep = new Thread(sweeper::sweep);
+                sweep.start();
+                sweep.join(5_000);
+                assertFalse(sweep.isAlive());
+            }
+            assertEquals(0, buckets.size());
+        }
+    }
+
+    @Test
+    void testLruFallbackAboveCap() {
+        ManualTimeSource clock = new ManualTimeSource();
+        ConcurrentHashMap<String, CreditBucket> buckets = new ConcurrentHashMap<>();
+        try (BucketSweeper<CreditBucket> sweeper = new BucketSweeper<>(buckets, 3_600_000, 2, clock)) {
+            for (String user : new String[] {"u1", "u2", "u3"}) {
+                buckets.put(user, new CreditBucket(3, 5, 1, clock));
+                buckets.get(user).allowRequest();
+                clock.advance(2, TimeUnit.MILLISECONDS);
+            }
+
+            sweeper.sweep();
+            assertEquals(1, buckets.size());         // down to the low watermark, not just the cap
+            assertTrue(buckets.containsKey("u3"));   // most recently used
+            assertEquals(2, sweeper.lruEvictions());
+        }
+    }
+
+    @Test
+    void testLruEvictsToLowWatermark() {
+        ManualTimeSource clock = new ManualTimeSource();
+        ConcurrentHashMap<String, CreditBucket> buckets = new ConcurrentHashMap<>();
+        try (BucketSweeper<CreditBucket> sweeper = new BucketSweeper<>(buckets, 3_600_000, 100, clock)) {
+            for (int i = 0; i < 101; i++) {
+                buckets.put("u" + i, new CreditBucket(3, 5, 1, clock));
+                buckets.get("u" + i).allowRequest();
+                clock.advance(1, TimeUnit.MILLISECONDS);
+            }
+
+            sweeper.sweep();
+            assertEquals(90, buckets.size());
+            assertEquals(11, sweeper.lruEvictions());
+            for (int i = 11; i < 101; i++) assertTrue(buckets.containsKey("u" + i));
+
+            sweeper.sweep();                          // back under the cap: nothing more to do
+            assertEquals(90, buckets.size());
+        }
+    }
+}
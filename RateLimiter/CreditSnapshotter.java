@@ -0,0 +1,282 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Warm restart for UserCreditLimiter: bucket levels survive a gateway restart.
+ *
+ * Without it every bucket comes back full (tokens = baseCapacity) and every abusive
+ * client gets a fresh burst. A daemon thread periodically writes all levels to a
+ * memory-mapped file; on startup restore() loads them and fast-forwards each bucket by
+ * the wall-clock time the node was down, so a restart loses at most one interval.
+ *
+ * File layout (native order, written to "<file>.tmp" then atomically renamed):
+ *
+ *   header : int magic | int version | long wallMillis | long count
+ *   entry  : u16 keyLength | key bytes (UTF-8) | double tokens      × count
+ *
+ * Snapshotting walks the map's weakly consistent iterator and holds each bucket's monitor
+ * only to read its level, so admissions never wait on a snapshot. Levels are read as of
+ * one instant without refilling the bucket (a snapshot is not an access for the sweeper).
+ */
+class CreditSnapshotter implements AutoCloseable {
+    private static final int MAGIC = 0x524C534E;    // "RLSN"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final long CHUNK = 64L << 20;    // bytes mapped at a time
+
+    private final UserCreditLimiter limiter;
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    CreditSnapshotter(UserCreditLimiter limiter, Path file, long interval, TimeUnit unit) {
+        this.limiter = limiter;
+        this.file = file;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rate-limiter-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval, unit);
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();   // keep the previous file, try again next interval
+        }
+    }
+
+    // writes every bucket's level; returns the number of buckets written
+    long snapshot() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        long now = limiter.clock().nanoTime();
+        long wallMillis = System.currentTimeMillis();
+
+        long count;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedCursor out = new MappedCursor(channel, FileChannel.MapMode.READ_WRITE, CHUNK);
+            MappedByteBuffer header = out.ensure(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(wallMillis).putLong(0);
+
+            long[] written = {0};
+            try {
+                limiter.forEachBucket((userId, bucket) -> {
+                    byte[] key = userId.getBytes(StandardCharsets.UTF_8);
+                    if (key.length > 0xFFFF) return;   // not a real userId, not worth a format change
+                    double tokens = bucket.tokensAt(now);
+                    try {
+                        out.ensure(2 + key.length + 8).putShort((short) key.length).put(key).putDouble(tokens);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    written[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            count = written[0];
+
+            header.putLong(16, count);
+            out.force();
+            channel.truncate(out.position());
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        snapshots.incrementAndGet();
+        return count;
+    }
+
+    /**
+     * Loads `file` into `limiter` (call before serving traffic). Each bucket resumes at its
+     * saved level, refilled for the time since the snapshot on its first request.
+     * Returns the number of buckets restored, 0 if there is no snapshot.
+     */
+    static long restore(UserCreditLimiter limiter, Path file) throws IOException {
+        if (!Files.exists(file)) return 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedCursor in = new MappedCursor(channel, FileChannel.MapMode.READ_ONLY, CHUNK);
+            MappedByteBuffer header = in.ensure(HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException("not a limiter snapshot: " + file);
+            long wallMillis = header.getLong();
+            long count = header.getLong();
+
+            // wall clock, not nanoTime: nanoTime has no meaning across processes
+            long downNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - wallMillis));
+            byte[] key = new byte[0xFFFF];
+            for (long i = 0; i < count; i++) {
+                int length = in.ensure(2).getShort() & 0xFFFF;
+                MappedByteBuffer entry = in.ensure(length + 8);
+                entry.get(key, 0, length);
+                limiter.restoreBucket(new String(key, 0, length, StandardCharsets.UTF_8), entry.getDouble(), downNanos);
+            }
+            return count;
+        }
+    }
+
+    long snapshots() {
+        return snapshots.get();
+    }
+
+    long failures() {
+        return failures.get();
+    }
+
+    // stops the schedule and takes a final snapshot, so a clean shutdown loses nothing
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+    }
+
+    /**
+     * Sequential access to a file of any size through a sliding mapped window
+     * (one MappedByteBuffer is limited to 2 GB). Records never straddle two windows.
+     */
+    private static final class MappedCursor {
+        private final FileChannel channel;
+        private final FileChannel.MapMode mode;
+        private final long chunk;
+        private MappedByteBuffer window;
+        private long base;   // file offset of window[0]
+
+        MappedCursor(FileChannel channel, FileChannel.MapMode mode, long chunk) {
+            this.channel = channel;
+            this.mode = mode;
+            this.chunk = chunk;
+        }
+
+        MappedByteBuffer ensure(int bytes) throws IOException {
+            if (window == null || window.remaining() < bytes) {
+                long offset = position();
+                long size = mode == FileChannel.MapMode.READ_ONLY ? Math.min(chunk, channel.size() - offset) : chunk;
+                if (size < bytes) throw new IOException("truncated snapshot at offset " + offset);
+                if (window != null && mode == FileChannel.MapMode.READ_WRITE) window.force();
+                window = channel.map(mode, offset, size);
+                window.order(ByteOrder.nativeOrder());
+                base = offset;
+            }
+            return window;
+        }
+
+        long position() {
+            return window == null ? 0 : base + window.position();
+        }
+
+        void force() {
+            if (window != null) window.force();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("credit-limiter", ".snapshot");
+        UserCreditLimiter before = new UserCreditLimiter(3, 5, 0.01);
+        for (int i = 0; i < 3; i++) before.allowRequest("abuser");
+        try (CreditSnapshotter snapshotter = new CreditSnapshotter(before, file, 1, TimeUnit.SECONDS)) {
+            System.out.println("snapshot: " + snapshotter.snapshot() + " bucket(s)");
+        }
+
+        UserCreditLimiter after = new UserCreditLimiter(3, 5, 0.01);   // "restarted" node
+        System.out.println("restored: " + restore(after, file) + " bucket(s)");
+        System.out.println(after.allowRequest("abuser")); // false: no fresh burst after restart
+        System.out.println(after.allowRequest("newUser")); // true
+        Files.deleteIfExists(file);
+    }
+}
+
+////////
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CreditSnapshotterTest {
+
+    @Test
+    void testRestartKeepsDrainedBuckets() throws IOException {
+        Path file = Files.createTempFile("credit-limiter", ".snapshot");
+        try {
+            UserCreditLimiter before = new UserCreditLimiter(3, 0, 0.001, new ManualTimeSource());
+            for (int i = 0; i < 3; i++) assertTrue(before.allowRequest("u1"));
+            before.allowRequest("u2");
+            try (CreditSnapshotter snapshotter = new CreditSnapshotter(before, file, 1, TimeUnit.HOURS)) {
+                assertEquals(2, snapshotter.snapshot());
+            }
+
+            UserCreditLimiter after = new UserCreditLimiter(3, 0, 0.001, new ManualTimeSource());
+            assertEquals(2, CreditSnapshotter.restore(after, file));
+            assertFalse(after.allowRequest("u1"));       // still drained
+            assertTrue(after.allowRequests("u2", 2));    // 2 of 3 left
+            assertFalse(after.allowRequest("u2"));
+            assertTrue(after.allowRequests("u3", 3));    // never seen: starts full
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testDowntimeIsFastForwarded() throws Exception {
+        Path file = Files.createTempFile("credit-limiter", ".snapshot");
+        try {
+            UserCreditLimiter before = new UserCreditLimiter(1, 0, 20);   // 1 token per 50ms
+            assertTrue(before.allowRequest("u1"));
+            try (CreditSnapshotter snapshotter = new CreditSnapshotter(before, file, 1, TimeUnit.HOURS)) {
+                snapshotter.snapshot();
+            }
+
+            Thread.sleep(100);                                             // "node down"
+            UserCreditLimiter after = new UserCreditLimiter(1, 0, 20);
+            CreditSnapshotter.restore(after, file);
+            assertTrue(after.allowRequest("u1"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testPeriodicSnapshotAndMissingFile() throws Exception {
+        Path file = Files.createTempFile("credit-limiter", ".snapshot");
+        Files.delete(file);
+        UserCreditLimiter limiter = new UserCreditLimiter(3, 0, 1);
+        assertEquals(0, CreditSnapshotter.restore(limiter, file));
+
+        limiter.allowRequest("u1");
+        try (CreditSnapshotter snapshotter = new CreditSnapshotter(limiter, file, 10, TimeUnit.MILLISECONDS)) {
+            Thread.sleep(100);
+            assertTrue(snapshotter.snapshots() > 0);
+            assertEquals(0, snapshotter.failures());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testRejectsForeignFile() throws IOException {
+        Path file = Files.createTempFile("credit-limiter", ".snapshot");
+        try {
+            Files.write(file, new byte[64]);
+            assertThrows(IOException.class, () -> CreditSnapshotter.restore(new UserCreditLimiter(3, 0, 1), file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Nested quotas: a request must fit its user's bucket, its tenant's bucket AND the global one.
+ *
+ *   global  (1 bucket)
+ *     └── tenant  (1 bucket per tenant)
+ *           └── user  (1 bucket per user of that tenant)
+ *
+ * Every level is a LockFreeLeakyBucket, so one admission is up to three CASes and
+ * no monitor at all. Checked leaf first: most rejections happen at the user level and
+ * then never touch the shared tenant/global cache lines.
+ *
+ * If a level rejects, the levels already charged are refunded, so a rejected request
+ * leaves no trace. Between the charge and the refund another request may see those
+ * permits as taken: the hierarchy can be momentarily stricter, never looser.
+ */
+class HierarchicalLimiter {
+    private final LockFreeLeakyBucket global;
+    private final ConcurrentHashMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+    private final int tenantCapacity;
+    private final double tenantRate;
+    private final int userCapacity;
+    private final double userRate;
+    private final TimeSource clock;
+    private final LimiterMetrics metrics = new LimiterMetrics();
+    private final Function<String, Tenant> tenantFactory = this::newTenant;
+
+    public HierarchicalLimiter(int globalCapacity, double globalRate,
+                               int tenantCapacity, double tenantRate,
+                               int userCapacity, double userRate) {
+        this(globalCapacity, globalRate, tenantCapacity, tenantRate, userCapacity, userRate, TimeSource.SYSTEM);
+    }
+
+    public HierarchicalLimiter(int globalCapacity, double globalRate,
+                               int tenantCapacity, double tenantRate,
+                               int userCapacity, double userRate, TimeSource clock) {
+        this.global = new LockFreeLeakyBucket(globalCapacity, globalRate, clock);
+        this.tenantCapacity = tenantCapacity;
+        this.tenantRate = tenantRate;
+        this.userCapacity = userCapacity;
+        this.userRate = userRate;
+        this.clock = clock;
+    }
+
+    public boolean allowRequest(String tenantId, String userId) {
+        return allowRequests(tenantId, userId, 1);
+    }
+
+    // all-or-nothing across all three levels
+    public boolean allowRequests(String tenantId, String userId, int permits) {
+        Tenant tenant = tenants.get(tenantId);
+        if (tenant == null) tenant = tenants.computeIfAbsent(tenantId, tenantFactory);
+        LockFreeLeakyBucket user = tenant.userBucket(userId);
+
+        long now = clock.nanoTime();   // one clock read: all levels judge the same instant
+        if (!user.tryAcquire(permits, now)) return metrics.count(false);
+        if (!tenant.bucket.tryAcquire(permits, now)) {
+            user.refund(permits, now);
+            return metrics.count(false);
+        }
+        if (!global.tryAcquire(permits, now)) {
+            tenant.bucket.refund(permits, now);
+            user.refund(permits, now);
+            return metrics.count(false);
+        }
+        return metrics.count(true);
+    }
+
+    double globalAvailable() {
+        return global.availableTokens();
+    }
+
+    double tenantAvailable(String tenantId) {
+        Tenant tenant = tenants.get(tenantId);
+        return tenant == null ? tenantCapacity : tenant.bucket.availableTokens();
+    }
+
+    double userAvailable(String tenantId, String userId) {
+        Tenant tenant = tenants.get(tenantId);
+        LockFreeLeakyBucket user = tenant == null ? null : tenant.users.get(userId);
+        return user == null ? userCapacity : user.availableTokens();
+    }
+
+    public MetricsSnapshot metrics() {
+        return metrics.snapshot();
+    }
+
+    private Tenant newTenant(String tenantId) {
+        return new Tenant(new LockFreeLeakyBucket(tenantCapacity, tenantRate, clock));
+    }
+
+    private LockFreeLeakyBucket newUser(String userId) {
+        return new LockFreeLeakyBucket(userCapacity, userRate, clock);
+    }
+
+    // users are scoped to their tenant, so the same userId under two tenants is two buckets
+    private final class Tenant {
+        final LockFreeLeakyBucket bucket;
+        final ConcurrentHashMap<String, LockFreeLeakyBucket> users = new ConcurrentHashMap<>();
+        final Function<String, LockFreeLeakyBucket> userFactory = HierarchicalLimiter.this::newUser;
+
+        Tenant(LockFreeLeakyBucket bucket) {
+            this.bucket = bucket;
+        }
+
+        LockFreeLeakyBucket userBucket(String userId) {
+            LockFreeLeakyBucket user = users.get(userId);
+            return user != null ? user : users.computeIfAbsent(userId, userFactory);
+        }
+    }
+
+    public static void main(String[] args) {
+        // capacities global 5, tenant 3, user 2 (1 token/sec each); frozen clock so nothing leaks mid-demo
+        HierarchicalLimiter limiter = new HierarchicalLimiter(5, 1, 3, 1, 2, 1, new ManualTimeSource());
+
+        System.out.println(limiter.allowRequest("acme", "u1")); // true
+        System.out.println(limiter.allowRequest("acme", "u1")); // true
+        System.out.println(limiter.allowRequest("acme", "u1")); // false (user limit)
+        System.out.println(limiter.allowRequest("acme", "u2")); // true
+        System.out.println(limiter.allowRequest("acme", "u2")); // false (tenant limit, u2 refunded)
+        System.out.println(limiter.allowRequest("other", "u1")); // true
+        System.out.println(limiter.allowRequest("other", "u1")); // true
+        System.out.println(limiter.allowRequest("other", "u2")); // false (global limit)
+    }
+}
+
+////////
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalLimiterTest {
+
+    @Test
+    void testUserLevelRejects() {
+        HierarchicalLimiter limiter = new HierarchicalLimiter(100, 1, 100, 1, 2, 1, new ManualTimeSource());
+
+        assertTrue(limiter.allowRequest("t1", "u1"));
+        assertTrue(limiter.allowRequest("t1", "u1"));
+        assertFalse(limiter.allowRequest("t1", "u1"));
+        assertTrue(limiter.allowRequest("t1", "u2"));
+        assertEquals(97, limiter.tenantAvailable("t1"), 1e-9);   // the rejected one never got there
+    }
+
+    @Test
+    void testTenantRejectionRefundsUser() {
+        HierarchicalLimiter limiter = new HierarchicalLimiter(100, 1, 3, 1, 2, 1, new ManualTimeSource());
+
+        assertTrue(limiter.allowRequests("t1", "u1", 2));
+        assertTrue(limiter.allowRequest("t1", "u2"));
+        assertFalse(limiter.allowRequest("t1", "u2"));          // tenant full
+
+        assertEquals(1, limiter.userAvailable("t1", "u2"), 1e-9);
+        assertEquals(97, limiter.globalAvailable(), 1e-9);
+    }
+
+    @Test
+    void testGlobalRejectionRefundsTenantAndUser() {
+        HierarchicalLimiter limiter = new HierarchicalLimiter(2, 1, 10, 1, 10, 1, new ManualTimeSource());
+
+        assertTrue(limiter.allowRequests("t1", "u1", 2));
+        assertFalse(limiter.allowRequest("t2", "u1"));
+
+        assertEquals(10, limiter.tenantAvailable("t2"), 1e-9);
+        assertEquals(10, limiter.userAvailable("t2", "u1"), 1e-9);
+        assertEquals(1, limiter.metrics().admitted);
+        assertEquals(1, limiter.metrics().rejected);
+    }
+
+    @Test
+    void testLevelsLeakIndependently() {
+        ManualTimeSource clock = new ManualTimeSource();
+        HierarchicalLimiter limiter = new HierarchicalLimiter(100, 100, 100, 100, 1, 1, clock);
+
+        assertTrue(limiter.allowRequest("t1", "u1"));
+        assertFalse(limiter.allowRequest("t1", "u1"));
+
+        clock.advance(1, TimeUnit.SECONDS);
+        assertTrue(limiter.allowRequest("t1", "u1"));
+    }
+
+    // each level in turn is the tight one, at a rate whose 1e9 / rate doesn't divide evenly
+    @Test
+    void testFrozenBurstAdmitsExactlyCapacityAtEachLevel() {
+        HierarchicalLimiter user = new HierarchicalLimiter(1_000, 1_000, 1_000, 1_000, 3, 3, new ManualTimeSource());
+        HierarchicalLimiter tenant = new HierarchicalLimiter(1_000, 1_000, 4, 1.0 / 3, 1_000, 1_000, new ManualTimeSource());
+        HierarchicalLimiter global = new HierarchicalLimiter(5, 0.3, 1_000, 1_000, 1_000, 1_000, new ManualTimeSource());
+
+        int admitted = 0;
+        for (int i = 0; i < 10; i++) if (user.allowRequest("t1", "u1")) admitted++;
+        assertEquals(3, admitted, "user level");
+
+        admitted = 0;
+        for (int i = 0; i < 10; i++) if (tenant.allowRequest("t1", "u" + i)) admitted++;
+        assertEquals(4, admitted, "tenant level");
+
+        admitted = 0;
+        for (int i = 0; i < 10; i++) if (global.allowRequest("t" + i, "u" + i)) admitted++;
+        assertEquals(5, admitted, "global level");
+        assertEquals(1_000, global.tenantAvailable("t9"), 1e-9);    // rejections were refunded
+    }
+}
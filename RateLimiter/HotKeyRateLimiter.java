@@ -0,0 +1,310 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * UserRateLimiter with automatic hot-key splitting.
+ *
+ * Every user starts on a plain LeakyBucket. Request rate is measured per user over
+ * one-second windows; a user crossing hotThresholdPerSecond is promoted to a
+ * StripedLeakyBucket (carrying its current level over), so its traffic spreads over
+ * `cells` lock-free cells instead of convoying on one monitor. A hot user whose rate
+ * falls below half the threshold is demoted back to a single bucket (again carrying
+ * its level), so the split only costs memory while it is needed.
+ *
+ * Bounded like UserRateLimiter: the entries sit behind a BucketSweeper (idle TTL +
+ * LRU cap), hot or cold. Cold keys count their window with an int field on the entry
+ * (no counter object per user); only hot keys get a LongAdder.
+ */
+class HotKeyRateLimiter implements AutoCloseable {
+    private static final long DETECTION_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final AtomicIntegerFieldUpdater<Entry> COLD_HITS =
+            AtomicIntegerFieldUpdater.newUpdater(Entry.class, "coldHits");
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final double leakRate;
+    private final long hotThresholdPerSecond;
+    private final int cells;
+    private final double maxErrorTokens;
+    private final TimeSource clock;
+    private final BucketSweeper<Entry> sweeper;
+    private final Function<String, Entry> entryFactory = this::newEntry;
+
+    /**
+     * @param hotThresholdPerSecond requests/sec at which a user gets split
+     * @param cells                 sub-buckets per hot user (typically #cores)
+     * @param maxErrorTokens        admission error bound for hot users, see StripedLeakyBucket
+     * @param idleTtlMillis         drained users idle this long are evicted, see BucketSweeper
+     * @param maxEntries            above this the least recently used users go
+     */
+    public HotKeyRateLimiter(int capacity, double leakRate, long hotThresholdPerSecond,
+                             int cells, double maxErrorTokens, long idleTtlMillis, int maxEntries,
+                             TimeSource clock) {
+        this.capacity = capacity;
+        this.leakRate = leakRate;
+        this.hotThresholdPerSecond = hotThresholdPerSecond;
+        this.cells = cells;
+        this.maxErrorTokens = maxErrorTokens;
+        this.clock = clock;
+        this.sweeper = new BucketSweeper<>(entries, idleTtlMillis, maxEntries, clock);
+    }
+
+    public HotKeyRateLimiter(int capacity, double leakRate, long hotThresholdPerSecond,
+                             long idleTtlMillis, int maxEntries) {
+        this(capacity, leakRate, hotThresholdPerSecond, Runtime.getRuntime().availableProcessors(),
+             2.0 * Runtime.getRuntime().availableProcessors() + 2, idleTtlMillis, maxEntries, TimeSource.SYSTEM);
+    }
+
+    public boolean allowRequest(String userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            entry = entries.computeIfAbsent(userId, entryFactory);
+            sweeper.onInsert();
+        }
+        return entry.allowRequest();
+    }
+
+    public boolean isHot(String userId) {
+        Entry entry = entries.get(userId);
+        return entry != null && entry.hot != null;
+    }
+
+    public long hotKeys() {
+        return entries.values().stream().filter(e -> e.hot != null).count();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // one sweep right now instead of waiting for the sweeper's tick (tests)
+    void sweep() {
+        sweeper.sweep();
+    }
+
+    @Override
+    public void close() {
+        sweeper.close();
+    }
+
+    private Entry newEntry(String userId) {
+        return new Entry(new LeakyBucket(capacity, leakRate, clock), clock.nanoTime());
+    }
+
+    // a promoted user: the cells plus the only per-user counter object
+    private static final class Hot {
+        final StripedLeakyBucket bucket;
+        final LongAdder hits = new LongAdder();
+
+        Hot(StripedLeakyBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    private final class Entry implements Evictable {
+        volatile LeakyBucket single;             // the user's bucket while cold
+        volatile Hot hot;                        // set on promotion, cleared on demotion
+        volatile int coldHits;                   // requests in the current window while cold
+        volatile long windowStart;
+
+        Entry(LeakyBucket single, long now) {
+            this.single = single;
+            this.windowStart = now;
+        }
+
+        boolean allowRequest() {
+            long now = clock.nanoTime();
+            if (now - windowStart >= DETECTION_WINDOW_NANOS) detect(now);
+
+            Hot h = hot;
+            if (h != null) {
+                h.hits.increment();
+                return h.bucket.tryAcquire(1, now);
+            }
+            COLD_HITS.incrementAndGet(this);
+            return single.tryAcquire(1, now);
+        }
+
+        // once per window per user, so the monitor here is never on the hot path
+        private synchronized void detect(long now) {
+            long elapsed = now - windowStart;
+            if (elapsed < DETECTION_WINDOW_NANOS) return;
+
+            Hot h = hot;
+            long count = h != null ? h.hits.sumThenReset() : COLD_HITS.getAndSet(this, 0);
+            double perSecond = count * 1_000_000_000.0 / elapsed;
+            windowStart = now;
+            if (h == null && perSecond >= hotThresholdPerSecond) {
+                hot = new Hot(new StripedLeakyBucket(capacity, leakRate, cells, maxErrorTokens,
+                                                     single.level(now), clock));
+            } else if (h != null && perSecond < hotThresholdPerSecond / 2.0) {   // hysteresis: no flapping
+                single = new LeakyBucket(capacity, leakRate, clock, h.bucket.level());
+                hot = null;
+            }
+        }
+
+        // hot users: start of the current window, at most one window behind the last request
+        @Override
+        public long lastAccessNanos() {
+            return hot != null ? windowStart : single.lastAccessNanos();
+        }
+
+        @Override
+        public boolean isAtRest(long now) {
+            Hot h = hot;
+            return h != null ? now - h.bucket.drainedAt() >= 0 : single.isAtRest(now);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        try (HotKeyRateLimiter limiter = new HotKeyRateLimiter(1_000, 1_000, 10_000, 60_000, 100_000)) {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1_500);
+            while (System.nanoTime() < end) limiter.allowRequest("big-tenant");
+            limiter.allowRequest("small-tenant");
+
+            System.out.println(limiter.isHot("big-tenant"));   // true
+            System.out.println(limiter.isHot("small-tenant")); // false
+        }
+    }
+}
+
+/*
+  Race on promotion/demotion: requests that read the old mode just before the switch still
+  admit against the old bucket, whose level was already copied over. That over-admits by
+  at most the number of in-flight requests at that instant, once per switch. The same holds
+  for a request racing the sweeper's remove, as in BucketSweeper.
+*/
+
+////////
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotKeyRateLimiterTest {
+
+    @Test
+    void testStripedBucketNeverExceedsCapacity() {
+        ManualTimeSource clock = new ManualTimeSource();
+        StripedLeakyBucket bucket = new StripedLeakyBucket(10, 1, 4, 5, 0, clock);
+
+        int admitted = 0;
+        for (int i = 0; i < 40; i++) {
+            if (bucket.allowRequest()) admitted++;
+        }
+        assertTrue(admitted >= 2 && admitted <= 10, "admitted " + admitted);   // home cell + one random probe
+    }
+
+    @Test
+    void testRebalanceMovesRoomToTheBusyCells() {
+        ManualTimeSource clock = new ManualTimeSource();
+        StripedLeakyBucket bucket = new StripedLeakyBucket(16, 0.001, 4, 5, 0, clock);
+
+        int admitted = 0;
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 20; i++) {
+                if (bucket.allowRequest()) admitted++;
+            }
+            bucket.rebalance();
+        }
+        // one thread reaches (nearly) all of it; what is left is < 1 token of room per cell
+        assertTrue(admitted > 16 - bucket.cellCount() && admitted <= 16, "admitted " + admitted);
+        assertEquals(admitted, bucket.level(), 1e-6);
+    }
+
+    @Test
+    void testStripedBucketLeaks() {
+        ManualTimeSource clock = new ManualTimeSource();
+        StripedLeakyBucket bucket = new StripedLeakyBucket(8, 4, 4, 5, 8, clock); // start full
+
+        assertFalse(bucket.allowRequest());
+        clock.advance(1, TimeUnit.SECONDS);   // 4 tokens leak out across the cells
+        assertEquals(4.0, bucket.level(), 1e-9);
+        assertTrue(bucket.tryAcquire(1));
+    }
+
+    @Test
+    void testStripedBucketNeverOverAdmitsWhileRebalancing() throws InterruptedException {
+        ManualTimeSource clock = new ManualTimeSource();
+        StripedLeakyBucket bucket = new StripedLeakyBucket(100, 0.001, 8, 10, 0, clock);
+        java.util.concurrent.atomic.AtomicInteger admitted = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.concurrent.atomic.AtomicBoolean done = new java.util.concurrent.atomic.AtomicBoolean();
+
+        Thread rebalancer = new Thread(() -> {
+            while (!done.get()) bucket.rebalance();
+        });
+        rebalancer.start();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2_000; i++) if (bucket.allowRequest()) admitted.incrementAndGet();
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        done.set(true);
+        rebalancer.join();
+
+        assertTrue(admitted.get() <= 100, "admitted " + admitted.get());
+        assertTrue(bucket.level() <= 100 + 1e-6);
+    }
+
+    @Test
+    void testHotKeyIsPromoted() {
+        ManualTimeSource clock = new ManualTimeSource();
+        try (HotKeyRateLimiter limiter = new HotKeyRateLimiter(1_000, 1_000, 100, 4, 10, 60_000, 1_000, clock)) {
+            for (int i = 0; i < 200; i++) limiter.allowRequest("hot");
+            limiter.allowRequest("cold");
+            clock.advance(1, TimeUnit.SECONDS);
+            limiter.allowRequest("hot");
+            limiter.allowRequest("cold");
+
+            assertTrue(limiter.isHot("hot"));
+            assertFalse(limiter.isHot("cold"));
+            assertEquals(1, limiter.hotKeys());
+        }
+    }
+
+    @Test
+    void testCooledKeyIsDemotedWithItsLevel() {
+        ManualTimeSource clock = new ManualTimeSource();
+        try (HotKeyRateLimiter limiter = new HotKeyRateLimiter(100, 0.001, 50, 4, 10, 60_000, 1_000, clock)) {
+            for (int i = 0; i < 60; i++) limiter.allowRequest("u");       // 60 admitted, 60/s
+            clock.advance(1, TimeUnit.SECONDS);
+            limiter.allowRequest("u");
+            assertTrue(limiter.isHot("u"));
+
+            clock.advance(1, TimeUnit.SECONDS);                            // 1 request in that window
+            limiter.allowRequest("u");
+            assertFalse(limiter.isHot("u"));
+
+            int admitted = 0;
+            for (int i = 0; i < 100; i++) if (limiter.allowRequest("u")) admitted++;
+            assertTrue(admitted <= 100 - 60, "admitted " + admitted);      // the level came back with it
+        }
+    }
+
+    @Test
+    void testIdleUsersAreEvicted() {
+        ManualTimeSource clock = new ManualTimeSource();
+        try (HotKeyRateLimiter limiter = new HotKeyRateLimiter(1_000, 1_000, 100, 4, 10, 60_000, 1_000, clock)) {
+            for (int i = 0; i < 200; i++) limiter.allowRequest("hot");
+            clock.advance(1, TimeUnit.SECONDS);
+            limiter.allowRequest("hot");
+            for (int i = 0; i < 500; i++) limiter.allowRequest("cold-" + i);
+            assertTrue(limiter.isHot("hot"));
+            assertEquals(501, limiter.size());
+
+            clock.advance(2, TimeUnit.MINUTES);
+            limiter.sweep();
+            assertEquals(0, limiter.size());
+        }
+    }
+
+    @Test
+    void testErrorBoundMustCoverCells() {
+        assertThrows(IllegalArgumentException.class, () -> new StripedLeakyBucket(100, 10, 8, 8));
+    }
+}
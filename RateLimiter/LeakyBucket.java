@@ -1,32 +1,149 @@
-class LeakyBucket {
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+class LeakyBucket implements Limiter, Evictable {
     private final int capacity;         // max tokens that bucket can hold
     private final double leakRate;      // tokens leaked per second
     private double tokens = 0;          // current tokens
-    private long lastLeakTime;
+    private volatile long lastLeakTime; // volatile: read by the sweeper without the monitor
+    private volatile long drainedAt;    // clock value at which tokens reaches 0 (see publish())
+    private final TimeSource clock;
 
     public LeakyBucket(int capacity, double leakRate) {
+        this(capacity, leakRate, TimeSource.SYSTEM);
+    }
+
+    public LeakyBucket(int capacity, double leakRate, TimeSource clock) {
         this.capacity = capacity;
         this.leakRate = leakRate;
-        this.lastLeakTime = System.nanoTime();
+        this.clock = clock;
+        this.lastLeakTime = clock.nanoTime();
+        this.drainedAt = lastLeakTime;
+    }
+
+    // resume at a given level (e.g. a hot key's cells being folded back into one bucket)
+    LeakyBucket(int capacity, double leakRate, TimeSource clock, double tokens) {
+        this(capacity, leakRate, clock);
+        this.tokens = Math.max(0, tokens);
+        publish();
     }
 
-    private void leak() {
-        long now = System.nanoTime();
+    private void leak(long now) {
+        if (now <= lastLeakTime) return;   // clock read before another thread's leak
         double elapsedSeconds = (now - lastLeakTime) / 1_000_000_000.0;
         double leaked = elapsedSeconds * leakRate;
         tokens = Math.max(0, tokens - leaked);
         lastLeakTime = now;
     }
 
-    public synchronized boolean allowRequest() {
-        leak();
-        if (tokens < capacity) {
-            tokens += 1;
+    // leaking keeps the drain instant where it is, so only adding tokens has to move it
+    private void publish() {
+        drainedAt = lastLeakTime + (long) Math.ceil(
+                Math.min(LockFreeLeakyBucket.MAX_BACKLOG_NANOS, tokens / leakRate * 1_000_000_000L));
+    }
+
+    public boolean allowRequest() {
+        return tryAcquire(1);
+    }
+
+    // all-or-nothing: succeeds iff `permits` back-to-back allowRequest() calls would all succeed
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, clock.nanoTime());
+    }
+
+    synchronized boolean tryAcquire(int permits, long now) {
+        if (permits <= 0) throw new IllegalArgumentException("permits must be positive");
+        leak(now);
+        if (tokens + permits - 1 < capacity) {
+            tokens += permits;
+            publish();
             return true;
         }
         return false;
     }
 
+    // partial: admits the first n of `permits` single requests that fit, returns n
+    synchronized int acquireUpTo(int permits, long now) {
+        leak(now);
+        int admitted = (int) Math.min(permits, Math.max(0, Math.ceil(capacity - tokens)));
+        if (admitted > 0) {
+            tokens += admitted;
+            publish();
+        }
+        return admitted;
+    }
+
+    /**
+     * Waiting mode for smoothing: never rejects, blocks until the request's slot drains.
+     * The slot is reserved up front, so waiters are served in arrival order and the
+     * output rate stays exactly leakRate. An interrupted waiter gives its slot back.
+     */
+    public void acquire() throws InterruptedException {
+        CompletableFuture<Void> wait = acquireAsync();
+        try {
+            wait.get();
+        } catch (InterruptedException e) {
+            wait.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // completed via the shared TimerWheel, no thread is held while waiting;
+    // cancelling the future before it completes returns the reserved slot
+    public CompletableFuture<Void> acquireAsync() {
+        long waitNanos = reserve(clock.nanoTime());
+        if (waitNanos == 0) return CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> wait = TimerWheel.shared().schedule(waitNanos);
+        wait.whenComplete((v, e) -> {
+            if (e instanceof CancellationException) refund(1, clock.nanoTime());
+        });
+        return wait;
+    }
+
+    // adds the request even above capacity; returns how long until it would have fit
+    synchronized long reserve(long now) {
+        leak(now);
+        long waitNanos = tokens < capacity ? 0 : (long) ((tokens - capacity) / leakRate * 1_000_000_000L) + 1;
+        tokens += 1;
+        publish();
+        return waitNanos;
+    }
+
+    // gives back a slot that was reserved but not used (never below empty)
+    synchronized void refund(int permits, long now) {
+        leak(now);
+        tokens = Math.max(0, tokens - permits);
+        publish();
+    }
+
+    // current level after leaking up to `now`
+    synchronized double level(long now) {
+        leak(now);
+        return tokens;
+    }
+
+    // lock-free and read-only (LimiterMetrics samples it next to admissions)
+    @Override
+    public double availableTokens() {
+        long backlog = Math.max(0, drainedAt - clock.nanoTime());
+        return Math.max(0, capacity - backlog / 1_000_000_000.0 * leakRate);
+    }
+
+    // lock-free, so a sweep never waits for (or holds up) an admission
+    @Override
+    public long lastAccessNanos() {
+        return lastLeakTime;
+    }
+
+    // drained: a new bucket (tokens = 0) is exactly as strict
+    @Override
+    public boolean isAtRest(long now) {
+        return now - drainedAt >= 0;
+    }
+
     public static void main(String[] args) throws InterruptedException {
       LeakyBucket bucket = new LeakyBucket(3, 1); // capacity=3, leak=1 token/sec
   
@@ -42,24 +159,115 @@ class LeakyBucket {
 
 /////Per User Locking
 
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
-class UserRateLimiter {
+class UserRateLimiter implements AutoCloseable {
     private final ConcurrentHashMap<String, LeakyBucket> buckets = new ConcurrentHashMap<>();
     private final int capacity;
     private final double leakRate;
+    private final TimeSource clock;
+    private final BucketSweeper<LeakyBucket> sweeper;   // null = never evict
+    private final LimiterMetrics metrics = new LimiterMetrics();
+    private final Function<String, LeakyBucket> bucketFactory = this::newBucket; // allocated once, not per miss
 
     public UserRateLimiter(int capacity, double leakRate) {
+        this(capacity, leakRate, TimeSource.SYSTEM);
+    }
+
+    public UserRateLimiter(int capacity, double leakRate, TimeSource clock) {
+        this.capacity = capacity;
+        this.leakRate = leakRate;
+        this.clock = clock;
+        this.sweeper = null;
+    }
+
+    /**
+     * Bounded variant: drained buckets idle for longer than idleTtlMillis are evicted
+     * in the background, and above maxEntries the least recently used ones go.
+     */
+    public UserRateLimiter(int capacity, double leakRate, long idleTtlMillis, int maxEntries) {
+        this(capacity, leakRate, idleTtlMillis, maxEntries, TimeSource.SYSTEM);
+    }
+
+    public UserRateLimiter(int capacity, double leakRate, long idleTtlMillis, int maxEntries,
+                           TimeSource clock) {
         this.capacity = capacity;
         this.leakRate = leakRate;
+        this.clock = clock;
+        this.sweeper = new BucketSweeper<>(buckets, idleTtlMillis, maxEntries, clock);
     }
 
     public boolean allowRequest(String userId) {
-        // ensures only one bucket per user (thread-safe)
-        buckets.putIfAbsent(userId, new LeakyBucket(capacity, leakRate));
+        // hit path: one lock-free get, no throwaway bucket, nothing allocated
+        LeakyBucket bucket = buckets.get(userId);
+        if (bucket == null) bucket = createBucket(userId);
+        return metrics.admit(bucket, 1);
+    }
 
+    // n requests of one user, all-or-nothing
+    public boolean allowRequests(String userId, int n) {
         LeakyBucket bucket = buckets.get(userId);
-        return bucket.allowRequest();
+        if (bucket == null) bucket = createBucket(userId);
+        return metrics.admit(bucket, n);
+    }
+
+    /**
+     * Micro-batch admission: out[i] = allowRequest(userIds[i]) as if called in order.
+     * One clock read per batch, and each run of the same user costs one map lookup
+     * and one monitor acquisition, so group requests by user for the best effect.
+     */
+    public void allowRequests(String[] userIds, boolean[] out) {
+        long now = clock.nanoTime();
+        int i = 0;
+        while (i < userIds.length) {
+            String userId = userIds[i];
+            int runEnd = i + 1;
+            while (runEnd < userIds.length && userId.equals(userIds[runEnd])) runEnd++;
+
+            LeakyBucket bucket = buckets.get(userId);
+            if (bucket == null) bucket = createBucket(userId);
+            int admitted = bucket.acquireUpTo(runEnd - i, now);
+            metrics.countBatch(admitted, runEnd - i - admitted);
+
+            Arrays.fill(out, i, i + admitted, true);
+            Arrays.fill(out, i + admitted, runEnd, false);
+            i = runEnd;
+        }
+    }
+
+    private LeakyBucket createBucket(String userId) {
+        // ensures only one bucket per user (thread-safe), constructor runs only on a real miss
+        LeakyBucket bucket = buckets.computeIfAbsent(userId, bucketFactory);
+        if (sweeper != null) sweeper.onInsert();
+        return bucket;
+    }
+
+    private LeakyBucket newBucket(String userId) {
+        return new LeakyBucket(capacity, leakRate, clock);
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    public long idleEvictions() {
+        return sweeper == null ? 0 : sweeper.idleEvictions();
+    }
+
+    public long lruEvictions() {
+        return sweeper == null ? 0 : sweeper.lruEvictions();
+    }
+
+    // admit/reject counts + sampled latency and tokens-left, safe to poll under traffic
+    public MetricsSnapshot metrics() {
+        return metrics.snapshot();
+    }
+
+    @Override
+    public void close() {
+        if (sweeper != null) sweeper.close();
     }
 
     public static void main(String[] args) throws InterruptedException {
@@ -141,7 +349,7 @@ THIS is what gets you Strong Hire.
 
 ✔ Thread Safety Problem to Point Out
 
-Even though buckets are created with putIfAbsent, the internal allowRequest() must be synchronized, otherwise:
+Even though buckets are created with computeIfAbsent, the internal allowRequest() must be synchronized, otherwise:
 
 Two threads may leak incorrectly
 
@@ -154,59 +362,277 @@ Being able to articulate this is critical.
 
 ///// Credit System
 
-class CreditBucket {
+class CreditBucket implements Limiter, Evictable {
     private final int baseCapacity;      // base allowed limit per second
     private final int maxCredits;        // additional capacity from unused requests
     private final double refillRate;     // tokens added per second
     private double tokens;               // current tokens
-    private long lastRefillTime;
+    private volatile long lastRefillTime; // volatile: read by the sweeper without the monitor
+    private volatile long zeroAt;        // clock value at which the refill line crosses 0 (see publish())
+    private final TimeSource clock;
 
     public CreditBucket(int baseCapacity, int maxCredits, double refillRate) {
+        this(baseCapacity, maxCredits, refillRate, TimeSource.SYSTEM);
+    }
+
+    public CreditBucket(int baseCapacity, int maxCredits, double refillRate, TimeSource clock) {
         this.baseCapacity = baseCapacity;
         this.maxCredits = maxCredits;
         this.refillRate = refillRate;
+        this.clock = clock;
         this.tokens = baseCapacity;  // start full
-        this.lastRefillTime = System.nanoTime();
+        this.lastRefillTime = clock.nanoTime();
+        publish();
     }
 
-    private void refill() {
-        long now = System.nanoTime();
+    // warm restart: resume from a saved level, refills since lastRefillTime are applied on first use
+    CreditBucket(int baseCapacity, int maxCredits, double refillRate, TimeSource clock,
+                 double tokens, long lastRefillTime) {
+        this.baseCapacity = baseCapacity;
+        this.maxCredits = maxCredits;
+        this.refillRate = refillRate;
+        this.clock = clock;
+        this.tokens = Math.min(baseCapacity + maxCredits, tokens);
+        this.lastRefillTime = lastRefillTime;
+        publish();
+    }
+
+    private void refill(long now) {
+        if (now <= lastRefillTime) return;   // clock read before another thread's refill
         double seconds = (now - lastRefillTime) / 1_000_000_000.0;
 
         tokens = Math.min(baseCapacity + maxCredits, tokens + seconds * refillRate);
         lastRefillTime = now;
     }
 
-    public synchronized boolean allowRequest() {
-        refill();
+    // level(t) = min(capacity + credits, (t - zeroAt) * refillRate) until the next admission:
+    // refilling (clamp included) stays on that line, so only taking or returning tokens moves it
+    private void publish() {
+        double sinceZero = Math.ceil(tokens / refillRate * 1_000_000_000L);   // round towards "more tokens"
+        zeroAt = lastRefillTime - (long) Math.max(-LockFreeLeakyBucket.MAX_BACKLOG_NANOS,
+                Math.min(LockFreeLeakyBucket.MAX_BACKLOG_NANOS, sinceZero));
+    }
+
+    public boolean allowRequest() {
+        return tryAcquire(1);
+    }
+
+    // all-or-nothing: takes `permits` tokens or none
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, clock.nanoTime());
+    }
+
+    synchronized boolean tryAcquire(int permits, long now) {
+        if (permits <= 0) throw new IllegalArgumentException("permits must be positive");
+        refill(now);
 
-        if (tokens >= 1) {
-            tokens -= 1;
+        if (tokens >= permits) {
+            tokens -= permits;
+            publish();
             return true;
         }
         return false;
     }
+
+    // partial: admits the first n of `permits` single requests that fit, returns n
+    synchronized int acquireUpTo(int permits, long now) {
+        refill(now);
+        int admitted = (int) Math.min(permits, Math.floor(tokens));
+        if (admitted > 0) {
+            tokens -= admitted;
+            publish();
+        }
+        return admitted;
+    }
+
+    // gives back tokens taken but not used, still clamped to capacity + credits
+    synchronized void refund(int permits, long now) {
+        refill(now);
+        tokens = Math.min(baseCapacity + maxCredits, tokens + permits);
+        publish();
+    }
+
+    // blocks until a token is available (see LeakyBucket.acquire)
+    public void acquire() throws InterruptedException {
+        CompletableFuture<Void> wait = acquireAsync();
+        try {
+            wait.get();
+        } catch (InterruptedException e) {
+            wait.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public CompletableFuture<Void> acquireAsync() {
+        long waitNanos = reserve(clock.nanoTime());
+        if (waitNanos == 0) return CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> wait = TimerWheel.shared().schedule(waitNanos);
+        wait.whenComplete((v, e) -> {
+            if (e instanceof CancellationException) refund(1, clock.nanoTime());
+        });
+        return wait;
+    }
+
+    // takes the token on credit (tokens may go negative); returns how long until it is refilled
+    synchronized long reserve(long now) {
+        refill(now);
+        long waitNanos = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / refillRate * 1_000_000_000L);
+        tokens -= 1;
+        publish();
+        return waitNanos;
+    }
+
+    // lock-free and read-only (LimiterMetrics samples it next to admissions)
+    @Override
+    public double availableTokens() {
+        return Math.min(baseCapacity + maxCredits, (clock.nanoTime() - zeroAt) / 1_000_000_000.0 * refillRate);
+    }
+
+    // level as of `now` without refilling: a snapshot must not count as an access
+    synchronized double tokensAt(long now) {
+        if (now <= lastRefillTime) return tokens;
+        return Math.min(baseCapacity + maxCredits, tokens + (now - lastRefillTime) / 1_000_000_000.0 * refillRate);
+    }
+
+    // lock-free, so a sweep never waits for (or holds up) an admission
+    @Override
+    public long lastAccessNanos() {
+        return lastRefillTime;
+    }
+
+    // refilled back to baseCapacity: a new bucket (which starts there) is at least as strict
+    @Override
+    public boolean isAtRest(long now) {
+        return (now - zeroAt) / 1_000_000_000.0 * refillRate >= baseCapacity;
+    }
 }
 
 
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
-class UserCreditLimiter {
+class UserCreditLimiter implements AutoCloseable {
     private final ConcurrentHashMap<String, CreditBucket> buckets = new ConcurrentHashMap<>();
     private final int baseCapacity;
     private final int maxCredits;
     private final double refillRate;
+    private final TimeSource clock;
+    private final BucketSweeper<CreditBucket> sweeper;  // null = never evict
+    private final LimiterMetrics metrics = new LimiterMetrics();
+    private final Function<String, CreditBucket> bucketFactory = this::newBucket; // allocated once, not per miss
 
     public UserCreditLimiter(int baseCapacity, int maxCredits, double refillRate) {
+        this(baseCapacity, maxCredits, refillRate, TimeSource.SYSTEM);
+    }
+
+    public UserCreditLimiter(int baseCapacity, int maxCredits, double refillRate, TimeSource clock) {
+        this.baseCapacity = baseCapacity;
+        this.maxCredits = maxCredits;
+        this.refillRate = refillRate;
+        this.clock = clock;
+        this.sweeper = null;
+    }
+
+    /**
+     * Bounded variant: buckets refilled back to baseCapacity and idle for longer than
+     * idleTtlMillis are evicted in the background, above maxEntries LRU eviction kicks in.
+     */
+    public UserCreditLimiter(int baseCapacity, int maxCredits, double refillRate,
+                             long idleTtlMillis, int maxEntries) {
+        this(baseCapacity, maxCredits, refillRate, idleTtlMillis, maxEntries, TimeSource.SYSTEM);
+    }
+
+    public UserCreditLimiter(int baseCapacity, int maxCredits, double refillRate,
+                             long idleTtlMillis, int maxEntries, TimeSource clock) {
         this.baseCapacity = baseCapacity;
         this.maxCredits = maxCredits;
         this.refillRate = refillRate;
+        this.clock = clock;
+        this.sweeper = new BucketSweeper<>(buckets, idleTtlMillis, maxEntries, clock);
     }
 
     public boolean allowRequest(String userId) {
-        buckets.putIfAbsent(userId,
-                new CreditBucket(baseCapacity, maxCredits, refillRate));
-        return buckets.get(userId).allowRequest();
+        CreditBucket bucket = buckets.get(userId);
+        if (bucket == null) bucket = createBucket(userId);
+        return metrics.admit(bucket, 1);
+    }
+
+    // n requests of one user, all-or-nothing
+    public boolean allowRequests(String userId, int n) {
+        CreditBucket bucket = buckets.get(userId);
+        if (bucket == null) bucket = createBucket(userId);
+        return metrics.admit(bucket, n);
+    }
+
+    // micro-batch admission, same contract as UserRateLimiter.allowRequests(String[], boolean[])
+    public void allowRequests(String[] userIds, boolean[] out) {
+        long now = clock.nanoTime();
+        int i = 0;
+        while (i < userIds.length) {
+            String userId = userIds[i];
+            int runEnd = i + 1;
+            while (runEnd < userIds.length && userId.equals(userIds[runEnd])) runEnd++;
+
+            CreditBucket bucket = buckets.get(userId);
+            if (bucket == null) bucket = createBucket(userId);
+            int admitted = bucket.acquireUpTo(runEnd - i, now);
+            metrics.countBatch(admitted, runEnd - i - admitted);
+
+            Arrays.fill(out, i, i + admitted, true);
+            Arrays.fill(out, i + admitted, runEnd, false);
+            i = runEnd;
+        }
+    }
+
+    private CreditBucket createBucket(String userId) {
+        CreditBucket bucket = buckets.computeIfAbsent(userId, bucketFactory);
+        if (sweeper != null) sweeper.onInsert();
+        return bucket;
+    }
+
+    private CreditBucket newBucket(String userId) {
+        return new CreditBucket(baseCapacity, maxCredits, refillRate, clock);
+    }
+
+    // weakly consistent walk for CreditSnapshotter: never blocks admissions
+    void forEachBucket(BiConsumer<String, CreditBucket> action) {
+        buckets.forEach(action);
+    }
+
+    // warm restart: a bucket last refilled `elapsedNanos` ago at level `tokens`
+    void restoreBucket(String userId, double tokens, long elapsedNanos) {
+        buckets.put(userId, new CreditBucket(baseCapacity, maxCredits, refillRate, clock,
+                tokens, clock.nanoTime() - elapsedNanos));
+        if (sweeper != null) sweeper.onInsert();
+    }
+
+    TimeSource clock() {
+        return clock;
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    public long idleEvictions() {
+        return sweeper == null ? 0 : sweeper.idleEvictions();
+    }
+
+    public long lruEvictions() {
+        return sweeper == null ? 0 : sweeper.lruEvictions();
+    }
+
+    public MetricsSnapshot metrics() {
+        return metrics.snapshot();
+    }
+
+    @Override
+    public void close() {
+        if (sweeper != null) sweeper.close();
     }
 
     public static void main(String[] args) throws InterruptedException {
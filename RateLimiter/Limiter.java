@@ -0,0 +1,49 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Common face of every single-key algorithm in this folder
+ * (LeakyBucket, CreditBucket, LockFreeLeakyBucket, SlidingWindowCounter, SlidingWindowLog).
+ */
+interface Limiter {
+    boolean allowRequest();
+
+    // all-or-nothing: `permits` requests admitted together or none at all
+    boolean tryAcquire(int permits);
+
+    // how many more single requests would fit right now (for monitoring, may be fractional);
+    // read-only, never leaks/refills/rolls the limiter's state
+    double availableTokens();
+}
+
+/**
+ * Per-user registry for any Limiter: same lookup path as UserRateLimiter
+ * (lock-free get on hits, computeIfAbsent only on a miss), algorithm picked by the factory.
+ *
+ *   new UserLimiterRegistry<>(userId -> new SlidingWindowCounter(100, 1, TimeUnit.SECONDS))
+ */
+class UserLimiterRegistry<L extends Limiter> {
+    private final ConcurrentHashMap<String, L> limiters = new ConcurrentHashMap<>();
+    private final Function<String, L> factory;
+
+    UserLimiterRegistry(Function<String, L> factory) {
+        this.factory = factory;
+    }
+
+    public boolean allowRequest(String userId) {
+        return limiterFor(userId).allowRequest();
+    }
+
+    public boolean allowRequests(String userId, int n) {
+        return limiterFor(userId).tryAcquire(n);
+    }
+
+    L limiterFor(String userId) {
+        L limiter = limiters.get(userId);
+        return limiter != null ? limiter : limiters.computeIfAbsent(userId, factory);
+    }
+
+    public int size() {
+        return limiters.size();
+    }
+}
@@ -0,0 +1,264 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low-overhead instrumentation for a limiter ("Monitoring" in Readme.md).
+ *
+ * - admitted / rejected: LongAdder, counted on every call (a few ns, no shared cache line)
+ * - admission latency + tokens left: recorded for 1 in `sampleEvery` calls only, because
+ *   timing a call costs two clock reads, which is more than the admission itself. Tokens
+ *   left comes from availableTokens(), which is read-only and (for the buckets) lock-free,
+ *   so a sample never takes the limiter's monitor a second time or moves its state.
+ *
+ * snapshot() can be polled at any time; it never blocks or resets anything.
+ */
+class LimiterMetrics {
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicHistogram latencyNanos = new AtomicHistogram();
+    private final AtomicHistogram tokensLeft = new AtomicHistogram();
+    private final int sampleMask;
+
+    // sampleEvery is rounded up to a power of two; 1 = time every call
+    LimiterMetrics(int sampleEvery) {
+        int rounded = sampleEvery <= 1 ? 1 : Integer.highestOneBit(sampleEvery - 1) << 1;
+        this.sampleMask = rounded - 1;
+    }
+
+    LimiterMetrics() {
+        this(64);
+    }
+
+    // admission through `limiter`, counted and (sometimes) timed
+    boolean admit(Limiter limiter, int permits) {
+        if ((ThreadLocalRandom.current().nextInt() & sampleMask) != 0) {
+            return count(limiter.tryAcquire(permits));
+        }
+        long start = System.nanoTime();
+        boolean result = limiter.tryAcquire(permits);
+        latencyNanos.record(System.nanoTime() - start);
+        tokensLeft.record((long) limiter.availableTokens());
+        return count(result);
+    }
+
+    boolean count(boolean result) {
+        (result ? admitted : rejected).increment();
+        return result;
+    }
+
+    void countBatch(int admittedCount, int rejectedCount) {
+        if (admittedCount > 0) admitted.add(admittedCount);
+        if (rejectedCount > 0) rejected.add(rejectedCount);
+    }
+
+    MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(admitted.sum(), rejected.sum(),
+                latencyNanos.snapshot(), tokensLeft.snapshot());
+    }
+}
+
+final class MetricsSnapshot {
+    public final long admitted;
+    public final long rejected;
+    public final HistogramSnapshot latencyNanos;   // sampled
+    public final HistogramSnapshot tokensLeft;     // sampled, right after the admission
+
+    MetricsSnapshot(long admitted, long rejected, HistogramSnapshot latencyNanos, HistogramSnapshot tokensLeft) {
+        this.admitted = admitted;
+        this.rejected = rejected;
+        this.latencyNanos = latencyNanos;
+        this.tokensLeft = tokensLeft;
+    }
+
+    @Override
+    public String toString() {
+        return "admitted=" + admitted + " rejected=" + rejected
+                + " latency(ns) p50=" + latencyNanos.valueAtPercentile(50)
+                + " p99=" + latencyNanos.valueAtPercentile(99)
+                + " tokensLeft p50=" + tokensLeft.valueAtPercentile(50)
+                + " p1=" + tokensLeft.valueAtPercentile(1);
+    }
+}
+
+/**
+ * Lock-free log-linear histogram, HdrHistogram-style.
+ *
+ * Values below 2^SUB_BITS get exact buckets; above that every power-of-two range is split
+ * into 2^(SUB_BITS-1) linear sub-buckets, so any recorded value is reported within ~3%
+ * (SUB_BITS = 5). Fixed 1 KB-ish of counters covers the whole long range, record() is one
+ * atomic increment and never allocates.
+ */
+class AtomicHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;          // exact buckets [0, 32)
+    private static final int HALF = SUB_COUNT / 2;               // sub-buckets per power of two
+    private static final int BUCKETS = SUB_COUNT + (64 - SUB_BITS) * HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(long value) {
+        counts.incrementAndGet(indexOf(Math.max(0, value)));
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);   // >= 1
+        int top = (int) (value >>> shift);                                   // [HALF, SUB_COUNT)
+        return SUB_COUNT + (shift - 1) * HALF + (top - HALF);
+    }
+
+    static long lowestValueAt(int index) {
+        if (index < SUB_COUNT) return index;
+        int k = index - SUB_COUNT;
+        int shift = k / HALF + 1;
+        return (long) (k % HALF + HALF) << shift;
+    }
+
+    // bucket-by-bucket copy: cheap and non-blocking, may be off by in-flight records
+    HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+        return new HistogramSnapshot(copy);
+    }
+}
+
+final class HistogramSnapshot {
+    private final long[] counts;
+    private final long total;
+
+    HistogramSnapshot(long[] counts) {
+        this.counts = counts;
+        long sum = 0;
+        for (long c : counts) sum += c;
+        this.total = sum;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    // lower bound of the bucket holding the p-th percentile, 0 when empty
+    public long valueAtPercentile(double percentile) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return AtomicHistogram.lowestValueAt(i);
+        }
+        return AtomicHistogram.lowestValueAt(counts.length - 1);
+    }
+}
+
+/**
+ * Decorator: any Limiter, with LimiterMetrics around it.
+ */
+class InstrumentedLimiter implements Limiter {
+    private final Limiter delegate;
+    private final LimiterMetrics metrics;
+
+    InstrumentedLimiter(Limiter delegate, LimiterMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean allowRequest() {
+        return metrics.admit(delegate, 1);
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return metrics.admit(delegate, permits);
+    }
+
+    @Override
+    public double availableTokens() {
+        return delegate.availableTokens();
+    }
+}
+
+////////
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LimiterMetricsTest {
+
+    @Test
+    void testCountsAdmitsAndRejects() {
+        LimiterMetrics metrics = new LimiterMetrics(1);
+        Limiter limiter = new InstrumentedLimiter(new CreditBucket(3, 0, 0.001), metrics);
+
+        for (int i = 0; i < 5; i++) limiter.allowRequest();
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(3, snapshot.admitted);
+        assertEquals(2, snapshot.rejected);
+        assertEquals(5, snapshot.latencyNanos.count());   // sampleEvery = 1
+        assertEquals(2, snapshot.tokensLeft.valueAtPercentile(100));   // after the 1st admit
+        assertEquals(0, snapshot.tokensLeft.valueAtPercentile(50));
+    }
+
+    @Test
+    void testSamplingNeitherLocksNorMovesTheBucket() throws InterruptedException {
+        ManualTimeSource clock = new ManualTimeSource();
+        LeakyBucket bucket = new LeakyBucket(4, 1, clock);
+        LimiterMetrics metrics = new LimiterMetrics(1);
+        metrics.admit(bucket, 3);
+        clock.advance(1, TimeUnit.SECONDS);
+
+        double[] left = new double[1];
+        synchronized (bucket) {                       // another admission holding the monitor
+            Thread reader = new Thread(() -> left[0] = bucket.availableTokens());
+            reader.start();
+            reader.join(5_000);
+            assertFalse(reader.isAlive());
+        }
+        assertEquals(2.0, left[0], 1e-9);
+        assertEquals(0, bucket.lastAccessNanos());    // nothing leaked on its behalf
+
+        CreditBucket credit = new CreditBucket(3, 2, 1, clock);
+        metrics.admit(credit, 3);
+        clock.advance(10, TimeUnit.SECONDS);
+        assertEquals(5.0, credit.availableTokens(), 1e-9);   // capped at base + credits
+    }
+
+    @Test
+    void testHistogramPrecision() {
+        AtomicHistogram histogram = new AtomicHistogram();
+        for (long v = 1; v <= 1_000_000; v *= 10) histogram.record(v);
+        histogram.record(Long.MAX_VALUE);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(8, snapshot.count());
+        assertEquals(1, snapshot.valueAtPercentile(1));
+        long p50 = snapshot.valueAtPercentile(50);          // 4th of 8 values = 1000
+        assertTrue(p50 <= 1000 && p50 > 1000 * 0.96, "p50 = " + p50);
+    }
+
+    @Test
+    void testBucketIndexIsMonotonic() {
+        int previous = -1;
+        for (long v = 0; v < 100_000; v++) {
+            int index = AtomicHistogram.indexOf(v);
+            assertTrue(index >= previous);
+            assertTrue(AtomicHistogram.lowestValueAt(index) <= v);
+            previous = index;
+        }
+    }
+
+    @Test
+    void testUserRateLimiterExposesMetrics() {
+        UserRateLimiter limiter = new UserRateLimiter(2, 1, new ManualTimeSource());
+        limiter.allowRequest("u1");
+        limiter.allowRequest("u1");
+        limiter.allowRequest("u1");
+
+        assertEquals(2, limiter.metrics().admitted);
+        assertEquals(1, limiter.metrics().rejected);
+    }
+}
@@ -0,0 +1,202 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free LeakyBucket.
+ *
+ * Same admission rule as LeakyBucket (leak, then admit while level < capacity),
+ * but without the monitor. The (tokens, lastLeakTime) pair is folded into ONE long:
+ * the instant at which the bucket will be empty again.
+ *
+ *   backlogNanos = max(0, emptyAt - now)
+ *   tokens       = backlogNanos / nanosPerToken   (fixed-point, 1 unit = 1/nanosPerToken token)
+ *
+ * Leaking is implicit (time moving forward shrinks the backlog), and admitting one
+ * request pushes emptyAt forward by nanosPerToken. One CAS on one AtomicLong,
+ * so there is no torn read between level and timestamp.
+ */
+class LockFreeLeakyBucket implements Limiter {
+    // backlogs are compared as nanoTime differences, so keep them far below 2^63 (~36 years)
+    static final long MAX_BACKLOG_NANOS = Long.MAX_VALUE / 4;
+
+    private final int capacity;          // max tokens that bucket can hold
+    private final double leakRate;       // tokens leaked per second
+    private final long nanosPerToken;    // time it takes one token to leak out
+    private final long capacityNanos;    // backlog at which the bucket is full
+    private final AtomicLong emptyAt;    // clock.nanoTime() at which tokens reaches 0
+    private final TimeSource clock;
+
+    public LockFreeLeakyBucket(int capacity, double leakRate) {
+        this(capacity, leakRate, TimeSource.SYSTEM);
+    }
+
+    public LockFreeLeakyBucket(int capacity, double leakRate, TimeSource clock) {
+        if (capacity <= 0 || leakRate <= 0)
+            throw new IllegalArgumentException("capacity and leakRate must be positive");
+        this.capacity = capacity;
+        this.leakRate = leakRate;
+        this.nanosPerToken = Math.max(1, Math.round(1_000_000_000.0 / leakRate));
+        // in units of the admit step, so a burst at one instant admits exactly `capacity`
+        // (a ceil(capacity * 1e9 / leakRate) limit let a rounded-down step squeeze in one more)
+        this.capacityNanos = capacityNanos(capacity, nanosPerToken);
+        this.clock = clock;
+        this.emptyAt = new AtomicLong(clock.nanoTime()); // start empty, like LeakyBucket
+    }
+
+    // capacity * nanosPerToken, rejected up front if it would overflow the backlog math
+    static long capacityNanos(int capacity, long nanosPerToken) {
+        if (nanosPerToken > MAX_BACKLOG_NANOS / capacity)
+            throw new IllegalArgumentException("capacity / leakRate too large: the bucket would take over "
+                    + MAX_BACKLOG_NANOS / 1_000_000_000L + "s to drain");
+        return capacity * nanosPerToken;
+    }
+
+    public boolean allowRequest() {
+        return tryAcquire(1);
+    }
+
+    // all-or-nothing, same rule as LeakyBucket.tryAcquire: level + permits - 1 < capacity
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, clock.nanoTime());
+    }
+
+    boolean tryAcquire(int permits, long now) {
+        if (permits <= 0) throw new IllegalArgumentException("permits must be positive");
+        if (permits > capacity) return false;    // never fits; also keeps permits * nanosPerToken in range
+        long extra = (permits - 1) * nanosPerToken;
+        for (;;) {
+            long current = emptyAt.get();
+            long backlog = Math.max(0, current - now);
+            if (backlog + extra >= capacityNanos) return false;     // tokens + permits - 1 >= capacity
+            if (emptyAt.compareAndSet(current, now + backlog + permits * nanosPerToken)) return true;
+            // lost the race: another thread admitted first, re-read and retry
+        }
+    }
+
+    // undo an admission (e.g. a later check in HierarchicalLimiter rejected); never below empty
+    void refund(int permits, long now) {
+        long amount = permits * nanosPerToken;
+        for (;;) {
+            long current = emptyAt.get();
+            if (current <= now || emptyAt.compareAndSet(current, Math.max(now, current - amount))) return;
+        }
+    }
+
+    @Override
+    public double availableTokens() {
+        long backlog = Math.max(0, emptyAt.get() - clock.nanoTime());
+        return Math.max(0, capacity - (double) backlog / nanosPerToken);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LockFreeLeakyBucket bucket = new LockFreeLeakyBucket(3, 1); // capacity=3, leak=1 token/sec
+
+        System.out.println(bucket.allowRequest()); // true
+        System.out.println(bucket.allowRequest()); // true
+        System.out.println(bucket.allowRequest()); // true
+        System.out.println(bucket.allowRequest()); // false (limit hit)
+
+        Thread.sleep(1100); // wait 1.1 sec → 1 token leaked out
+        System.out.println(bucket.allowRequest()); // true
+    }
+}
+
+/*
+  Why not AtomicDouble / two fields?
+
+  - Two fields (tokens, lastLeakTime) can't be updated together with one CAS,
+    and a double level accumulates rounding drift under a CAS retry loop.
+  - Storing "empty at" instead keeps both facts in one long:
+    leak = time passing, admit = emptyAt += nanosPerToken.
+  - Contended callers only retry the CAS, they never park on a monitor.
+
+  Trade-off: nanosPerToken is rounded to whole nanoseconds (< 0.5ns per token),
+  which is far below System.nanoTime() resolution on real hardware.
+*/
+
+////////
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockFreeLeakyBucketTest {
+
+    private static int burst(java.util.function.BooleanSupplier bucket, int calls) {
+        int admitted = 0;
+        for (int i = 0; i < calls; i++) {
+            if (bucket.getAsBoolean()) admitted++;
+        }
+        return admitted;
+    }
+
+    @Test
+    void testAdmitsUpToCapacity() {
+        LockFreeLeakyBucket bucket = new LockFreeLeakyBucket(3, 0.001, new ManualTimeSource());
+
+        assertEquals(3, burst(bucket::allowRequest, 10));
+        assertFalse(bucket.allowRequest());
+    }
+
+    @Test
+    void testFrozenBurstAdmitsExactlyCapacityAtNonIntegralRates() {
+        // 1e9 / rate is not a whole number of nanoseconds for any of these
+        double[] rates = {3, 0.3, 7, 1.0 / 3};
+        int[] capacities = {3, 10, 5, 4};
+        for (int i = 0; i < rates.length; i++) {
+            LockFreeLeakyBucket bucket = new LockFreeLeakyBucket(capacities[i], rates[i], new ManualTimeSource());
+            assertEquals(capacities[i], burst(bucket::allowRequest, capacities[i] + 5), "rate " + rates[i]);
+        }
+    }
+
+    @Test
+    void testMatchesSynchronizedBucket() {
+        ManualTimeSource clock = new ManualTimeSource();
+        LeakyBucket locked = new LeakyBucket(5, 0.001, clock);
+        LockFreeLeakyBucket lockFree = new LockFreeLeakyBucket(5, 0.001, clock);
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 8; i++) assertEquals(locked.allowRequest(), lockFree.allowRequest());
+            for (int permits = 1; permits <= 3; permits++) assertEquals(locked.tryAcquire(permits), lockFree.tryAcquire(permits));
+            clock.advance(2_500, TimeUnit.SECONDS);               // 2.5 tokens leak out
+        }
+    }
+
+    @Test
+    void testLeaksOverTime() {
+        ManualTimeSource clock = new ManualTimeSource();
+        LockFreeLeakyBucket bucket = new LockFreeLeakyBucket(1, 20, clock); // 1 token leaks in 50ms
+
+        assertEquals(1, burst(bucket::allowRequest, 3));
+        clock.advance(1, TimeUnit.MILLISECONDS);                 // any leak at all drops the level below 1
+        assertTrue(bucket.allowRequest());
+        assertFalse(bucket.allowRequest());
+    }
+
+    @Test
+    void testRejectsRangesThatWouldOverflow() {
+        assertThrows(IllegalArgumentException.class, () -> new LockFreeLeakyBucket(Integer.MAX_VALUE, 1e-6));
+        assertThrows(IllegalArgumentException.class, () -> new LockFreeLeakyBucket(1, 1e-12));
+
+        // large but in range: 1M tokens, one every 1000s (~31 years to drain)
+        LockFreeLeakyBucket bucket = new LockFreeLeakyBucket(1_000_000, 0.001, new ManualTimeSource());
+        assertFalse(bucket.tryAcquire(Integer.MAX_VALUE));
+        assertTrue(bucket.tryAcquire(1_000_000));
+        assertFalse(bucket.allowRequest());
+    }
+
+    @Test
+    void testNeverExceedsCapacityUnderContention() throws InterruptedException {
+        LockFreeLeakyBucket bucket = new LockFreeLeakyBucket(100, 0.001, new ManualTimeSource());
+        java.util.concurrent.atomic.AtomicInteger admitted = new java.util.concurrent.atomic.AtomicInteger();
+
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> admitted.addAndGet(burst(bucket::allowRequest, 1_000)));
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(100, admitted.get());
+    }
+}
@@ -0,0 +1,286 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-user leaky buckets for tens of millions of keys, stored off-heap.
+ *
+ * UserRateLimiter pays for a map node, a String key and a LeakyBucket object per user
+ * (100+ bytes before the key's chars). Here a user is one 16-byte slot in direct memory:
+ *
+ *   [ keyHash : long ][ emptyAt : long ]
+ *
+ * - keyHash: 64-bit hash of userId, 0 = free slot
+ * - emptyAt: same GCRA state as LockFreeLeakyBucket (the instant the bucket is empty),
+ *   stored relative to the table's origin so zeroed memory already means "empty"
+ *
+ * Open addressing with linear probing; slots are claimed and updated with per-slot CAS
+ * through a ByteBuffer VarHandle, so there is no lock and nothing on the heap per user.
+ * The GC sees only the segment array.
+ *
+ * Trade-offs:
+ *  - keys are hashes: two users whose 64-bit hashes collide share a bucket
+ *    (~n²/2^65, about 3e-4 for 100M users)
+ *  - no removal, so no tombstones: a drained slot behaves exactly like a fresh bucket, so
+ *    a new key takes over the first drained slot on its probe path instead. The table
+ *    holds any number of users over time, as long as the ones with a backlog fit.
+ *  - probes stop after MAX_PROBES slots; if none of them is free or drained the request
+ *    fails fast with IllegalStateException, like a bounded queue that refuses to grow
+ *    (size the table for the keys that are active within one capacity/leakRate window)
+ *  - a takeover races with an in-flight admit of the slot's previous owner: at worst the
+ *    new key starts with that one request's backlog
+ */
+class OffHeapLeakyTable {
+    private static final int SLOT_BYTES = 16;
+    private static final int SEGMENT_SHIFT = 26;                     // 2^26 slots = 1 GiB per segment
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int MAX_PROBES = 256;
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer[] segments;
+    private final long slotMask;
+    private final int capacity;
+    private final long nanosPerToken;
+    private final long capacityNanos;
+    private final long origin;                                       // clock value stored as 0
+    private final TimeSource clock;
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * @param expectedKeys users the table must hold; slots = next power of two >= expectedKeys / 0.75
+     */
+    public OffHeapLeakyTable(long expectedKeys, int capacity, double leakRate) {
+        this(expectedKeys, capacity, leakRate, TimeSource.SYSTEM);
+    }
+
+    public OffHeapLeakyTable(long expectedKeys, int capacity, double leakRate, TimeSource clock) {
+        if (capacity <= 0 || leakRate <= 0)
+            throw new IllegalArgumentException("capacity and leakRate must be positive");
+        long wanted = Math.max(2, (long) Math.ceil(expectedKeys / 0.75));
+        long slots = Long.highestOneBit(wanted - 1) << 1;
+        this.slotMask = slots - 1;
+
+        long segmentSlots = Math.min(slots, 1L << SEGMENT_SHIFT);
+        this.segments = new ByteBuffer[(int) (slots / segmentSlots)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocateDirect((int) (segmentSlots * SLOT_BYTES)).order(ByteOrder.nativeOrder());
+        }
+
+        // same fixed-point rule as LockFreeLeakyBucket
+        this.nanosPerToken = Math.max(1, Math.round(1_000_000_000.0 / leakRate));
+        this.capacity = capacity;
+        this.capacityNanos = LockFreeLeakyBucket.capacityNanos(capacity, nanosPerToken);
+        this.clock = clock;
+        this.origin = clock.nanoTime();
+    }
+
+    public boolean allowRequest(String userId) {
+        return tryAcquire(hash(userId), 1);
+    }
+
+    public boolean allowRequests(String userId, int n) {
+        return tryAcquire(hash(userId), n);
+    }
+
+    // for callers that already keep a 64-bit key (no String on the hot path at all)
+    public boolean tryAcquire(long keyHash, int permits) {
+        if (permits <= 0) throw new IllegalArgumentException("permits must be positive");
+        if (permits > capacity) return false;
+        long now = clock.nanoTime() - origin;
+        long slot = slotFor(keyHash == 0 ? 1 : keyHash, now);
+        ByteBuffer segment = segments[(int) (slot >>> SEGMENT_SHIFT)];
+        int state = (int) ((slot & SEGMENT_MASK) * SLOT_BYTES) + 8;
+
+        long extra = (permits - 1) * nanosPerToken;
+        for (;;) {
+            long current = (long) LONGS.getVolatile(segment, state);
+            long backlog = Math.max(0, current - now);
+            if (backlog + extra >= capacityNanos) return false;
+            if (LONGS.compareAndSet(segment, state, current, now + backlog + permits * nanosPerToken)) return true;
+        }
+    }
+
+    // finds the key's slot; a new key claims a free slot or takes over a drained one
+    private long slotFor(long keyHash, long now) {
+        long start = mix(keyHash) & slotMask;
+        long probes = Math.min(slotMask + 1, MAX_PROBES);
+        for (;;) {
+            long drained = -1, drainedKey = 0;
+            long probe = 0;
+            for (; probe < probes; probe++) {
+                long slot = (start + probe) & slotMask;
+                ByteBuffer segment = segments[(int) (slot >>> SEGMENT_SHIFT)];
+                int offset = (int) ((slot & SEGMENT_MASK) * SLOT_BYTES);
+
+                long key = (long) LONGS.getVolatile(segment, offset);
+                if (key == keyHash) return slot;
+                if (key == 0) break;                       // keys are never cleared: not further on
+                if (drained < 0 && (long) LONGS.getVolatile(segment, offset + 8) <= now) {
+                    drained = slot;
+                    drainedKey = key;
+                }
+            }
+
+            // the key is absent; reuse a drained slot before growing the probe chain
+            long slot = drained >= 0 ? drained : (start + probe) & slotMask;
+            if (drained < 0 && probe == probes) {
+                throw new IllegalStateException("off-heap table full: no free or drained slot in "
+                        + probes + " probes (" + (slotMask + 1) + " slots)");
+            }
+            ByteBuffer segment = segments[(int) (slot >>> SEGMENT_SHIFT)];
+            int offset = (int) ((slot & SEGMENT_MASK) * SLOT_BYTES);
+            if (LONGS.compareAndSet(segment, offset, drained >= 0 ? drainedKey : 0L, keyHash)) {
+                if (drained < 0) size.increment();
+                return slot;
+            }
+            // lost the slot; the winner may have been the same key, else probe again
+            if ((long) LONGS.getVolatile(segment, offset) == keyHash) return slot;
+        }
+    }
+
+    // FNV-1a over the chars: 64 bits, unlike String.hashCode()
+    static long hash(String userId) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < userId.length(); i++) {
+            h ^= userId.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // slot index from the hash's high-entropy bits (murmur3 finalizer)
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    // keys currently holding a slot (drained ones included until taken over)
+    public long size() {
+        return size.sum();
+    }
+
+    long slotCount() {
+        return slotMask + 1;
+    }
+
+    long offHeapBytes() {
+        return slotCount() * SLOT_BYTES;
+    }
+
+    public static void main(String[] args) {
+        OffHeapLeakyTable table = new OffHeapLeakyTable(1_000, 3, 1, new ManualTimeSource());
+
+        System.out.println(table.allowRequest("u1")); // true
+        System.out.println(table.allowRequest("u1")); // true
+        System.out.println(table.allowRequest("u1")); // true
+        System.out.println(table.allowRequest("u1")); // false
+        System.out.println(table.allowRequest("u2")); // true (new slot)
+        System.out.println(table.size() + " users in " + table.offHeapBytes() + " bytes off-heap");
+    }
+}
+
+////////
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapLeakyTableTest {
+
+    @Test
+    void testMatchesLockFreeBucket() {
+        ManualTimeSource clock = new ManualTimeSource();
+        OffHeapLeakyTable table = new OffHeapLeakyTable(100, 3, 1, clock);
+        LockFreeLeakyBucket bucket = new LockFreeLeakyBucket(3, 1, clock);
+
+        for (int i = 0; i < 5; i++) assertEquals(bucket.allowRequest(), table.allowRequest("u1"));
+        clock.advance(1500, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 3; i++) assertEquals(bucket.allowRequest(), table.allowRequest("u1"));
+        assertEquals(bucket.tryAcquire(2), table.allowRequests("u1", 2));
+    }
+
+    @Test
+    void testUsersAreIndependent() {
+        OffHeapLeakyTable table = new OffHeapLeakyTable(10_000, 1, 1, new ManualTimeSource());
+
+        for (int i = 0; i < 7_500; i++) assertTrue(table.allowRequest("user-" + i));
+        for (int i = 0; i < 7_500; i++) assertFalse(table.allowRequest("user-" + i));
+        assertEquals(7_500, table.size());
+    }
+
+    @Test
+    void testFullTableThrows() {
+        OffHeapLeakyTable table = new OffHeapLeakyTable(3, 1, 1, new ManualTimeSource());   // 4 slots
+
+        for (long key = 1; key <= 4; key++) table.tryAcquire(key, 1);
+        assertThrows(IllegalStateException.class, () -> table.tryAcquire(5, 1));
+    }
+
+    @Test
+    void testDrainedSlotsAreReused() {
+        ManualTimeSource clock = new ManualTimeSource();
+        OffHeapLeakyTable table = new OffHeapLeakyTable(3, 2, 1, clock);   // 4 slots
+
+        for (int round = 0; round < 50; round++) {
+            for (long key = 1; key <= 4; key++) assertTrue(table.tryAcquire(round * 4 + key, 2));
+            assertThrows(IllegalStateException.class, () -> table.tryAcquire(-1, 1));
+            clock.advance(2, TimeUnit.SECONDS);                  // every backlog drains
+        }
+        assertEquals(4, table.size());
+
+        // a key still holding a backlog keeps its slot and its state
+        assertTrue(table.tryAcquire(7, 2));
+        clock.advance(1, TimeUnit.SECONDS);
+        for (long key = 8; key <= 10; key++) assertTrue(table.tryAcquire(key, 1));
+        assertTrue(table.tryAcquire(7, 1));
+        assertFalse(table.tryAcquire(7, 1));
+    }
+
+    @Test
+    void testFrozenBurstAdmitsExactlyCapacityAtNonIntegralRates() {
+        double[] rates = {3, 0.3, 7, 1.0 / 3};
+        int[] capacities = {3, 10, 5, 4};
+        for (int i = 0; i < rates.length; i++) {
+            OffHeapLeakyTable table = new OffHeapLeakyTable(100, capacities[i], rates[i], new ManualTimeSource());
+            int admitted = 0;
+            for (int n = 0; n < capacities[i] + 5; n++) if (table.allowRequest("u")) admitted++;
+            assertEquals(capacities[i], admitted, "rate " + rates[i]);
+        }
+    }
+
+    @Test
+    void testRejectsRangesThatWouldOverflow() {
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapLeakyTable(100, Integer.MAX_VALUE, 1e-6));
+
+        OffHeapLeakyTable table = new OffHeapLeakyTable(100, 1_000_000, 0.001, new ManualTimeSource());
+        assertFalse(table.allowRequests("u", Integer.MAX_VALUE));
+        assertTrue(table.allowRequests("u", 1_000_000));
+        assertFalse(table.allowRequest("u"));
+    }
+
+    @Test
+    void testConcurrentClaimsOfOneKey() throws InterruptedException {
+        OffHeapLeakyTable table = new OffHeapLeakyTable(1_000, 100, 0.001, new ManualTimeSource());
+        AtomicInteger admitted = new AtomicInteger();
+
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) if (table.allowRequest("hot")) admitted.incrementAndGet();
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(100, admitted.get());
+        assertEquals(1, table.size());
+    }
+}
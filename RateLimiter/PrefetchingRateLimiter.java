@@ -0,0 +1,307 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Distributed limiter client with local token prefetch ("Hot keys" in Readme.md).
+ *
+ * Instead of one remote script call per request, the client leases a block of tokens
+ * for a key and serves requests from that lease until it runs out:
+ *
+ *   remote calls per request ≈ 1 / leaseSize
+ *
+ * Lease size adapts per key: it tracks the key's observed request rate (EWMA) and asks
+ * for roughly `leaseDuration` worth of traffic, clamped to [1, maxLease]. Cold keys lease
+ * 1 token (exactly the old behaviour), hot keys lease big blocks.
+ *
+ * Trade-off: leased tokens are spent locally. Unused tokens expire with the lease
+ * (leaseTtl) and go back to the store: on the key's next fetch, or from releaseExpired()
+ * for keys that went quiet (call it periodically, like BucketSweeper). releaseExpired()
+ * also drops leases that are expired, empty and not backing off, so the map only holds
+ * keys seen within about one leaseTtl. Across N nodes the global limit still holds,
+ * because every token came from the store.
+ *
+ * A key the store refuses (0 granted) is rejected locally for a backoff that starts at
+ * leaseDuration / 16 and doubles up to leaseDuration, so a throttled key doesn't turn
+ * every request into a remote call under its monitor. A grant resets it.
+ */
+class PrefetchingRateLimiter {
+    private static final double EWMA_ALPHA = 0.3;
+
+    private final RemoteTokenStore store;
+    private final TimeSource clock;
+    private final long leaseDurationNanos;   // how much traffic one lease should cover
+    private final long leaseTtlNanos;        // leftover tokens are dropped after this
+    private final int maxLease;
+    private final ConcurrentHashMap<String, Lease> leases = new ConcurrentHashMap<>();
+    private final Function<String, Lease> leaseFactory = Lease::new;
+
+    private final LongAdder remoteCalls = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+
+    PrefetchingRateLimiter(RemoteTokenStore store, long leaseDuration, long leaseTtl, TimeUnit unit,
+                           int maxLease, TimeSource clock) {
+        this.store = store;
+        this.leaseDurationNanos = unit.toNanos(leaseDuration);
+        this.leaseTtlNanos = unit.toNanos(leaseTtl);
+        this.maxLease = maxLease;
+        this.clock = clock;
+    }
+
+    PrefetchingRateLimiter(RemoteTokenStore store) {
+        this(store, 50, 1_000, TimeUnit.MILLISECONDS, 1_000, TimeSource.SYSTEM);
+    }
+
+    public boolean allowRequest(String key) {
+        requests.increment();
+        long now = clock.nanoTime();
+        for (;;) {
+            Lease lease = leases.get(key);
+            if (lease == null) lease = leases.computeIfAbsent(key, leaseFactory);
+            synchronized (lease) {
+                if (!lease.retired) return lease.take(now);
+            }
+            // swept between the lookup and the lock: its replacement is (or will be) in the map
+        }
+    }
+
+    // hands the leftovers of expired leases back to the store and drops the idle ones;
+    // returns the tokens released
+    long releaseExpired() {
+        long now = clock.nanoTime();
+        long released = 0;
+        for (Map.Entry<String, Lease> e : leases.entrySet()) {
+            Lease lease = e.getValue();
+            released += lease.releaseIfExpired(now);
+            if (lease.retireIfIdle(now)) leases.remove(e.getKey(), lease);
+        }
+        return released;
+    }
+
+    int size() {
+        return leases.size();
+    }
+
+    // current lease size the client would ask for, for tests/monitoring
+    long nextLeaseSize(String key) {
+        Lease lease = leases.get(key);
+        return lease == null ? 1 : lease.nextLeaseSize();
+    }
+
+    long remoteCalls() {
+        return remoteCalls.sum();
+    }
+
+    long requests() {
+        return requests.sum();
+    }
+
+    private final class Lease {
+        final String key;
+        long remaining;          // locally held tokens
+        long expiresAt;
+        double ratePerSecond;    // EWMA of observed requests/sec
+        long servedSinceFetch;
+        long lastFetch;
+        long rejectedUntil;      // negative lease: the store said 0, don't ask again before this
+        long backoffNanos;
+        boolean retired;         // removed from the map: callers must look the key up again
+
+        Lease(String key) {
+            this.key = key;
+            this.lastFetch = clock.nanoTime();
+        }
+
+        // one monitor per key: concurrent misses wait for the single in-flight fetch
+        // instead of all going remote
+        synchronized boolean take(long now) {
+            servedSinceFetch++;
+            if (remaining > 0 && now < expiresAt) {
+                remaining--;
+                return true;
+            }
+            if (now < rejectedUntil) return false;
+            releaseIfExpired(now);
+            observeRate(now);
+
+            long granted = store.acquire(key, nextLeaseSize());
+            remoteCalls.increment();
+            if (granted == 0) {
+                backoffNanos = backoffNanos == 0 ? Math.max(1, leaseDurationNanos / 16)
+                        : Math.min(leaseDurationNanos, backoffNanos * 2);
+                rejectedUntil = now + backoffNanos;
+                return false;
+            }
+            backoffNanos = 0;
+            remaining = granted - 1;
+            expiresAt = now + leaseTtlNanos;
+            return true;
+        }
+
+        synchronized long releaseIfExpired(long now) {
+            if (remaining == 0 || now < expiresAt) return 0;
+            long released = remaining;
+            remaining = 0;
+            store.release(key, released);
+            remoteCalls.increment();
+            return released;
+        }
+
+        // nothing held and nothing remembered that a fresh lease wouldn't also do
+        synchronized boolean retireIfIdle(long now) {
+            if (remaining > 0 || now < expiresAt || now < rejectedUntil) return false;
+            retired = true;
+            return true;
+        }
+
+        private void observeRate(long now) {
+            long elapsed = now - lastFetch;
+            if (elapsed > 0) {
+                double observed = servedSinceFetch * 1_000_000_000.0 / elapsed;
+                ratePerSecond = ratePerSecond == 0 ? observed
+                        : EWMA_ALPHA * observed + (1 - EWMA_ALPHA) * ratePerSecond;
+            }
+            servedSinceFetch = 0;
+            lastFetch = now;
+        }
+
+        synchronized long nextLeaseSize() {
+            long size = Math.round(ratePerSecond * leaseDurationNanos / 1_000_000_000.0);
+            return Math.max(1, Math.min(maxLease, size));
+        }
+    }
+
+    public static void main(String[] args) {
+        InMemoryTokenStore redis = new InMemoryTokenStore(1_000_000, 0, 1_000_000);
+        PrefetchingRateLimiter node = new PrefetchingRateLimiter(redis);
+
+        for (int i = 0; i < 1_000_000; i++) node.allowRequest("hot-user");
+
+        System.out.println("requests:     " + node.requests());
+        System.out.println("remote calls: " + node.remoteCalls());  // far fewer than requests
+        System.out.println("lease size:   " + node.nextLeaseSize("hot-user"));
+    }
+}
+
+////////
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefetchingRateLimiterTest {
+
+    @Test
+    void testColdKeyLeasesOneToken() {
+        ManualTimeSource clock = new ManualTimeSource();
+        InMemoryTokenStore store = new InMemoryTokenStore(10, 0, 1, clock);
+        PrefetchingRateLimiter client =
+                new PrefetchingRateLimiter(store, 50, 1_000, TimeUnit.MILLISECONDS, 100, clock);
+
+        assertTrue(client.allowRequest("u1"));
+        assertEquals(1, client.remoteCalls());
+        assertEquals(1, client.nextLeaseSize("unknown"));
+    }
+
+    @Test
+    void testHotKeyLeaseGrowsAndCutsRoundTrips() {
+        ManualTimeSource clock = new ManualTimeSource();
+        InMemoryTokenStore store = new InMemoryTokenStore(1_000_000, 0, 1_000_000, clock);
+        PrefetchingRateLimiter client =
+                new PrefetchingRateLimiter(store, 50, 1_000, TimeUnit.MILLISECONDS, 500, clock);
+
+        for (int i = 0; i < 10_000; i++) {
+            client.allowRequest("hot");
+            clock.advance(100, TimeUnit.MICROSECONDS);   // 10k req/s
+        }
+
+        assertEquals(500, client.nextLeaseSize("hot"));  // 10k/s * 50ms, capped at maxLease
+        assertTrue(client.remoteCalls() < 100, "remote calls: " + client.remoteCalls());
+    }
+
+    @Test
+    void testGlobalLimitHoldsAcrossNodes() {
+        ManualTimeSource clock = new ManualTimeSource();
+        InMemoryTokenStore store = new InMemoryTokenStore(100, 0, 0.001, clock);
+        PrefetchingRateLimiter nodeA =
+                new PrefetchingRateLimiter(store, 50, 1_000, TimeUnit.MILLISECONDS, 16, clock);
+        PrefetchingRateLimiter nodeB =
+                new PrefetchingRateLimiter(store, 50, 1_000, TimeUnit.MILLISECONDS, 16, clock);
+
+        int admitted = 0;
+        for (int i = 0; i < 500; i++) {
+            if (nodeA.allowRequest("u1")) admitted++;
+            if (nodeB.allowRequest("u1")) admitted++;
+            clock.advance(1, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(admitted <= 100, "admitted: " + admitted);
+    }
+
+    @Test
+    void testRejectionIsCachedWithBackoff() {
+        ManualTimeSource clock = new ManualTimeSource();
+        InMemoryTokenStore store = new InMemoryTokenStore(1, 0, 0.001, clock);
+        PrefetchingRateLimiter client =
+                new PrefetchingRateLimiter(store, 160, 1_000, TimeUnit.MILLISECONDS, 16, clock);
+
+        assertTrue(client.allowRequest("u1"));
+        assertFalse(client.allowRequest("u1"));
+        for (int i = 0; i < 100; i++) assertFalse(client.allowRequest("u1"));
+        assertEquals(2, client.remoteCalls());                 // the 100 never left the node
+
+        clock.advance(10, TimeUnit.MILLISECONDS);               // first backoff: 160ms / 16
+        assertFalse(client.allowRequest("u1"));
+        assertEquals(3, client.remoteCalls());
+        clock.advance(10, TimeUnit.MILLISECONDS);               // doubled to 20ms: still backing off
+        assertFalse(client.allowRequest("u1"));
+        assertEquals(3, client.remoteCalls());
+    }
+
+    @Test
+    void testExpiredLeftoversGoBackToTheStore() {
+        ManualTimeSource clock = new ManualTimeSource();
+        InMemoryTokenStore store = new InMemoryTokenStore(100, 0, 0.001, clock);
+        PrefetchingRateLimiter nodeA =
+                new PrefetchingRateLimiter(store, 50, 1_000, TimeUnit.MILLISECONDS, 16, clock);
+        PrefetchingRateLimiter nodeB =
+                new PrefetchingRateLimiter(store, 50, 1_000, TimeUnit.MILLISECONDS, 1, clock);
+
+        int admitted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (nodeA.allowRequest("u1")) admitted++;
+            clock.advance(1, TimeUnit.MILLISECONDS);
+        }
+        clock.advance(2, TimeUnit.SECONDS);
+        assertTrue(nodeA.releaseExpired() > 0);
+        assertEquals(0, nodeA.releaseExpired());
+        assertEquals(0, nodeA.size());                         // the lease went with its tokens
+
+        for (int i = 0; i < 200; i++) {
+            if (nodeB.allowRequest("u1")) admitted++;
+            clock.advance(1, TimeUnit.SECONDS);                // past every backoff
+        }
+        assertEquals(100, admitted);                           // every token was used by someone
+    }
+
+    @Test
+    void testIdleLeasesAreDropped() {
+        ManualTimeSource clock = new ManualTimeSource();
+        InMemoryTokenStore store = new InMemoryTokenStore(1_000_000, 0, 1_000_000, clock);
+        PrefetchingRateLimiter client =
+                new PrefetchingRateLimiter(store, 50, 1_000, TimeUnit.MILLISECONDS, 16, clock);
+
+        for (int i = 0; i < 10_000; i++) assertTrue(client.allowRequest("user-" + i));
+        assertEquals(10_000, client.size());
+
+        clock.advance(500, TimeUnit.MILLISECONDS);
+        client.releaseExpired();
+        assertEquals(10_000, client.size());                   // leases still live
+
+        clock.advance(600, TimeUnit.MILLISECONDS);
+        client.releaseExpired();
+        assertEquals(0, client.size());
+        assertTrue(client.allowRequest("user-1"));             // a swept key just leases again
+        assertEquals(1, client.size());
+    }
+}
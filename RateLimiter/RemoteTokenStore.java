@@ -0,0 +1,103 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Shared token state (the Redis side in Readme.md).
+ *
+ * One call = one atomic script run: refill rl:{key}, clamp to capacity + maxCredits,
+ * then take up to `requested` tokens.
+ */
+interface RemoteTokenStore {
+    // tokens actually granted, 0..requested
+    long acquire(String key, long requested);
+
+    /**
+     * Pipelined multi-key evaluation: granted[i] = acquire(keys[i], requested[i]) for i < count,
+     * sent as ONE round trip (Redis pipeline / one multi-key script call).
+     * Keys in one call must be distinct.
+     */
+    default void acquireAll(String[] keys, long[] requested, long[] granted, int count) {
+        for (int i = 0; i < count; i++) granted[i] = acquire(keys[i], requested[i]);
+    }
+
+    // gives back granted tokens a client didn't use (INCRBY clamped to capacity + maxCredits)
+    void release(String key, long tokens);
+
+    // pipelined release of tokens[i] for i < count; zero entries are skipped
+    default void releaseAll(String[] keys, long[] tokens, int count) {
+        for (int i = 0; i < count; i++) if (tokens[i] > 0) release(keys[i], tokens[i]);
+    }
+}
+
+/**
+ * In-process stand-in for Redis + Lua, so the clients are testable offline.
+ * Same refill/credit math as CreditBucket (it IS a map of CreditBuckets),
+ * one monitor per key plays the role of Redis' single-threaded script execution.
+ */
+class InMemoryTokenStore implements RemoteTokenStore {
+    private final ConcurrentHashMap<String, CreditBucket> buckets = new ConcurrentHashMap<>();
+    private final int baseCapacity;
+    private final int maxCredits;
+    private final double refillRate;
+    private final TimeSource clock;
+    private final Function<String, CreditBucket> bucketFactory = this::newBucket;
+    private final LongAdder calls = new LongAdder();
+
+    InMemoryTokenStore(int baseCapacity, int maxCredits, double refillRate, TimeSource clock) {
+        this.baseCapacity = baseCapacity;
+        this.maxCredits = maxCredits;
+        this.refillRate = refillRate;
+        this.clock = clock;
+    }
+
+    InMemoryTokenStore(int baseCapacity, int maxCredits, double refillRate) {
+        this(baseCapacity, maxCredits, refillRate, TimeSource.SYSTEM);
+    }
+
+    @Override
+    public long acquire(String key, long requested) {
+        calls.increment();
+        return take(key, requested, clock.nanoTime());
+    }
+
+    @Override
+    public void acquireAll(String[] keys, long[] requested, long[] granted, int count) {
+        calls.increment();   // whole pipeline = one round trip
+        long now = clock.nanoTime();
+        for (int i = 0; i < count; i++) granted[i] = take(keys[i], requested[i], now);
+    }
+
+    @Override
+    public void release(String key, long tokens) {
+        calls.increment();
+        give(key, tokens, clock.nanoTime());
+    }
+
+    @Override
+    public void releaseAll(String[] keys, long[] tokens, int count) {
+        calls.increment();
+        long now = clock.nanoTime();
+        for (int i = 0; i < count; i++) if (tokens[i] > 0) give(keys[i], tokens[i], now);
+    }
+
+    private void give(String key, long tokens, long now) {
+        CreditBucket bucket = buckets.get(key);
+        if (bucket != null) bucket.refund((int) Math.min(tokens, Integer.MAX_VALUE), now);
+    }
+
+    private long take(String key, long requested, long now) {
+        CreditBucket bucket = buckets.get(key);
+        if (bucket == null) bucket = buckets.computeIfAbsent(key, bucketFactory);
+        return bucket.acquireUpTo((int) Math.min(requested, Integer.MAX_VALUE), now);
+    }
+
+    private CreditBucket newBucket(String key) {
+        return new CreditBucket(baseCapacity, maxCredits, refillRate, clock);
+    }
+
+    // round trips served so far
+    long calls() {
+        return calls.sum();
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sliding window counter: O(1) memory per user.
+ *
+ * Keeps counts for the current and the previous fixed window, and assumes the previous
+ * window's requests were spread evenly:
+ *
+ *   estimated = previousCount * (1 - elapsedInCurrentWindow / window) + currentCount
+ *
+ * Admit while estimated + permits <= limit.
+ * Much smoother than a fixed window (no 2x burst at the boundary), at the cost of being
+ * an estimate. Use SlidingWindowLog when the count has to be exact.
+ */
+class SlidingWindowCounter implements Limiter {
+    private final int limit;            // max requests per window
+    private final long windowNanos;
+    private final TimeSource clock;
+
+    private long windowStart;           // start of the current fixed window
+    private int currentCount;
+    private int previousCount;
+
+    public SlidingWindowCounter(int limit, long window, TimeUnit unit) {
+        this(limit, window, unit, TimeSource.SYSTEM);
+    }
+
+    public SlidingWindowCounter(int limit, long window, TimeUnit unit, TimeSource clock) {
+        this.limit = limit;
+        this.windowNanos = unit.toNanos(window);
+        this.clock = clock;
+        this.windowStart = clock.nanoTime();
+    }
+
+    private void roll(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed < windowNanos) return;
+
+        long windowsPassed = elapsed / windowNanos;
+        previousCount = windowsPassed == 1 ? currentCount : 0;   // idle for 2+ windows → nothing carries over
+        currentCount = 0;
+        windowStart += windowsPassed * windowNanos;
+    }
+
+    @Override
+    public boolean allowRequest() {
+        return tryAcquire(1);
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, clock.nanoTime());
+    }
+
+    synchronized boolean tryAcquire(int permits, long now) {
+        if (permits <= 0) throw new IllegalArgumentException("permits must be positive");
+        roll(now);
+
+        double intoWindow = Math.max(0, now - windowStart) / (double) windowNanos;
+        double estimated = previousCount * (1 - intoWindow) + currentCount;
+        if (estimated + permits <= limit) {
+            currentCount += permits;
+            return true;
+        }
+        return false;
+    }
+
+    // what roll() would see, without rolling
+    @Override
+    public synchronized double availableTokens() {
+        long now = clock.nanoTime();
+        long elapsed = now - windowStart;
+        long windowsPassed = elapsed < windowNanos ? 0 : elapsed / windowNanos;
+        int previous = windowsPassed == 0 ? previousCount : windowsPassed == 1 ? currentCount : 0;
+        int current = windowsPassed == 0 ? currentCount : 0;
+        double intoWindow = Math.max(0, elapsed - windowsPassed * windowNanos) / (double) windowNanos;
+        return Math.max(0, limit - previous * (1 - intoWindow) - current);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        SlidingWindowCounter limiter = new SlidingWindowCounter(4, 1, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 5; i++) System.out.println(limiter.allowRequest()); // 4x true, false
+
+        Thread.sleep(1500); // half way into the next window: 4 * 0.5 = 2 still counted
+        System.out.println(limiter.allowRequest()); // true
+        System.out.println(limiter.allowRequest()); // true
+        System.out.println(limiter.allowRequest()); // false
+    }
+}
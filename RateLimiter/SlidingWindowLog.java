@@ -0,0 +1,87 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sliding window log: exact count of admitted requests in the last `window`.
+ *
+ * The log is a primitive long[] ring buffer of admission timestamps, sized to `limit`
+ * (there can never be more than `limit` entries inside the window), so there is no
+ * Deque<Long> boxing and no allocation after construction.
+ *
+ * Memory: O(limit) per user, 8 bytes per slot.
+ */
+class SlidingWindowLog implements Limiter {
+    private final int limit;
+    private final long windowNanos;
+    private final TimeSource clock;
+
+    private final long[] log;   // admission timestamps, oldest at head
+    private int head;
+    private int size;
+
+    public SlidingWindowLog(int limit, long window, TimeUnit unit) {
+        this(limit, window, unit, TimeSource.SYSTEM);
+    }
+
+    public SlidingWindowLog(int limit, long window, TimeUnit unit, TimeSource clock) {
+        this.limit = limit;
+        this.windowNanos = unit.toNanos(window);
+        this.clock = clock;
+        this.log = new long[limit];
+    }
+
+    // drop timestamps that slid out of the window
+    private void evict(long now) {
+        while (size > 0 && now - log[head] >= windowNanos) {
+            if (++head == limit) head = 0;
+            size--;
+        }
+    }
+
+    @Override
+    public boolean allowRequest() {
+        return tryAcquire(1);
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, clock.nanoTime());
+    }
+
+    synchronized boolean tryAcquire(int permits, long now) {
+        if (permits <= 0) throw new IllegalArgumentException("permits must be positive");
+        evict(now);
+        if (size + permits > limit) return false;
+
+        int tail = head + size;
+        if (tail >= limit) tail -= limit;
+        for (int i = 0; i < permits; i++) {
+            log[tail] = now;
+            if (++tail == limit) tail = 0;
+        }
+        size += permits;
+        return true;
+    }
+
+    // counts what evict() would drop, without dropping it
+    @Override
+    public synchronized double availableTokens() {
+        long now = clock.nanoTime();
+        int expired = 0;
+        for (int i = head; expired < size && now - log[i] >= windowNanos; i = i + 1 == limit ? 0 : i + 1) expired++;
+        return limit - size + expired;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        SlidingWindowLog limiter = new SlidingWindowLog(3, 1, TimeUnit.SECONDS);
+
+        System.out.println(limiter.allowRequest()); // true
+        Thread.sleep(600);
+        System.out.println(limiter.allowRequest()); // true
+        System.out.println(limiter.allowRequest()); // true
+        System.out.println(limiter.allowRequest()); // false (3 in the last second)
+
+        Thread.sleep(500); // first request slid out
+        System.out.println(limiter.allowRequest()); // true
+        System.out.println(limiter.allowRequest()); // false
+    }
+}
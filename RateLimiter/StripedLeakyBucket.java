@@ -0,0 +1,212 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LeakyBucket split into N cells for one very hot key (same idea as LongAdder cells).
+ *
+ * The capacity is split into N integer shares (they sum to capacity), each cell leaks
+ * proportionally to its share. A cell is a LockFreeLeakyBucket-style GCRA state (the
+ * instant it will be empty) in one slot of an AtomicLongArray, padded so neighbouring
+ * cells don't share a cache line: admitting is one CAS, there is no monitor anywhere.
+ *
+ * A thread tries the cell picked by its id, then at most ONE random other cell, then
+ * rejects. A saturated key rejects on almost every request, so that path must stay at
+ * two reads; evening out the cells is the rebalancer's job, not the request's.
+ *
+ * Rebalancing moves backlog between one pair of cells at a time (hypercube order: one
+ * pass of log2(N) * N/2 pair steps averages all N cells). The thread that finds a step
+ * due does that single step inline, lock-free, so no request ever waits for a pass.
+ *
+ * Error vs a single LeakyBucket:
+ *  - never admits more: a cell only admits if the request fits entirely and a rebalance
+ *    only fills a cell up to its share, so the levels always sum to <= capacity.
+ *  - can admit less:
+ *      * up to 1 token per cell of rounding (fractional room left in each cell)
+ *      * an empty cell does not leak, and a request only sees two cells, so with uneven
+ *        traffic across cells the usable rate is below leakRate until the next pass evens
+ *        the levels out: at most leakRate * rebalanceInterval tokens.
+ *    The constructor derives rebalanceInterval from the error bound the caller can live
+ *    with: maxErrorTokens = cells + leakRate * rebalanceInterval.
+ */
+class StripedLeakyBucket implements Limiter {
+    private static final int STRIDE = 16;           // longs per cell: 128 bytes, no false sharing
+
+    private final AtomicLongArray emptyAt;          // cell i at index i * STRIDE
+    private final int[] shares;
+    private final long[] nanosPerToken;
+    private final long[] capacityNanos;             // the same drain time for every full share
+    private final int mask;
+    private final int dimensions;                   // log2(cells)
+    private final int capacity;
+    private final long stepIntervalNanos;           // one pair step every this often
+    private final AtomicLong nextStep;
+    private final AtomicLong steps = new AtomicLong();
+    private final TimeSource clock;
+
+    /**
+     * @param cells          number of sub-buckets, rounded up to a power of two (at most capacity)
+     * @param maxErrorTokens max tokens the split may under-admit by vs a single bucket
+     * @param initialLevel   level to start from (e.g. the single bucket being split)
+     */
+    StripedLeakyBucket(int capacity, double leakRate, int cells, double maxErrorTokens,
+                       double initialLevel, TimeSource clock) {
+        if (capacity <= 0 || leakRate <= 0)
+            throw new IllegalArgumentException("capacity and leakRate must be positive");
+        int n = cells <= 1 ? 1 : Integer.highestOneBit(cells - 1) << 1;
+        n = Math.min(n, Integer.highestOneBit(capacity));                 // every cell holds >= 1 token
+        if (maxErrorTokens <= n)
+            throw new IllegalArgumentException("maxErrorTokens must exceed the cell count (" + n + ")");
+        this.emptyAt = new AtomicLongArray(n * STRIDE);
+        this.shares = new int[n];
+        this.nanosPerToken = new long[n];
+        this.capacityNanos = new long[n];
+        this.mask = n - 1;
+        this.dimensions = Integer.numberOfTrailingZeros(n);
+        this.capacity = capacity;
+        this.clock = clock;
+
+        long now = clock.nanoTime();
+        double fill = Math.min(initialLevel, capacity) / capacity;   // same fill ratio in every cell
+        for (int i = 0; i < n; i++) {
+            shares[i] = capacity / n + (i < capacity % n ? 1 : 0);
+            nanosPerToken[i] = Math.max(1, Math.round(1_000_000_000.0 * capacity / (leakRate * shares[i])));
+            capacityNanos[i] = LockFreeLeakyBucket.capacityNanos(shares[i], nanosPerToken[i]);
+            emptyAt.set(i * STRIDE, now + Math.round(fill * capacityNanos[i]));
+        }
+
+        long rebalanceIntervalNanos = Math.max(1, (long) ((maxErrorTokens - n) / leakRate * 1_000_000_000L));
+        int stepsPerPass = Math.max(1, dimensions * n / 2);
+        this.stepIntervalNanos = Math.max(1, rebalanceIntervalNanos / stepsPerPass);
+        this.nextStep = new AtomicLong(now + stepIntervalNanos);
+    }
+
+    StripedLeakyBucket(int capacity, double leakRate, int cells, double maxErrorTokens) {
+        this(capacity, leakRate, cells, maxErrorTokens, 0, TimeSource.SYSTEM);
+    }
+
+    @Override
+    public boolean allowRequest() {
+        return tryAcquire(1);
+    }
+
+    // a multi-permit request must fit into one cell (permits <= capacity / cells)
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, clock.nanoTime());
+    }
+
+    boolean tryAcquire(int permits, long now) {
+        if (permits <= 0) throw new IllegalArgumentException("permits must be positive");
+        maybeRebalance(now);
+
+        int home = probe() & mask;
+        if (admit(home, permits, now)) return true;
+        if (mask == 0) return false;
+        int other = (home + 1 + ThreadLocalRandom.current().nextInt(mask)) & mask;   // any cell but home
+        return admit(other, permits, now);
+    }
+
+    // strict fit (no "< capacity" overshoot per cell), so N cells can't overshoot N times
+    private boolean admit(int cell, int permits, long now) {
+        if (permits > shares[cell]) return false;
+        int at = cell * STRIDE;
+        long step = permits * nanosPerToken[cell];
+        for (;;) {
+            long current = emptyAt.get(at);
+            long backlog = Math.max(0, current - now);
+            if (backlog + step > capacityNanos[cell]) return false;
+            if (emptyAt.compareAndSet(at, current, now + backlog + step)) return true;
+        }
+    }
+
+    // Fibonacci-hash the thread id: stable per thread, spread across cells
+    private static int probe() {
+        return (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    // one pair step per due interval, done by whichever request notices it first
+    private void maybeRebalance(long now) {
+        long due = nextStep.get();
+        if (dimensions == 0 || now - due < 0 || !nextStep.compareAndSet(due, now + stepIntervalNanos)) return;
+        rebalanceStep(steps.getAndIncrement(), now);
+    }
+
+    // a whole pass at once (tests, or a caller that wants the cells even right now)
+    void rebalance() {
+        long now = clock.nanoTime();
+        for (int k = 0, n = dimensions * (mask + 1) / 2; k < n; k++) rebalanceStep(k, now);
+    }
+
+    // step k pairs cell a with a ^ (1 << d): d cycles through the bits, one pass = all pairs of all bits
+    private void rebalanceStep(long k, long now) {
+        int half = (mask + 1) / 2;
+        int pair = (int) (k % half);
+        int d = (int) ((k / half) % dimensions);
+        int a = ((pair >>> d) << (d + 1)) | (pair & ((1 << d) - 1));
+        int b = a | (1 << d);
+
+        double levelA = level(a, now), levelB = level(b, now);
+        double target = (levelA + levelB) / (shares[a] + shares[b]);   // common fill ratio
+        int donor = levelA / shares[a] > target ? a : b;
+        int receiver = donor == a ? b : a;
+        double moved = (donor == a ? levelA : levelB) - target * shares[donor];
+        if (moved <= 0) return;
+
+        // fill the receiver first (capped at its room), then drain the donor: every cell stays
+        // within its share, and a donor that leaked meanwhile only makes the pair stricter
+        moved = add(receiver, moved, now);
+        remove(donor, moved, now);
+    }
+
+    private double add(int cell, double tokens, long now) {
+        int at = cell * STRIDE;
+        for (;;) {
+            long current = emptyAt.get(at);
+            long backlog = Math.max(0, current - now);
+            long added = Math.min(capacityNanos[cell] - backlog, (long) (tokens * nanosPerToken[cell]));
+            if (added <= 0) return 0;
+            if (emptyAt.compareAndSet(at, current, now + backlog + added)) return (double) added / nanosPerToken[cell];
+        }
+    }
+
+    private void remove(int cell, double tokens, long now) {
+        int at = cell * STRIDE;
+        long amount = (long) Math.ceil(tokens * nanosPerToken[cell]);
+        for (;;) {
+            long current = emptyAt.get(at);
+            if (current - now <= 0 || emptyAt.compareAndSet(at, current, Math.max(now, current - amount))) return;
+        }
+    }
+
+    private double level(int cell, long now) {
+        return (double) Math.max(0, emptyAt.get(cell * STRIDE) - now) / nanosPerToken[cell];
+    }
+
+    // lock-free sum; a racing admission may or may not be counted
+    double level() {
+        long now = clock.nanoTime();
+        double total = 0;
+        for (int i = 0; i <= mask; i++) total += level(i, now);
+        return total;
+    }
+
+    // latest emptyAt over the cells: the clock value at which the whole key is drained
+    long drainedAt() {
+        long latest = emptyAt.get(0);
+        for (int i = 1; i <= mask; i++) {
+            long cell = emptyAt.get(i * STRIDE);
+            if (cell - latest > 0) latest = cell;
+        }
+        return latest;
+    }
+
+    @Override
+    public double availableTokens() {
+        return Math.max(0, capacity - level());
+    }
+
+    int cellCount() {
+        return mask + 1;
+    }
+}
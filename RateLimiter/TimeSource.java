@@ -0,0 +1,68 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Where the buckets read "now" from. Values are nanoseconds on an arbitrary origin,
+ * same contract as System.nanoTime(): only differences are meaningful.
+ */
+interface TimeSource {
+    long nanoTime();
+
+    TimeSource SYSTEM = System::nanoTime;
+}
+
+/**
+ * Coarse clock: one daemon thread refreshes a volatile field every `resolution`,
+ * readers pay a plain volatile load instead of a clock call.
+ *
+ * Readers can lag real time by up to one resolution. For the buckets that only
+ * means a slightly later leak/refill, i.e. the limiter is marginally stricter.
+ */
+class CachedTimeSource implements TimeSource, AutoCloseable {
+    private final long resolutionNanos;
+    private final Thread ticker;
+    private volatile long now = System.nanoTime();
+    private volatile boolean running = true;
+
+    CachedTimeSource(long resolution, TimeUnit unit) {
+        this.resolutionNanos = unit.toNanos(resolution);
+        this.ticker = new Thread(this::tick, "rate-limiter-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    private void tick() {
+        while (running) {
+            LockSupport.parkNanos(resolutionNanos);
+            now = System.nanoTime();
+        }
+    }
+
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+}
+
+/**
+ * Clock that only moves when told to. For tests: no Thread.sleep, fully deterministic.
+ */
+class ManualTimeSource implements TimeSource {
+    private final AtomicLong now = new AtomicLong();
+
+    @Override
+    public long nanoTime() {
+        return now.get();
+    }
+
+    void advance(long duration, TimeUnit unit) {
+        now.addAndGet(unit.toNanos(duration));
+    }
+}
@@ -0,0 +1,232 @@
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel: ONE daemon thread completes every pending wait.
+ *
+ * Waiters don't sleep or spin on their own thread; they get a future that the wheel
+ * completes at (or just after) its deadline. A blocked acquire() parks on that future,
+ * which for virtual threads means no carrier thread is held, so 100k waiters cost 100k
+ * small objects and nothing else.
+ *
+ * - schedule(): lock-free enqueue onto an MPSC queue, O(1)
+ * - the wheel thread moves new timeouts into slots, then fires the current slot
+ * - precision = one tick, never early
+ * - futures are completed on `completions` (the common pool for the shared wheel), never
+ *   on the wheel thread, so a slow thenRun()/thenApply() can't hold up other timers.
+ *   Continuations that block should still use the *Async variants with their own executor.
+ * - a cancelled future is dropped from its slot the next time the wheel passes it
+ */
+class TimerWheel implements AutoCloseable {
+    private final long tickNanos;
+    private final Slot[] wheel;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final long startTime;
+    private final Thread worker;
+    private final Executor completions;
+    private volatile boolean running = true;
+    private long tick;               // worker thread only
+
+    TimerWheel(long tick, TimeUnit unit, int wheelSize, Executor completions) {
+        int size = wheelSize <= 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.tickNanos = unit.toNanos(tick);
+        this.wheel = new Slot[size];
+        for (int i = 0; i < size; i++) wheel[i] = new Slot();
+        this.mask = size - 1;
+        this.completions = completions;
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, "rate-limiter-timer-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    TimerWheel(long tick, TimeUnit unit, int wheelSize) {
+        this(tick, unit, wheelSize, ForkJoinPool.commonPool());
+    }
+
+    // shared 1ms wheel used by the buckets' acquire()/acquireAsync()
+    static TimerWheel shared() {
+        return Holder.SHARED;
+    }
+
+    private static final class Holder {
+        static final TimerWheel SHARED = new TimerWheel(1, TimeUnit.MILLISECONDS, 512);
+    }
+
+    // future completes (on `completions`) no earlier than delayNanos from now
+    CompletableFuture<Void> schedule(long delayNanos) {
+        Timeout timeout = new Timeout(System.nanoTime() + delayNanos);
+        incoming.add(timeout);
+        if (!running) timeout.completeExceptionally(new IllegalStateException("timer wheel closed"));
+        return timeout;
+    }
+
+    private void run() {
+        while (running) {
+            long due = startTime + tick * tickNanos;
+            for (long wait; (wait = due - System.nanoTime()) > 0; ) LockSupport.parkNanos(wait);
+
+            transferIncoming();
+            fire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferIncoming() {
+        for (Timeout t; (t = incoming.poll()) != null; ) {
+            // first tick at or after the deadline
+            long target = Math.max(tick, (t.deadline - startTime + tickNanos - 1) / tickNanos);
+            t.rounds = (target - tick) / wheel.length;
+            wheel[(int) (target & mask)].timeouts.add(t);
+        }
+    }
+
+    private void fire(Slot slot) {
+        for (Iterator<Timeout> it = slot.timeouts.iterator(); it.hasNext(); ) {
+            Timeout t = it.next();
+            if (t.isDone()) {
+                it.remove();                      // cancelled by its waiter
+            } else if (t.rounds <= 0) {
+                it.remove();
+                completions.execute(t);
+            } else {
+                t.rounds--;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    // typed holder, so the wheel is a plain array without a generic-array cast
+    private static final class Slot {
+        final ArrayDeque<Timeout> timeouts = new ArrayDeque<>();
+    }
+
+    // the future itself is the wheel entry (and the completion task): one allocation per wait
+    private static final class Timeout extends CompletableFuture<Void> implements Runnable {
+        final long deadline;
+        long rounds;
+
+        Timeout(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            complete(null);
+        }
+    }
+}
+
+////////
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+
+    @Test
+    void testNeverFiresEarly() throws Exception {
+        try (TimerWheel wheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 8)) {
+            long start = System.nanoTime();
+            wheel.schedule(TimeUnit.MILLISECONDS.toNanos(30)).get();   // > 3 laps of the wheel
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        }
+    }
+
+    @Test
+    void testManyWaitersOneThread() throws Exception {
+        try (TimerWheel wheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 64)) {
+            CompletableFuture<?>[] waits = new CompletableFuture<?>[100_000];
+            for (int i = 0; i < waits.length; i++) {
+                waits[i] = wheel.schedule(TimeUnit.MICROSECONDS.toNanos(i));   // spread over 100ms
+            }
+            CompletableFuture.allOf(waits).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testSlowContinuationDoesNotDelayOtherTimers() throws Exception {
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try (TimerWheel wheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, pool)) {
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<String> slow = wheel.schedule(TimeUnit.MILLISECONDS.toNanos(5)).thenApply(v -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Thread.currentThread().getName();
+            });
+            Thread.sleep(20);                                    // the slow continuation is running
+
+            wheel.schedule(TimeUnit.MILLISECONDS.toNanos(5)).get(1, TimeUnit.SECONDS);
+            release.countDown();
+            assertNotEquals("rate-limiter-timer-wheel", slow.get(1, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testInterruptedAcquireGivesItsSlotBack() throws Exception {
+        ManualTimeSource clock = new ManualTimeSource();
+        LeakyBucket bucket = new LeakyBucket(1, 0.001, clock);   // a slot every 1000s
+        bucket.allowRequest();
+        bucket.acquireAsync();                                   // next slot: right away
+
+        Thread waiter = new Thread(() -> {
+            try {
+                bucket.acquire();
+            } catch (InterruptedException expected) {
+                // the slot must have been returned
+            }
+        });
+        waiter.start();
+        while (bucket.level(clock.nanoTime()) < 3) Thread.sleep(1);   // reserved, 1000s out
+        waiter.interrupt();
+        waiter.join(5_000);
+
+        assertFalse(waiter.isAlive());
+        assertEquals(2.0, bucket.level(clock.nanoTime()), 1e-9);
+    }
+
+    @Test
+    void testCancelledAsyncAcquireGivesItsSlotBack() {
+        ManualTimeSource clock = new ManualTimeSource();
+        CreditBucket bucket = new CreditBucket(1, 0, 0.001, clock);
+        bucket.allowRequest();
+
+        CompletableFuture<Void> wait = bucket.acquireAsync();
+        assertEquals(-1.0, bucket.availableTokens(), 1e-9);
+        assertTrue(wait.cancel(false));
+        assertEquals(0.0, bucket.availableTokens(), 1e-9);
+    }
+
+    @Test
+    void testAcquireAsyncCompletesInOrder() throws Exception {
+        LeakyBucket bucket = new LeakyBucket(1, 200);
+        CompletableFuture<Void> first = bucket.acquireAsync();
+        CompletableFuture<Void> later = bucket.acquireAsync();
+        CompletableFuture<Void> last = bucket.acquireAsync();
+
+        assertTrue(first.isDone());
+        last.get(1, TimeUnit.SECONDS);
+        assertTrue(later.isDone());
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserLimiterTest {
+
+    @Test
+    void testTryAcquireIsAllOrNothing() {
+        CreditBucket bucket = new CreditBucket(3, 0, 0.001);
+
+        assertFalse(bucket.tryAcquire(4));
+        assertTrue(bucket.tryAcquire(3));
+        assertFalse(bucket.tryAcquire(1));
+    }
+
+    @Test
+    void testLeakyTryAcquireMatchesRepeatedSingles() {
+        long now = System.nanoTime();
+        LeakyBucket bucket = new LeakyBucket(5, 0.001);
+
+        assertTrue(bucket.tryAcquire(5, now));
+        assertFalse(bucket.tryAcquire(1, now));
+    }
+
+    @Test
+    void testBatchMatchesSequentialCalls() {
+        UserCreditLimiter limiter = new UserCreditLimiter(2, 0, 0.001);
+        String[] users = {"u1", "u1", "u1", "u2", "u1", "u2", "u2"};
+        boolean[] out = new boolean[users.length];
+
+        limiter.allowRequests(users, out);
+
+        // u1: 2 tokens, u2: 2 tokens; the 4th u1 request is in a later run and still rejected
+        assertArrayEquals(new boolean[] {true, true, false, true, false, true, false}, out);
+    }
+
+    @Test
+    void testRateLimiterBatch() {
+        UserRateLimiter limiter = new UserRateLimiter(2, 0.001);
+        String[] users = {"a", "a", "a", "b"};
+        boolean[] out = new boolean[users.length];
+
+        limiter.allowRequests(users, out);
+
+        // same clock read for the whole batch: no leak between the "a" requests
+        assertArrayEquals(new boolean[] {true, true, false, true}, out);
+    }
+
+    @Test
+    void testAllowRequestsForOneUser() {
+        UserRateLimiter limiter = new UserRateLimiter(3, 0.001);
+
+        assertTrue(limiter.allowRequests("u1", 3));
+        assertFalse(limiter.allowRequests("u1", 2));
+    }
+
+    @Test
+    void testLeakWithManualClock() {
+        ManualTimeSource clock = new ManualTimeSource();
+        UserRateLimiter limiter = new UserRateLimiter(2, 1, clock); // leak 1 token/sec
+
+        assertTrue(limiter.allowRequest("u1"));
+        assertTrue(limiter.allowRequest("u1"));
+        assertFalse(limiter.allowRequest("u1"));   // same instant: nothing leaked
+
+        clock.advance(1, TimeUnit.SECONDS);
+        assertTrue(limiter.allowRequest("u1"));
+        assertFalse(limiter.allowRequest("u1"));
+    }
+
+    @Test
+    void testCreditsAccumulateWithManualClock() {
+        ManualTimeSource clock = new ManualTimeSource();
+        UserCreditLimiter limiter = new UserCreditLimiter(3, 5, 2, clock); // refill 2 tokens/sec
+
+        assertTrue(limiter.allowRequests("u1", 3));
+        assertFalse(limiter.allowRequest("u1"));
+
+        clock.advance(10, TimeUnit.SECONDS);        // capped at 3 + 5 = 8
+        assertTrue(limiter.allowRequests("u1", 8));
+        assertFalse(limiter.allowRequest("u1"));
+    }
+
+    @Test
+    void testLockFreeBucketWithManualClock() {
+        ManualTimeSource clock = new ManualTimeSource();
+        LockFreeLeakyBucket bucket = new LockFreeLeakyBucket(3, 1, clock);
+
+        assertTrue(bucket.tryAcquire(3));
+        assertFalse(bucket.allowRequest());
+
+        clock.advance(1, TimeUnit.SECONDS);
+        assertTrue(bucket.allowRequest());
+        assertFalse(bucket.allowRequest());
+    }
+
+    @Test
+    void testLeakyReserveQueuesBehindCapacity() {
+        ManualTimeSource clock = new ManualTimeSource();
+        LeakyBucket bucket = new LeakyBucket(2, 10, clock);   // 1 token drains every 100ms
+
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertTrue(bucket.reserve(0) <= 1);                   // level 2: same slack as tryAcquire
+        long fourth = bucket.reserve(0);                      // level 3 → 1 slot to drain
+        long fifth = bucket.reserve(0);                       // level 4 → 2 slots to drain
+        assertTrue(Math.abs(fourth - TimeUnit.MILLISECONDS.toNanos(100)) <= 1, "fourth = " + fourth);
+        assertTrue(Math.abs(fifth - TimeUnit.MILLISECONDS.toNanos(200)) <= 1, "fifth = " + fifth);
+        assertFalse(bucket.tryAcquire(1, 0));                 // waiters go first
+    }
+
+    @Test
+    void testCreditReserveBorrowsAgainstRefill() {
+        CreditBucket bucket = new CreditBucket(1, 0, 4, new ManualTimeSource());   // 250ms per token
+
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(250), bucket.reserve(0));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), bucket.reserve(0));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(250), bucket.reserve(TimeUnit.MILLISECONDS.toNanos(500)));
+    }
+
+    @Test
+    void testAcquireSmoothsBurst() throws InterruptedException {
+        LeakyBucket bucket = new LeakyBucket(1, 100);          // one slot per 10ms
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) bucket.acquire();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis >= 40, "elapsed = " + elapsedMillis);   // >= 4 full slots
+    }
+
+    @Test
+    void testSlidingWindowCounterWeightsPreviousWindow() {
+        ManualTimeSource clock = new ManualTimeSource();
+        SlidingWindowCounter limiter = new SlidingWindowCounter(4, 1, TimeUnit.SECONDS, clock);
+
+        assertTrue(limiter.tryAcquire(4));
+        assertFalse(limiter.allowRequest());
+
+        clock.advance(1500, TimeUnit.MILLISECONDS);  // previous window weighs 50% → 2 counted
+        assertEquals(2.0, limiter.availableTokens(), 1e-9);   // read without rolling the window
+        assertTrue(limiter.tryAcquire(2));
+        assertFalse(limiter.allowRequest());
+
+        clock.advance(2, TimeUnit.SECONDS);          // two windows later nothing carries over
+        assertTrue(limiter.tryAcquire(4));
+    }
+
+    @Test
+    void testSlidingWindowLogIsExact() {
+        ManualTimeSource clock = new ManualTimeSource();
+        SlidingWindowLog limiter = new SlidingWindowLog(3, 1, TimeUnit.SECONDS, clock);
+
+        assertTrue(limiter.allowRequest());
+        clock.advance(600, TimeUnit.MILLISECONDS);
+        assertTrue(limiter.tryAcquire(2));
+        assertFalse(limiter.allowRequest());
+
+        clock.advance(400, TimeUnit.MILLISECONDS);   // first request slides out exactly now
+        assertEquals(1.0, limiter.availableTokens(), 1e-9);
+        assertTrue(limiter.allowRequest());
+        assertFalse(limiter.allowRequest());
+
+        clock.advance(600, TimeUnit.MILLISECONDS);   // the two at t=600ms slide out
+        assertTrue(limiter.tryAcquire(2));
+        assertFalse(limiter.allowRequest());
+    }
+
+    @Test
+    void testRegistryPlugsAnyAlgorithm() {
+        ManualTimeSource clock = new ManualTimeSource();
+        UserLimiterRegistry<SlidingWindowLog> registry =
+                new UserLimiterRegistry<>(userId -> new SlidingWindowLog(2, 1, TimeUnit.SECONDS, clock));
+
+        assertTrue(registry.allowRequests("u1", 2));
+        assertFalse(registry.allowRequest("u1"));
+        assertTrue(registry.allowRequest("u2"));
+        assertEquals(2, registry.size());
+    }
+}